@@ -1,11 +1,17 @@
 package com.linuxpkgmgr.cli;
 
+import com.linuxpkgmgr.contextmanagement.ToolCallJournal;
+import com.linuxpkgmgr.tool.ToolResultCompactor;
+import com.linuxpkgmgr.tool.ToolResultTools;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+
 /**
  * Composite chat client that transparently routes each user query to either
  * the local or cloud Ollama model based on {@link ModelSelector#select}.
@@ -13,6 +19,11 @@ import org.springframework.stereotype.Component;
  *   User query
  *       ├─ LOCAL ─► Local Model  (tools + memory)
  *       └─ CLOUD ─► Cloud Model  (tools + memory)
+ *
+ * Selected tools are passed as callbacks wrapped by {@link ToolResultCompactor}, so their
+ * results are compacted before entering the prompt and chat memory. get_full_result is
+ * added once the conversation has a compacted result. Each call is also written to the
+ * {@link ToolCallJournal}, which chat memory compaction reads intent boundaries from.
  */
 @Component
 public class RoutingChatClient {
@@ -23,26 +34,42 @@ public class RoutingChatClient {
     private final ChatClient cloudClient;
     private final ModelSelector selector;
     private final ToolSelector toolSelector;
+    private final ToolResultCompactor compactor;
+    private final ToolCallJournal journal;
 
     public RoutingChatClient(@Qualifier("localChatClient") ChatClient localClient,
                              @Qualifier("cloudChatClient") ChatClient cloudClient,
                              ModelSelector selector,
-                             ToolSelector toolSelector) {
+                             ToolSelector toolSelector,
+                             ToolResultCompactor compactor,
+                             ToolCallJournal journal) {
         this.localClient = localClient;
         this.cloudClient = cloudClient;
         this.selector = selector;
         this.toolSelector = toolSelector;
+        this.compactor = compactor;
+        this.journal = journal;
     }
 
     public String chat(String userQuery, String conversationId) {
         ModelSelector.Model model = selector.select(userQuery);
-        Object[] tools = toolSelector.select(userQuery);
+        Object[] tools = toolSelector.select(conversationId, userQuery);
         log.debug("ModelSelector → [{}] for query: {}", model, userQuery);
 
+        if (compactor.hasStoredResults(conversationId)) {
+            tools = Arrays.copyOf(tools, tools.length + 1);
+            tools[tools.length - 1] = new ToolResultTools(compactor, conversationId);
+        }
+        journal.beginTurn(conversationId, userQuery);
+        ToolCallback[] callbacks = compactor.wrap(conversationId, (toolName, result) -> {
+            journal.record(conversationId, toolName, result);
+            toolSelector.recordToolCall(conversationId, toolName);
+        }, tools);
+
         ChatClient client = (model == ModelSelector.Model.LOCAL) ? localClient : cloudClient;
         return client.prompt()
                 .user(userQuery)
-                .tools(tools)
+                .toolCallbacks(callbacks)
                 .advisors(a -> a.param("chat_memory_conversation_id", conversationId))
                 .call()
                 .content();
@@ -1,34 +1,147 @@
 package com.linuxpkgmgr.cli;
 
+import com.linuxpkgmgr.tool.IntentRole;
 import com.linuxpkgmgr.tool.ToolEmbeddingIndex;
+import com.linuxpkgmgr.tool.ToolIntentRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Selects which tool beans to pass to the LLM for a given user query.
  * Delegates to ToolEmbeddingIndex for semantic similarity filtering.
  *
- * Short confirmations/negations (≤ 2 words) skip the embedding query and
- * reuse the tools returned for the previous substantive query.
+ * Selection state is kept per conversation and follows the intent lifecycle of
+ * IntentBoundaryDetector: follow-up turns of an open intent get the tools selected
+ * earlier in that intent plus those relevant to the new query. An END tool call closes
+ * the intent; a START tool call after its first turn restarts it from that turn's tools.
+ * Short confirmations/negations (≤ 2 words) skip the embedding query entirely.
+ *
+ * Sessions live in a bounded concurrent map; idle or least recently used ones are evicted,
+ * but never while a {@link #select} call is using them.
  */
 @Slf4j
 @Component
 public class ToolSelector {
 
     private final ToolEmbeddingIndex index;
-    private Object[] lastTools = new Object[0];
+    private final ToolIntentRegistry registry;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    @Value("${pkg-mgr.tools.session.max-sessions:64}")
+    private int maxSessions = 64;
+
+    @Value("${pkg-mgr.tools.session.idle-minutes:120}")
+    private long idleMinutes = 120;
 
-    public ToolSelector(ToolEmbeddingIndex index) {
+    /** Tool selection state of one conversation; guarded by its own monitor. */
+    private static final class Session {
+        Set<Object> intentTools = new LinkedHashSet<>();  // everything offered in the current intent
+        Object[] turnTools = new Object[0];              // what the latest query selected by itself
+        int turnsInIntent;
+        boolean intentClosed;
+        volatile long lastUsedNanos = System.nanoTime();
+        final AtomicInteger users = new AtomicInteger();  // select() calls in progress; never evicted while > 0
+    }
+
+    public ToolSelector(ToolEmbeddingIndex index, ToolIntentRegistry registry) {
         this.index = index;
+        this.registry = registry;
+    }
+
+    public Object[] select(String conversationId, String userQuery) {
+        Session session = acquire(conversationId);
+        try {
+            synchronized (session) {
+                session.lastUsedNanos = System.nanoTime();
+                // After an END tool there is nothing left to confirm — a short reply starts a new intent
+                if (isTrivial(userQuery) && !session.intentClosed && !session.intentTools.isEmpty()) {
+                    log.debug("ToolSelector [{}] — trivial query '{}', reusing {} intent tool(s)",
+                            conversationId, userQuery.trim(), session.intentTools.size());
+                    return session.intentTools.toArray();
+                }
+
+                Object[] fresh = index.findRelevant(userQuery);
+                session.turnTools = fresh;
+                if (session.intentClosed || session.intentTools.isEmpty()) {
+                    session.intentTools = new LinkedHashSet<>(Arrays.asList(fresh));
+                    session.turnsInIntent = 1;
+                    session.intentClosed = false;
+                } else {
+                    session.intentTools.addAll(Arrays.asList(fresh));
+                    session.turnsInIntent++;
+                }
+                log.debug("ToolSelector [{}] — {} tool(s) for turn {} of intent",
+                        conversationId, session.intentTools.size(), session.turnsInIntent);
+                return session.intentTools.toArray();
+            }
+        } finally {
+            session.users.decrementAndGet();
+        }
+    }
+
+    /** Called as the model invokes a tool, so the session can follow intent boundaries. */
+    public void recordToolCall(String conversationId, String toolName) {
+        Session session = sessions.get(conversationId);
+        if (session == null) return;
+        IntentRole role = registry.getRole(toolName);
+        synchronized (session) {
+            if (role == IntentRole.START && session.turnsInIntent > 1) {
+                // IntentBoundaryDetector starts a new intent at this turn's user message
+                session.intentTools = new LinkedHashSet<>(Arrays.asList(session.turnTools));
+                session.turnsInIntent = 1;
+                session.intentClosed = false;
+                log.debug("ToolSelector [{}] — {} started a new intent", conversationId, toolName);
+            } else if (role == IntentRole.END) {
+                session.intentClosed = true;
+                log.debug("ToolSelector [{}] — {} closed the intent", conversationId, toolName);
+            }
+        }
+    }
+
+    /** Returns the conversation's session, created if needed, marked in use so eviction skips it. */
+    private Session acquire(String conversationId) {
+        boolean[] created = {false};
+        Session session = sessions.compute(conversationId, (id, s) -> {
+            if (s == null) {
+                s = new Session();
+                created[0] = true;
+            }
+            s.users.incrementAndGet();
+            return s;
+        });
+        if (created[0]) evict();
+        return session;
     }
 
-    public Object[] select(String userQuery) {
-        if (isTrivial(userQuery) && lastTools.length > 0) {
-            log.debug("ToolSelector — trivial query '{}', reusing {} cached tool(s)", userQuery.trim(), lastTools.length);
-            return lastTools;
+    /**
+     * Runs when a session is created: drops idle sessions, then the least recently used beyond
+     * the bound. Sessions in use are skipped, checked atomically with {@link #acquire}.
+     */
+    private void evict() {
+        long idleNanos = Duration.ofMinutes(idleMinutes).toNanos();
+        long now = System.nanoTime();
+        for (String id : sessions.keySet()) {
+            sessions.computeIfPresent(id, (k, s) -> s.users.get() == 0 && now - s.lastUsedNanos > idleNanos ? null : s);
+        }
+        while (sessions.size() > maxSessions) {
+            String eldest = sessions.entrySet().stream()
+                    .filter(e -> e.getValue().users.get() == 0)
+                    .min(Comparator.comparingLong(e -> e.getValue().lastUsedNanos))
+                    .map(Map.Entry::getKey)
+                    .orElse(null);
+            if (eldest == null) return;   // all in use — the bound is exceeded until one is released
+            sessions.computeIfPresent(eldest, (k, s) -> s.users.get() == 0 ? null : s);
         }
-        lastTools = index.findRelevant(userQuery);
-        return lastTools;
     }
 
     /** Returns true for short acknowledgements like "yes", "no", "ok", "sure", "proceed", etc. */
@@ -54,7 +54,8 @@ public class AgentConfig {
 
             Guidelines:
             - When the user asks what is installed, use listInstalledApps with the appropriate category.
-            - When searching, check Flathub first, then the native repo.
+            - When searching, use search_packages to query Flathub and the native repo together.
+            - When checking for updates, use check_updates to query Flatpak and the native package manager together.
             - If an application is available as both Flatpak and native, inform the user and \
               default to Flatpak unless the user specifies otherwise or it is a system-level tool.
             - Before installing or removing any application, summarise exactly what will be done \
@@ -2,11 +2,14 @@ package com.linuxpkgmgr.config;
 
 import com.linuxpkgmgr.contextmanagement.Intent;
 import com.linuxpkgmgr.contextmanagement.IntentBoundaryDetector;
+import com.linuxpkgmgr.contextmanagement.IntentCompactor;
+import com.linuxpkgmgr.contextmanagement.ToolCallJournal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClientRequest;
 import org.springframework.ai.chat.client.ChatClientResponse;
 import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
 import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.Message;
 import org.springframework.core.Ordered;
 import org.springframework.stereotype.Component;
 
@@ -19,15 +22,26 @@ import java.util.List;
  * have already merged conversation history into the prompt, so
  * {@code request.prompt().getInstructions()} reflects the complete, assembled context
  * window — system prompt + full conversation history + current user turn.
+ *
+ * The payload is compacted here by intent: completed intents are reduced to short
+ * summaries and only the active one is sent verbatim (see {@link IntentCompactor}).
+ * Chat memory keeps no tool messages, so the conversation's {@link ToolCallJournal}
+ * supplies the tool calls that mark the intent boundaries.
  */
 @Slf4j
 @Component
 public class PayloadInterceptorAdvisor implements CallAdvisor {
 
     private final IntentBoundaryDetector intentBoundaryDetector;
+    private final IntentCompactor intentCompactor;
+    private final ToolCallJournal toolCallJournal;
 
-    public PayloadInterceptorAdvisor(IntentBoundaryDetector intentBoundaryDetector) {
+    public PayloadInterceptorAdvisor(IntentBoundaryDetector intentBoundaryDetector,
+                                     IntentCompactor intentCompactor,
+                                     ToolCallJournal toolCallJournal) {
         this.intentBoundaryDetector = intentBoundaryDetector;
+        this.intentCompactor = intentCompactor;
+        this.toolCallJournal = toolCallJournal;
     }
 
     @Override
@@ -38,19 +52,28 @@ public class PayloadInterceptorAdvisor implements CallAdvisor {
 
     /**
      * Hook called with the complete, memory-enriched payload before each LLM call.
-     * Detects intent boundaries and logs them. Payload is returned unchanged for now —
-     * replace the pass-through with compaction logic when ready.
+     * Detects intent boundaries and replaces completed intents with their summaries.
      */
     protected ChatClientRequest interceptPayload(ChatClientRequest request) {
-        List<Intent> intents = intentBoundaryDetector.detect(
-                request.prompt().getInstructions());
+        List<Message> messages = request.prompt().getInstructions();
+        Object conversationId = request.context().get("chat_memory_conversation_id");
+        List<ToolCallJournal.Turn> turns = conversationId == null
+                ? List.of()
+                : toolCallJournal.turns(conversationId.toString());
+        List<Intent> intents = intentBoundaryDetector.detect(messages, turns);
 
         if (log.isDebugEnabled()) {
             log.debug("Intent boundary detection — {} intent(s) found:", intents.size());
             intents.forEach(intent -> log.debug("  {}", intent.summary()));
         }
 
-        return request;
+        List<Message> compacted = intentCompactor.compact(messages, intents);
+        if (compacted == messages) return request;
+
+        log.debug("Compacted payload from {} to {} message(s)", messages.size(), compacted.size());
+        return request.mutate()
+                .prompt(request.prompt().mutate().messages(compacted).build())
+                .build();
     }
 
     @Override
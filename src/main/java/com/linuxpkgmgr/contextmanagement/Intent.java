@@ -6,15 +6,22 @@ import org.springframework.ai.chat.messages.UserMessage;
 
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * A group of messages that together represent one user goal — from the initial
  * request through tool calls to the final LLM response.
  *
- * @param messages all messages belonging to this intent (no SystemMessage)
- * @param active   true if this is the current in-flight intent (not yet complete)
+ * @param messages  all messages belonging to this intent (no SystemMessage)
+ * @param toolCalls tool calls of this intent recorded in the {@link ToolCallJournal};
+ *                  chat memory itself does not hold them
+ * @param active    true if this is the current in-flight intent (not yet complete)
  */
-public record Intent(List<Message> messages, boolean active) {
+public record Intent(List<Message> messages, List<ToolCallJournal.ToolCall> toolCalls, boolean active) {
+
+    public Intent(List<Message> messages, boolean active) {
+        this(messages, List.of(), active);
+    }
 
     /**
      * Compact one-line description for logging.
@@ -28,10 +35,12 @@ public record Intent(List<Message> messages, boolean active) {
                 .map(t -> t.length() > 60 ? t.substring(0, 57) + "..." : t)
                 .orElse("(no user message)");
 
-        String tools = messages.stream()
-                .filter(m -> m instanceof AssistantMessage am && am.hasToolCalls())
-                .flatMap(m -> ((AssistantMessage) m).getToolCalls().stream())
-                .map(AssistantMessage.ToolCall::name)
+        String tools = Stream.concat(
+                        messages.stream()
+                                .filter(m -> m instanceof AssistantMessage am && am.hasToolCalls())
+                                .flatMap(m -> ((AssistantMessage) m).getToolCalls().stream())
+                                .map(AssistantMessage.ToolCall::name),
+                        toolCalls.stream().map(ToolCallJournal.ToolCall::name))
                 .collect(Collectors.joining(", "));
 
         return "[%s] %d msgs | root: \"%s\"%s".formatted(
@@ -9,7 +9,9 @@ import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Splits a flat message list into {@link Intent} groups using tool-call metadata.
@@ -19,6 +21,12 @@ import java.util.List;
  * {@link IntentRole#START}-marked tool call. That UserMessage is the root cause
  * of the new intent; everything before it closes the previous intent.
  *
+ * <p>Chat memory does not keep tool-call messages (tools run inside the model call),
+ * so the same rule is applied to the {@link ToolCallJournal} turns matched to the
+ * UserMessages: a turn that called a START tool begins an intent. A turn that called an
+ * {@link IntentRole#END} tool — the intent's mutating action — closes its intent, so
+ * the next UserMessage begins a new one.
+ *
  * <p>{@link SystemMessage}s are excluded from all intents — callers handle them
  * separately.
  */
@@ -31,26 +39,48 @@ public class IntentBoundaryDetector {
         this.registry = registry;
     }
 
+    /** Detects intent boundaries from tool-call messages alone. */
+    public List<Intent> detect(List<Message> messages) {
+        return detect(messages, List.of());
+    }
+
     /**
      * Detects intent boundaries in {@code messages}.
      *
      * @param messages full message list from {@code Prompt.getInstructions()},
      *                 may start with a {@link SystemMessage}
+     * @param turns    the conversation's journal, oldest first; matched to the
+     *                 UserMessages from the end by their text
      * @return ordered list of intents; the last one is always marked active
      */
-    public List<Intent> detect(List<Message> messages) {
+    public List<Intent> detect(List<Message> messages, List<ToolCallJournal.Turn> turns) {
         List<Intent> result = new ArrayList<>();
 
         // Skip leading SystemMessages — they belong to no intent
         int start = 0;
-        while ( messages.get(start) instanceof SystemMessage) {
+        while (start < messages.size() && messages.get(start) instanceof SystemMessage) {
             start++;
         }
 
+        Map<Integer, ToolCallJournal.Turn> turnAt = matchTurns(messages, start, turns);
         int intentStart = start;
+        ToolCallJournal.Turn previousTurn = null;
 
         for (int i = start; i < messages.size(); i++) {
             Message msg = messages.get(i);
+
+            if (msg instanceof UserMessage) {
+                ToolCallJournal.Turn turn = turnAt.get(i);
+                boolean closedBefore = previousTurn != null && calls(previousTurn, IntentRole.END);
+                boolean startsHere = turn != null && calls(turn, IntentRole.START);
+                if (i > intentStart && (closedBefore || startsHere)) {
+                    result.add(intent(messages, intentStart, i, turnAt, false));
+                    intentStart = i;
+                }
+                previousTurn = turn;
+                continue;
+            }
+
             if (!(msg instanceof AssistantMessage am)) continue;
             if (!am.hasToolCalls()) continue;
 
@@ -67,18 +97,49 @@ public class IntentBoundaryDetector {
 
             // Close previous intent: everything before the root UserMessage
             if (rootIdx > intentStart) {
-                result.add(new Intent(new ArrayList<>(messages.subList(intentStart, rootIdx)), false));
+                result.add(intent(messages, intentStart, rootIdx, turnAt, false));
+                intentStart = rootIdx;
             }
-
-            // New intent starts at the root UserMessage
-            intentStart = rootIdx;
         }
 
         // Remaining messages form the current active intent
         if (intentStart < messages.size()) {
-            result.add(new Intent(new ArrayList<>(messages.subList(intentStart, messages.size())), true));
+            result.add(intent(messages, intentStart, messages.size(), turnAt, true));
         }
 
         return result;
     }
+
+    private boolean calls(ToolCallJournal.Turn turn, IntentRole role) {
+        return turn.calls().stream().anyMatch(c -> registry.getRole(c.name()) == role);
+    }
+
+    private static Intent intent(List<Message> messages, int from, int to,
+                                 Map<Integer, ToolCallJournal.Turn> turnAt, boolean active) {
+        List<ToolCallJournal.ToolCall> calls = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            ToolCallJournal.Turn turn = turnAt.get(i);
+            if (turn != null) calls.addAll(turn.calls());
+        }
+        return new Intent(new ArrayList<>(messages.subList(from, to)), calls, active);
+    }
+
+    /**
+     * Pairs UserMessages with journal turns, walking both backwards from the end while the
+     * texts agree. Memory may have dropped old messages, and the journal old turns, so only
+     * the common tail is trusted.
+     */
+    private static Map<Integer, ToolCallJournal.Turn> matchTurns(List<Message> messages, int start,
+                                                               List<ToolCallJournal.Turn> turns) {
+        Map<Integer, ToolCallJournal.Turn> turnAt = new HashMap<>();
+        int t = turns.size() - 1;
+        for (int i = messages.size() - 1; i >= start && t >= 0; i--) {
+            if (!(messages.get(i) instanceof UserMessage user)) continue;
+            ToolCallJournal.Turn turn = turns.get(t);
+            if (!turn.userText().equals(user.getText())) break;
+            turnAt.put(i, turn);
+            t--;
+        }
+        return turnAt;
+    }
 }
@@ -0,0 +1,119 @@
+package com.linuxpkgmgr.contextmanagement;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites a message list so that only the active {@link Intent} stays verbatim.
+ *
+ * <p>Each completed intent collapses into two messages: its root user request and one
+ * assistant message listing the tools it called with their outcome plus the start of
+ * the final reply. Tool-call and tool-response messages of completed intents are
+ * dropped. Leading {@link SystemMessage}s are kept as they are. Chat memory holds no
+ * tool messages, so the tool outcomes usually come from the intent's
+ * {@link ToolCallJournal} entries instead.
+ *
+ * <p>Only the outgoing payload is rewritten — chat memory keeps the full history.
+ */
+@Component
+public class IntentCompactor {
+
+    private static final int ROOT_MAX_CHARS = 300;
+
+    @Value("${pkg-mgr.context.compaction.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${pkg-mgr.context.compaction.reply-chars:400}")
+    private int replyChars = 400;
+
+    /**
+     * Returns {@code messages} with every completed intent in {@code intents} replaced
+     * by its summary, or {@code messages} itself if there is nothing to compact.
+     *
+     * @param messages full message list the intents were detected from
+     * @param intents  result of {@link IntentBoundaryDetector#detect} for {@code messages}
+     */
+    public List<Message> compact(List<Message> messages, List<Intent> intents) {
+        if (!enabled || intents.stream().allMatch(Intent::active)) return messages;
+
+        List<Message> result = new ArrayList<>();
+        // Leading SystemMessages belong to no intent (see IntentBoundaryDetector)
+        messages.stream().takeWhile(m -> m instanceof SystemMessage).forEach(result::add);
+        for (Intent intent : intents) {
+            if (intent.active()) {
+                result.addAll(intent.messages());
+            } else {
+                result.addAll(summarize(intent));
+            }
+        }
+        return result;
+    }
+
+    /** The root user request plus one assistant message describing how the intent ended. */
+    List<Message> summarize(Intent intent) {
+        List<Message> summary = new ArrayList<>(2);
+        intent.messages().stream()
+                .filter(m -> m instanceof UserMessage)
+                .findFirst()
+                .map(m -> UserMessage.builder().text(clip(m.getText(), ROOT_MAX_CHARS)).build())
+                .ifPresent(summary::add);
+
+        StringBuilder text = new StringBuilder("[Earlier request, compacted]");
+        String tools = toolOutcomes(intent);
+        if (!tools.isEmpty()) text.append(" Tools: ").append(tools).append('.');
+        String reply = finalReply(intent.messages());
+        if (!reply.isEmpty()) text.append(" Reply: ").append(clip(reply, replyChars));
+        summary.add(AssistantMessage.builder().content(text.toString()).build());
+        return summary;
+    }
+
+    /**
+     * "name → ok" / "name → failed: reason" for every tool call, in call order. Tool-call
+     * messages are used when the payload has them, otherwise the journal's record.
+     */
+    private static String toolOutcomes(Intent intent) {
+        Map<String, String> responseById = new HashMap<>();
+        for (Message m : intent.messages()) {
+            if (m instanceof ToolResponseMessage trm) {
+                trm.getResponses().forEach(r -> responseById.put(r.id(), r.responseData()));
+            }
+        }
+        List<String> outcomes = intent.messages().stream()
+                .filter(m -> m instanceof AssistantMessage am && am.hasToolCalls())
+                .flatMap(m -> ((AssistantMessage) m).getToolCalls().stream())
+                .map(tc -> tc.name() + " → " + ToolCallJournal.outcomeOf(responseById.get(tc.id())))
+                .toList();
+        if (outcomes.isEmpty()) {
+            outcomes = intent.toolCalls().stream()
+                    .map(tc -> tc.name() + " → " + tc.outcome())
+                    .toList();
+        }
+        return String.join(", ", outcomes);
+    }
+
+    /** Text of the last assistant message that is not a tool call. */
+    private static String finalReply(List<Message> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof AssistantMessage am && !am.hasToolCalls()
+                    && am.getText() != null && !am.getText().isBlank()) {
+                return am.getText().strip();
+            }
+        }
+        return "";
+    }
+
+    private static String clip(String text, int maxChars) {
+        if (text == null) return "";
+        return text.length() > maxChars ? text.substring(0, maxChars - 3) + "..." : text;
+    }
+}
@@ -0,0 +1,88 @@
+package com.linuxpkgmgr.contextmanagement;
+
+import org.springframework.ai.util.json.JsonParser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-conversation record of which tools each user turn called and how they ended.
+ *
+ * Tools run inside the chat model's own call loop, so chat memory only ever holds the
+ * user's text and the final assistant reply — no tool-call or tool-response messages.
+ * This journal keeps what those messages would have said, so
+ * {@link IntentBoundaryDetector} can still find intent boundaries and
+ * {@link IntentCompactor} can still summarise completed intents.
+ */
+@Component
+public class ToolCallJournal {
+
+    private static final int OUTCOME_MAX_CHARS = 120;
+
+    /** One tool invocation: its name and "ok" / "failed: reason". */
+    public record ToolCall(String name, String outcome) {}
+
+    /** One user turn: the text the user sent and the tools the model called to answer it. */
+    public record Turn(String userText, List<ToolCall> calls) {}
+
+    private final Map<String, Deque<MutableTurn>> turnsByConversation = new ConcurrentHashMap<>();
+
+    @Value("${pkg-mgr.context.journal-turns:50}")
+    private int maxTurns = 50;
+
+    private record MutableTurn(String userText, List<ToolCall> calls) {}
+
+    /** Starts a turn; tool calls recorded for {@code conversationId} from now on belong to it. */
+    public void beginTurn(String conversationId, String userText) {
+        Deque<MutableTurn> turns = turnsByConversation.computeIfAbsent(conversationId, id -> new ArrayDeque<>());
+        synchronized (turns) {
+            turns.addLast(new MutableTurn(userText, new ArrayList<>()));
+            while (turns.size() > maxTurns) turns.removeFirst();
+        }
+    }
+
+    /** Records a finished tool call of the current turn. {@code result} may be JSON-encoded. */
+    public void record(String conversationId, String toolName, String result) {
+        Deque<MutableTurn> turns = turnsByConversation.get(conversationId);
+        if (turns == null) return;
+        synchronized (turns) {
+            MutableTurn current = turns.peekLast();
+            if (current != null) current.calls().add(new ToolCall(toolName, outcomeOf(result)));
+        }
+    }
+
+    /** Snapshot of the recorded turns, oldest first. */
+    public List<Turn> turns(String conversationId) {
+        Deque<MutableTurn> turns = turnsByConversation.get(conversationId);
+        if (turns == null) return List.of();
+        synchronized (turns) {
+            return turns.stream().map(t -> new Turn(t.userText(), List.copyOf(t.calls()))).toList();
+        }
+    }
+
+    /** Tools report failures as a returned "Error …" / "Failed …" string rather than throwing. */
+    static String outcomeOf(String result) {
+        if (result == null) return "no result";
+        String first = result.strip();
+        // String results arrive JSON-encoded from Spring AI's method callbacks
+        if (first.startsWith("\"")) {
+            try {
+                first = JsonParser.fromJson(first, String.class).strip();
+            } catch (RuntimeException ignored) {
+                // not a JSON string after all — inspect it as is
+            }
+        }
+        int nl = first.indexOf('\n');
+        if (nl >= 0) first = first.substring(0, nl);
+        boolean failed = first.startsWith("Error") || first.startsWith("Failed")
+                || first.contains(" failed: ");
+        if (!failed) return "ok";
+        return "failed: " + (first.length() > OUTCOME_MAX_CHARS ? first.substring(0, OUTCOME_MAX_CHARS - 3) + "..." : first);
+    }
+}
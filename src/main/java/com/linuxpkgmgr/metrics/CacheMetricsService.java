@@ -0,0 +1,116 @@
+package com.linuxpkgmgr.metrics;
+
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks hit/miss counters of the application's in-memory caches, keyed by cache name.
+ *
+ * <p>Caches report every lookup here instead of keeping private counters, so all cache
+ * statistics can be read from one place. Thread-safe using ConcurrentHashMap.</p>
+ *
+ * <p>Usage example:
+ * <pre>
+ *   V value = lookup(key);
+ *   if (value != null) cacheMetricsService.recordHit("tool-selections");
+ *   else cacheMetricsService.recordMiss("tool-selections");
+ * </pre></p>
+ */
+@Slf4j
+@Service
+public class CacheMetricsService {
+
+    private final Map<String, CacheCounter> cacheCounters = new ConcurrentHashMap<>();
+
+    /**
+     * Records a lookup that was answered from the cache.
+     *
+     * @param cacheName the cache's name
+     */
+    public void recordHit(String cacheName) {
+        counter(cacheName).hit();
+    }
+
+    /**
+     * Records a lookup the cache could not answer (absent or expired entry).
+     *
+     * @param cacheName the cache's name
+     */
+    public void recordMiss(String cacheName) {
+        counter(cacheName).miss();
+    }
+
+    /**
+     * Records the cache's current number of entries.
+     *
+     * @param cacheName the cache's name
+     * @param size      entries held after the latest change
+     */
+    public void recordSize(String cacheName, int size) {
+        counter(cacheName).setSize(size);
+    }
+
+    /**
+     * Gets the counters of one cache.
+     *
+     * @param cacheName the cache's name
+     * @return the CacheCounter for this cache, or null if it has recorded nothing yet
+     */
+    public CacheCounter getCacheStats(String cacheName) {
+        return cacheCounters.get(cacheName);
+    }
+
+    /**
+     * Gets the counters of every cache.
+     *
+     * @return unmodifiable view of all cache counters
+     */
+    public Map<String, CacheCounter> getAllStats() {
+        return Map.copyOf(cacheCounters);
+    }
+
+    private CacheCounter counter(String cacheName) {
+        return cacheCounters.computeIfAbsent(cacheName, CacheCounter::new);
+    }
+
+    /**
+     * Per-cache hit/miss accumulator with thread-safe operations.
+     */
+    @Getter
+    @ToString
+    public static class CacheCounter {
+        private final String cacheName;
+        private volatile long hits = 0;
+        private volatile long misses = 0;
+        private volatile int size = 0;
+
+        CacheCounter(String cacheName) {
+            this.cacheName = cacheName;
+        }
+
+        synchronized void hit() {
+            this.hits++;
+        }
+
+        synchronized void miss() {
+            this.misses++;
+        }
+
+        void setSize(int size) {
+            this.size = size;
+        }
+
+        /**
+         * Gets the fraction of lookups answered from the cache.
+         */
+        public double getHitRate() {
+            long total = hits + misses;
+            return total > 0 ? (double) hits / total : 0;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.linuxpkgmgr.model;
+
+import com.linuxpkgmgr.model.PackageInfo.Source;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the installed packages with lookup indexes built once at
+ * publish time, so per-query work is a hash lookup or a short posting-list scan
+ * instead of a linear pass that lowercases every name.
+ *
+ * <ul>
+ *   <li>{@link #byId} — lowercase id → package (first wins on collision)</li>
+ *   <li>{@link #bySource} — NATIVE / FLATPAK partitions</li>
+ *   <li>{@link #search} — case-insensitive substring match on name or id, backed by a
+ *       trigram index; fragments shorter than three characters fall back to a scan over
+ *       the pre-lowercased keys</li>
+ * </ul>
+ */
+public final class InstalledPackages {
+
+    public static final InstalledPackages EMPTY = of(List.of());
+
+    private final List<PackageInfo> all;
+    private final Map<Source, List<PackageInfo>> bySource;
+    private final Map<String, PackageInfo> byId;
+    /** Lowercased {@code name + '\n' + id} per package, parallel to {@link #all}. */
+    private final String[] keys;
+    /** Trigram → ascending indexes into {@link #all}. */
+    private final Map<String, int[]> trigrams;
+
+    private InstalledPackages(List<PackageInfo> all) {
+        this.all = List.copyOf(all);
+        this.keys = new String[this.all.size()];
+
+        Map<Source, List<PackageInfo>> partitions = new EnumMap<>(Source.class);
+        Map<String, PackageInfo> ids = new HashMap<>();
+        Map<String, IntList> grams = new HashMap<>();
+
+        for (int i = 0; i < this.all.size(); i++) {
+            PackageInfo p = this.all.get(i);
+            String id = p.id().toLowerCase();
+            keys[i] = p.name().toLowerCase() + '\n' + id;
+            ids.putIfAbsent(id, p);
+            partitions.computeIfAbsent(p.source(), s -> new ArrayList<>()).add(p);
+            for (int j = 0; j + 3 <= keys[i].length(); j++) {
+                IntList postings = grams.computeIfAbsent(keys[i].substring(j, j + 3), g -> new IntList());
+                postings.addIfLast(i);
+            }
+        }
+
+        partitions.replaceAll((s, l) -> List.copyOf(l));
+        this.bySource = Collections.unmodifiableMap(partitions);
+        this.byId = Map.copyOf(ids);
+        Map<String, int[]> frozen = new HashMap<>(grams.size() * 2);
+        grams.forEach((g, l) -> frozen.put(g, l.toArray()));
+        this.trigrams = frozen;
+    }
+
+    public static InstalledPackages of(List<PackageInfo> packages) {
+        return new InstalledPackages(packages);
+    }
+
+    /** All packages, native first, in fetch order. */
+    public List<PackageInfo> all() {
+        return all;
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    public List<PackageInfo> bySource(Source source) {
+        return bySource.getOrDefault(source, List.of());
+    }
+
+    /** Exact, case-insensitive id lookup; null if not installed. */
+    public PackageInfo byId(String id) {
+        return id == null ? null : byId.get(id.toLowerCase());
+    }
+
+    /**
+     * Returns up to {@code limit} packages whose name or id contains {@code fragment}
+     * (case-insensitive), ranked exact match → prefix → substring, fetch order within a rank.
+     *
+     * @param source restrict to one source, or null for both
+     */
+    public List<PackageInfo> search(String fragment, Source source, int limit) {
+        if (fragment == null || fragment.isBlank()) return List.of();
+        String q = fragment.trim().toLowerCase();
+
+        List<PackageInfo> exact = new ArrayList<>();
+        List<PackageInfo> prefix = new ArrayList<>();
+        List<PackageInfo> substring = new ArrayList<>();
+
+        int[] candidates = candidates(q);
+        int n = candidates == null ? keys.length : candidates.length;
+        for (int c = 0; c < n; c++) {
+            int i = candidates == null ? c : candidates[c];
+            PackageInfo p = all.get(i);
+            if (source != null && p.source() != source) continue;
+
+            String key = keys[i];
+            if (!key.contains(q)) continue;
+            int idStart = key.indexOf('\n') + 1;
+            boolean nameEquals = idStart - 1 == q.length() && key.startsWith(q);
+            boolean idEquals   = key.length() - idStart == q.length() && key.startsWith(q, idStart);
+            if (nameEquals || idEquals) {
+                exact.add(p);
+            } else if (key.startsWith(q) || key.startsWith(q, idStart)) {
+                prefix.add(p);
+            } else {
+                substring.add(p);
+            }
+        }
+
+        List<PackageInfo> result = new ArrayList<>(Math.min(limit, exact.size() + prefix.size() + substring.size()));
+        for (List<PackageInfo> bucket : List.of(exact, prefix, substring)) {
+            for (PackageInfo p : bucket) {
+                if (result.size() >= limit) return result;
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Picks the shortest posting list among the query's trigrams — every match must appear in it.
+     * Returns null when the fragment is too short to use the index (caller scans everything),
+     * and an empty array when some trigram occurs in no package at all.
+     */
+    private int[] candidates(String q) {
+        if (q.length() < 3) return null;
+        int[] best = null;
+        for (int j = 0; j + 3 <= q.length(); j++) {
+            int[] postings = trigrams.get(q.substring(j, j + 3));
+            if (postings == null) return new int[0];
+            if (best == null || postings.length < best.length) best = postings;
+        }
+        return best;
+    }
+
+    /** Minimal growable int array; skips consecutive duplicates (same package, repeated trigram). */
+    private static final class IntList {
+        private int[] data = new int[4];
+        private int size;
+
+        void addIfLast(int value) {
+            if (size > 0 && data[size - 1] == value) return;
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
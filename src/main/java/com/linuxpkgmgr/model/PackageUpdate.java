@@ -0,0 +1,17 @@
+package com.linuxpkgmgr.model;
+
+/**
+ * A pending update for an installed package.
+ *
+ * @param name           human-readable name (Flatpak) or package name (native)
+ * @param id             native package name or Flatpak app-id
+ * @param currentVersion installed version, or "" if the backend does not report it
+ * @param newVersion     version the update would install
+ * @param source         NATIVE or FLATPAK
+ */
+public record PackageUpdate(
+        String name,
+        String id,
+        String currentVersion,
+        String newVersion,
+        PackageInfo.Source source) {}
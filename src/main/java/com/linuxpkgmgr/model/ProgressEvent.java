@@ -0,0 +1,31 @@
+package com.linuxpkgmgr.model;
+
+/**
+ * Structured progress of a running install / update / remove, parsed from the package
+ * manager's output and published on the {@code ShellOutputBus}.
+ *
+ * @param operation  short label of the command, e.g. "dnf install"
+ * @param phase      what the package manager is doing right now
+ * @param item       the package being processed, or null if the line did not name one
+ * @param step       1-based step within the phase, or 0 if unknown
+ * @param steps      number of steps in the phase, or 0 if unknown
+ * @param bytes      bytes downloaded so far, or 0 if unknown
+ * @param totalBytes total download size announced by the package manager, or 0 if unknown
+ * @param percent    estimated overall progress of the phase (0–100), or -1 if unknown
+ */
+public record ProgressEvent(
+        String operation,
+        Phase phase,
+        String item,
+        int step,
+        int steps,
+        long bytes,
+        long totalBytes,
+        int percent
+) {
+    public enum Phase { PREPARING, DOWNLOADING, INSTALLING, UPDATING, REMOVING, CONFIGURING, VERIFYING, DONE }
+
+    public boolean isDone() {
+        return phase == Phase.DONE;
+    }
+}
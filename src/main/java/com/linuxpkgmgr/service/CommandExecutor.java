@@ -1,50 +1,240 @@
 package com.linuxpkgmgr.service;
 
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Runs shell commands as subprocesses and returns their output.
  * Extracted as a dedicated service so all tool and service classes
  * share one place for process execution and logging.
  *
+ * Every subprocess is read on a virtual thread and runs under a deadline
+ * ({@code pkg-mgr.executor.timeout-seconds} unless the caller passes its own).
+ * When the deadline passes, or {@link #cancelAll()} is called from the UI, the
+ * whole process tree is killed and the call fails with a {@link RuntimeException}
+ * / {@link CancellationException}. {@link #executeAsync} returns a
+ * {@link CompletableFuture} so tools can fan out without holding platform threads.
+ *
+ * Output is bounded by a configurable line and byte cap so a runaway command
+ * (e.g. {@code find $HOME}) can never pin tens of megabytes on the heap.
+ * Callers that only need part of the output should use {@link #executeLines},
+ * which hands them a lazy line stream and stops the process once they are done.
+ *
  * Commands requiring privilege elevation (sudo) must be constructed by the caller.
+ * Commands whose process this executor cannot own or kill, such as those run as root by
+ * {@link SudoService}, are passed in as an {@link ExternalCommand}. They get the same
+ * shell-pane framing, output cap, deadline and {@link #cancelAll()} handling.
+ *
+ * Install / update / remove commands additionally pass through a {@link ProgressTracker}:
+ * their progress rows are published as {@code ProgressEvent}s on the {@link ShellOutputBus}
+ * (the shell pane still shows every line) and replaced by a one-line summary in the
+ * output returned to the caller.
  */
 @Slf4j
 @Service
 public class CommandExecutor {
 
     private final ShellOutputBus shellOutputBus;
+    private final ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<RunningCommand> running = ConcurrentHashMap.newKeySet();
+
+    @Value("${pkg-mgr.executor.max-output-lines:200000}")
+    private long maxOutputLines = 200_000;
+
+    /** Counted in UTF-8 bytes as the process wrote them, newlines included. */
+    @Value("${pkg-mgr.executor.max-output-bytes:16777216}")
+    private long maxOutputBytes = 16_777_216;
+
+    @Value("${pkg-mgr.executor.timeout-seconds:600}")
+    private long defaultTimeoutSeconds = 600;
 
     public CommandExecutor(ShellOutputBus shellOutputBus) {
         this.shellOutputBus = shellOutputBus;
     }
 
-    private record Result(String output, int exitCode) {}
+    private record Result<T>(T value, int exitCode) {}
+
+    /**
+     * A command run by some other party that streams its combined output line by line,
+     * e.g. a root process started by {@link SudoService}.
+     */
+    public interface ExternalCommand {
+        /** Runs the command to completion, passing each output line to {@code sink}; returns its exit code. */
+        int run(Consumer<String> sink) throws IOException, InterruptedException;
+
+        /** Asks the running command to stop. {@link #run} should then return promptly. Called from another thread. */
+        void cancel();
+    }
+
+    /** A live command, how to stop it, and the reason it was stopped, if it was. */
+    private static final class RunningCommand {
+        final CompletableFuture<?> exited;
+        final Runnable stop;
+        volatile RuntimeException abort;
+
+        RunningCommand(CompletableFuture<?> exited, Runnable stop) {
+            this.exited = exited;
+            this.stop = stop;
+        }
+    }
 
     /**
      * Executes a command and returns combined stdout + stderr as a single string.
      * Does not throw on non-zero exit — use {@link #executeChecked} if you need that.
      */
     public String execute(List<String> command) throws IOException, InterruptedException {
-        return run(command).output;
+        return execute(command, defaultTimeout());
+    }
+
+    /** Like {@link #execute(List)} with a per-command deadline. */
+    public String execute(List<String> command, Duration timeout) throws IOException, InterruptedException {
+        return run(command, timeout, this::joinLines).value;
     }
 
     /**
      * Like {@link #execute} but throws {@link RuntimeException} if the process exits non-zero.
      */
     public String executeChecked(List<String> command) throws IOException, InterruptedException {
-        Result result = run(command);
+        return executeChecked(command, defaultTimeout());
+    }
+
+    /** Like {@link #executeChecked(List)} with a per-command deadline. */
+    public String executeChecked(List<String> command, Duration timeout)
+            throws IOException, InterruptedException {
+        Result<String> result = run(command, timeout, this::joinLines);
         if (result.exitCode != 0) {
             throw new RuntimeException(
-                    "Command failed (exit " + result.exitCode + "): " + result.output.strip());
+                    "Command failed (exit " + result.exitCode + "): " + result.value.strip());
         }
-        return result.output;
+        return result.value;
+    }
+
+    /**
+     * Runs an {@link ExternalCommand} with the same framing, output cap and cancellation
+     * as a subprocess, and throws {@link RuntimeException} if it exits non-zero.
+     * {@code displayCommand} is what the shell pane shows. Output beyond the cap is still
+     * drained, just neither kept nor shown, so the command itself is never cut short.
+     */
+    public String executeChecked(List<String> displayCommand, ExternalCommand command)
+            throws IOException, InterruptedException {
+        return executeChecked(displayCommand, defaultTimeout(), command);
+    }
+
+    /** Like {@link #executeChecked(List, ExternalCommand)} with a per-command deadline. */
+    public String executeChecked(List<String> displayCommand, Duration timeout, ExternalCommand command)
+            throws IOException, InterruptedException {
+        log.debug("Executing: {} (timeout {}s)", displayCommand, timeout.toSeconds());
+        shellOutputBus.emit("$ " + String.join(" ", displayCommand));
+
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        RunningCommand rc = new RunningCommand(finished, command::cancel);
+        running.add(rc);
+        Thread watchdog = Thread.ofVirtual()
+                .name("cmd-deadline-" + displayCommand.getLast())
+                .start(() -> enforceDeadline(rc, displayCommand, timeout));
+
+        StringBuilder output = new StringBuilder();
+        Predicate<String> withinCap = withinCap(displayCommand);
+        ProgressTracker tracker = ProgressTracker.forCommand(displayCommand, shellOutputBus::emitProgress);
+        try {
+            int exitCode;
+            try {
+                exitCode = command.run(line -> {
+                    if (!withinCap.test(line)) return;
+                    shellOutputBus.emit(line);
+                    if (tracker == null || tracker.keep(line)) output.append(line).append('\n');
+                });
+            } catch (IOException | RuntimeException e) {
+                if (rc.abort != null) throw rc.abort;
+                throw e;
+            }
+            if (rc.abort != null) throw rc.abort;
+
+            String summary = tracker != null ? tracker.summary() : null;
+            if (summary != null) output.append(summary).append('\n');
+            shellOutputBus.emit("→ exit " + exitCode);
+            log.debug("Exit code: {} for {}", exitCode, displayCommand.get(0));
+            if (exitCode != 0) {
+                throw new RuntimeException("Command failed (exit " + exitCode + "): " + output.toString().strip());
+            }
+            return output.toString();
+        } catch (InterruptedException e) {
+            abort(rc, new CancellationException("Interrupted: " + String.join(" ", displayCommand)));
+            throw e;
+        } finally {
+            if (tracker != null) tracker.finish();
+            finished.complete(null);
+            watchdog.interrupt();
+            running.remove(rc);
+        }
+    }
+
+    /**
+     * Runs {@link #execute(List, Duration)} on a virtual thread.
+     * The future completes exceptionally on I/O failure, timeout or {@link #cancelAll()}.
+     * Cancelling the returned future interrupts that thread, which kills the process tree.
+     */
+    public CompletableFuture<String> executeAsync(List<String> command, Duration timeout) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Future<?> task = virtualThreads.submit(() -> {
+            try {
+                result.complete(execute(command, timeout));
+            } catch (InterruptedException e) {
+                result.completeExceptionally(new CancellationException("Interrupted: " + String.join(" ", command)));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) task.cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Executes a command and lets {@code parser} consume its combined output as a lazy
+     * stream of lines, so the full output never has to be held in memory.
+     *
+     * The stream is read on demand: a parser that stops early (e.g. via {@code limit()}
+     * or {@code findFirst()}) causes the process to be terminated instead of drained.
+     * Lines beyond the configured line/byte cap are not delivered.
+     * Does not throw on non-zero exit.
+     */
+    public <T> T executeLines(List<String> command, Function<Stream<String>, T> parser)
+            throws IOException, InterruptedException {
+        return executeLines(command, defaultTimeout(), parser);
+    }
+
+    /** Like {@link #executeLines(List, Function)} with a per-command deadline. */
+    public <T> T executeLines(List<String> command, Duration timeout, Function<Stream<String>, T> parser)
+            throws IOException, InterruptedException {
+        return run(command, timeout, parser).value;
     }
 
     /**
@@ -59,27 +249,195 @@ public class CommandExecutor {
                 .start();
     }
 
-    private Result run(List<String> command) throws IOException, InterruptedException {
-        log.debug("Executing: {}", command);
+    /**
+     * Kills every command currently running through this executor, including
+     * child processes. Called when the user cancels the current turn.
+     */
+    public void cancelAll() {
+        if (running.isEmpty()) return;
+        log.info("Cancelling {} running command(s)", running.size());
+        for (RunningCommand rc : running) {
+            abort(rc, new CancellationException("Command cancelled by user"));
+        }
+    }
+
+    /** True while any command started through this executor is still running. */
+    public boolean isBusy() {
+        return !running.isEmpty();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        cancelAll();
+        virtualThreads.shutdownNow();
+    }
+
+    // -------------------------------------------------------------------------
+    // Process lifecycle
+    // -------------------------------------------------------------------------
+
+    /**
+     * Starts the process, reads its output on a virtual thread while a second virtual
+     * thread enforces the deadline, and waits for both. The calling thread only parks.
+     */
+    private <T> Result<T> run(List<String> command, Duration timeout, Function<Stream<String>, T> parser)
+            throws IOException, InterruptedException {
+        log.debug("Executing: {} (timeout {}s)", command, timeout.toSeconds());
         shellOutputBus.emit("$ " + String.join(" ", command));
 
-        Process process = new ProcessBuilder(command)
+        Process process = start(command);
+        RunningCommand rc = new RunningCommand(process.onExit(), () -> destroyTree(process));
+        running.add(rc);
+        Thread watchdog = Thread.ofVirtual()
+                .name("cmd-deadline-" + process.pid())
+                .start(() -> enforceDeadline(rc, command, timeout));
+
+        ProgressTracker tracker = ProgressTracker.forCommand(command, shellOutputBus::emitProgress);
+        try {
+            Future<T> reader = virtualThreads.submit(() -> consume(process, command, tracker, parser));
+            T value;
+            try {
+                value = await(reader);
+            } catch (IOException | RuntimeException e) {
+                // A killed process can surface as a broken pipe — report why it was killed
+                if (rc.abort != null) throw rc.abort;
+                throw e;
+            }
+            int exitCode = process.waitFor();
+            if (rc.abort != null) throw rc.abort;
+
+            shellOutputBus.emit("→ exit " + exitCode);
+            log.debug("Exit code: {} for {}", exitCode, command.get(0));
+            return new Result<>(value, exitCode);
+        } catch (InterruptedException e) {
+            abort(rc, new CancellationException("Interrupted: " + String.join(" ", command)));
+            throw e;
+        } finally {
+            if (tracker != null) tracker.finish();
+            watchdog.interrupt();
+            running.remove(rc);
+            // Parser stopped early or output cap reached — nobody is reading any more
+            if (process.isAlive()) destroyTree(process);
+        }
+    }
+
+    private <T> T consume(Process process, List<String> command, ProgressTracker tracker,
+                          Function<Stream<String>, T> parser) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            return parser.apply(tracked(capped(reader.lines(), command), tracker));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private <T> T await(Future<T> reader) throws IOException, InterruptedException {
+        try {
+            return reader.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private void enforceDeadline(RunningCommand rc, List<String> command, Duration timeout) {
+        try {
+            rc.exited.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Command exceeded {}s deadline — killing: {}", timeout.toSeconds(), command);
+            abort(rc, new RuntimeException(
+                    "Command timed out after " + timeout.toSeconds() + "s: " + String.join(" ", command)));
+        } catch (InterruptedException | ExecutionException ignored) {
+            // command finished first
+        }
+    }
+
+    private void abort(RunningCommand rc, RuntimeException reason) {
+        rc.abort = reason;
+        shellOutputBus.emit("✖ " + reason.getMessage());
+        rc.stop.run();
+    }
+
+    /** Kills children first so nothing is re-parented to init and left running. */
+    private void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private Duration defaultTimeout() {
+        return Duration.ofSeconds(defaultTimeoutSeconds);
+    }
+
+    private Process start(List<String> command) throws IOException {
+        return new ProcessBuilder(command)
                 .redirectErrorStream(true)
                 .start();
+    }
 
-        StringBuilder sb = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                shellOutputBus.emit(line);
-                sb.append(line).append('\n');
+    private String joinLines(Stream<String> lines) {
+        return lines.map(line -> line + "\n").collect(Collectors.joining());
+    }
+
+    /**
+     * Applies the line/byte cap to a raw line stream and mirrors every delivered
+     * line to the shell pane. Logs once when the cap truncates the output.
+     */
+    private Stream<String> capped(Stream<String> lines, List<String> command) {
+        return lines.takeWhile(withinCap(command)).peek(shellOutputBus::emit);
+    }
+
+    /**
+     * Drops progress-only lines (already on the shell pane and published as events) and
+     * appends the tracker's summary once the stream is exhausted. Identity for commands
+     * without a tracker.
+     */
+    private Stream<String> tracked(Stream<String> lines, ProgressTracker tracker) {
+        if (tracker == null) return lines;
+        return Stream.concat(
+                lines.filter(tracker::keep),
+                Stream.of(tracker).map(ProgressTracker::summary).filter(Objects::nonNull));
+    }
+
+    /** Stateful predicate: true while the line/byte cap holds; logs once when it first fails. */
+    private Predicate<String> withinCap(List<String> command) {
+        long[] budget = {maxOutputLines, maxOutputBytes};
+        boolean[] reported = {false};
+        return line -> {
+            budget[0]--;
+            budget[1] -= utf8Length(line) + 1;
+            if (budget[0] >= 0 && budget[1] >= 0) return true;
+            if (!reported[0]) {
+                reported[0] = true;
+                log.warn("Output of {} truncated at {} lines / {} bytes",
+                        command.get(0), maxOutputLines, maxOutputBytes);
+                shellOutputBus.emit("… output truncated");
             }
-        }
+            return false;
+        };
+    }
 
-        int exitCode = process.waitFor();
-        shellOutputBus.emit("→ exit " + exitCode);
-        log.debug("Exit code: {}, output length: {} chars", exitCode, sb.length());
-        return new Result(sb.toString(), exitCode);
+    /** UTF-8 encoded length of {@code s}, computed without encoding it. */
+    static int utf8Length(String s) {
+        int bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
     }
 }
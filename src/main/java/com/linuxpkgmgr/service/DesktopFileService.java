@@ -2,26 +2,57 @@ package com.linuxpkgmgr.service;
 
 import com.linuxpkgmgr.model.DesktopEntry;
 import com.linuxpkgmgr.model.PackageInfo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
 /**
  * Scans .desktop files from standard freedesktop.org locations and parses them
  * into {@link DesktopEntry} records.
  *
  * Only entries with Type=Application and NoDisplay != true are returned,
  * matching what desktop environments show in app menus.
+ *
+ * Parsed entries are kept in an index keyed by path and mtime. A {@link WatchService}
+ * on the application directories reports added, changed and removed files, and only
+ * those are re-parsed; the lookup view (all entries, category → entries,
+ * appId → entry) is then republished. Directories that do not exist yet are picked
+ * up when they appear. If no WatchService is available, every lookup re-checks
+ * mtimes instead — still without re-parsing unchanged files.
  */
 @Slf4j
 @Service
@@ -38,79 +69,373 @@ public class DesktopFileService {
             Path.of(System.getProperty("user.home"), ".local/share/applications")
     );
 
-    public List<DesktopEntry> getDesktopEntries() {
-        List<DesktopEntry> entries = new ArrayList<>();
-        for (Path dir : FLATPAK_DIRS) {
-            entries.addAll(scanDir(dir, PackageInfo.Source.FLATPAK));
+    /** Every scanned directory in lookup order (Flatpak first), with the source it implies. */
+    private static final Map<Path, PackageInfo.Source> DIRS = new LinkedHashMap<>();
+    static {
+        FLATPAK_DIRS.forEach(d -> DIRS.put(d, PackageInfo.Source.FLATPAK));
+        NATIVE_DIRS.forEach(d -> DIRS.put(d, PackageInfo.Source.NATIVE));
+    }
+
+    /** Quiet period after a change event before republishing — one install touches several files. */
+    private static final Duration DEBOUNCE = Duration.ofMillis(250);
+
+    /** A scanned file; {@code entry} is null when the file is excluded, so it is not re-parsed either. */
+    private record Scanned(FileTime mtime, DesktopEntry entry) {}
+
+    /** Immutable lookup view; category and appId keys are lowercase. */
+    private record View(List<DesktopEntry> all,
+                        Map<String, List<DesktopEntry>> byCategory,
+                        Map<String, DesktopEntry> byAppId) {}
+
+    private final Map<Path, PackageInfo.Source> dirs;
+    private final Map<Path, Scanned> files = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> watchKeys = new ConcurrentHashMap<>();
+    private final Object indexLock = new Object();
+
+    private volatile View view = null;
+    private WatchService watcher;
+
+    public DesktopFileService() {
+        this(DIRS);
+    }
+
+    /** Scans {@code dirs} (in lookup order, with the source each implies) instead of the standard locations. */
+    DesktopFileService(Map<Path, PackageInfo.Source> dirs) {
+        this.dirs = dirs;
+    }
+
+    @PostConstruct
+    void init() {
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            Thread.ofVirtual().name("desktop-file-watch").start(this::watchLoop);
+        } catch (IOException e) {
+            log.warn("WatchService unavailable, desktop entries will be re-checked on every lookup: {}", e.getMessage());
         }
-        for (Path dir : NATIVE_DIRS) {
-            entries.addAll(scanDir(dir, PackageInfo.Source.NATIVE));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (watcher == null) return;
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            log.debug("Closing desktop file watcher failed: {}", e.getMessage());
         }
-        log.debug("Found {} desktop entries", entries.size());
-        return entries;
     }
 
+    public List<DesktopEntry> getDesktopEntries() {
+        return current().all();
+    }
+
+    /** Entries listing {@code category} in Categories= (case-insensitive). */
+    public List<DesktopEntry> getEntriesInCategory(String category) {
+        if (category == null || category.isBlank()) return getDesktopEntries();
+        return current().byCategory().getOrDefault(category.trim().toLowerCase(), List.of());
+    }
+
+    /** Entry for a .desktop basename (case-insensitive), Flatpak first; null if none. */
+    public DesktopEntry findByAppId(String appId) {
+        return appId == null ? null : current().byAppId().get(appId.toLowerCase());
+    }
+
+    // -------------------------------------------------------------------------
+    // Index maintenance
     // -------------------------------------------------------------------------
 
-    private List<DesktopEntry> scanDir(Path dir, PackageInfo.Source source) {
-        if (!Files.isDirectory(dir)) return List.of();
-        log.debug("Scanning {} desktop files in: {}", source, dir);
-        try (Stream<Path> files = Files.list(dir)) {
-            return files
-                    .filter(p -> p.getFileName().toString().endsWith(".desktop"))
-                    .map(p -> parseDesktopFile(p, source))
-                    .filter(Objects::nonNull)
-                    .toList();
+    private View current() {
+        View v = view;
+        if (v != null && watcher != null && !unwatchedDirAppeared()) return v;
+        synchronized (indexLock) {
+            if (view == null || watcher == null || unwatchedDirAppeared()) {
+                rescanDirs(dirs.keySet());
+                publish();
+            }
+            return view;
+        }
+    }
+
+    private boolean unwatchedDirAppeared() {
+        for (Path dir : dirs.keySet()) {
+            if (!watchKeys.containsValue(dir) && Files.isDirectory(dir)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lists the directories concurrently, then stats and (re-)parses their files concurrently,
+     * one virtual thread per file — a cold start over 1,000+ files is bound by I/O latency,
+     * not CPU.
+     */
+    private void rescanDirs(Collection<Path> toScan) {
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            Map<Path, CompletableFuture<Set<Path>>> listings = new LinkedHashMap<>();
+            for (Path dir : toScan) listings.put(dir, CompletableFuture.supplyAsync(() -> listDir(dir), pool));
+
+            listings.forEach((dir, listing) -> {
+                Set<Path> present = listing.join();
+                if (present == null) return; // listing failed — keep what we had
+                files.keySet().removeIf(p -> p.getParent().equals(dir) && !present.contains(p));
+                present.forEach(p -> pool.execute(() -> refreshFile(p)));
+            });
+        } // close() waits for every parse
+    }
+
+    /**
+     * Registers the directory before listing it, so nothing changed in between is missed.
+     * Returns an empty set for a missing directory and null if it could not be listed.
+     */
+    private Set<Path> listDir(Path dir) {
+        if (!Files.isDirectory(dir)) return Set.of();
+        if (watcher != null && !watchKeys.containsValue(dir)) {
+            try {
+                watchKeys.put(dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+            } catch (IOException | ClosedWatchServiceException e) {
+                log.debug("Cannot watch {}: {}", dir, e.getMessage());
+            }
+        }
+        log.debug("Scanning {} desktop files in: {}", dirs.get(dir), dir);
+        try (Stream<Path> listing = Files.list(dir)) {
+            return listing.filter(DesktopFileService::isDesktopFile).collect(Collectors.toSet());
         } catch (IOException e) {
             log.warn("Failed to scan {}: {}", dir, e.getMessage());
-            return List.of();
+            return null;
         }
     }
 
+    /** Re-parses {@code path} if its mtime moved; drops it if it no longer resolves. */
+    private void refreshFile(Path path) {
+        FileTime mtime;
+        try {
+            mtime = Files.getLastModifiedTime(path); // follows Flatpak's export symlinks
+        } catch (IOException e) {
+            files.remove(path);
+            return;
+        }
+        Scanned known = files.get(path);
+        if (known != null && known.mtime().equals(mtime)) return;
+        files.put(path, new Scanned(mtime, parseDesktopFile(path, dirs.get(path.getParent()))));
+    }
+
+    private void publish() {
+        Map<Path, List<Path>> byDir = new HashMap<>();
+        for (Path p : files.keySet()) byDir.computeIfAbsent(p.getParent(), d -> new ArrayList<>()).add(p);
+
+        List<DesktopEntry> all = new ArrayList<>();
+        Map<String, List<DesktopEntry>> byCategory = new HashMap<>();
+        Map<String, DesktopEntry> byAppId = new HashMap<>();
+        for (Path dir : dirs.keySet()) {
+            List<Path> paths = byDir.get(dir);
+            if (paths == null) continue;
+            paths.sort(Comparator.comparing(Path::getFileName));
+            for (Path p : paths) {
+                Scanned scanned = files.get(p);
+                if (scanned == null || scanned.entry() == null) continue;
+                DesktopEntry entry = scanned.entry();
+                all.add(entry);
+                byAppId.putIfAbsent(entry.appId().toLowerCase(), entry);
+                for (String category : entry.categories()) {
+                    byCategory.computeIfAbsent(category.toLowerCase(), c -> new ArrayList<>()).add(entry);
+                }
+            }
+        }
+        byCategory.replaceAll((c, l) -> List.copyOf(l));
+        view = new View(List.copyOf(all), Map.copyOf(byCategory), Map.copyOf(byAppId));
+        log.debug("Indexed {} desktop entries", all.size());
+    }
+
+    // -------------------------------------------------------------------------
+    // Watcher
+    // -------------------------------------------------------------------------
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                Set<Path> changedFiles = new HashSet<>();
+                Set<Path> dirtyDirs = new HashSet<>();
+                WatchKey key = watcher.take();
+                // Coalesce a burst of events (flatpak install, package upgrade) into one republish
+                do {
+                    drain(key, changedFiles, dirtyDirs);
+                } while ((key = watcher.poll(DEBOUNCE.toMillis(), TimeUnit.MILLISECONDS)) != null);
+
+                synchronized (indexLock) {
+                    if (view == null) continue; // nothing published yet — first lookup scans everything
+                    rescanDirs(dirtyDirs);
+                    changedFiles.stream()
+                            .filter(p -> !dirtyDirs.contains(p.getParent()))
+                            .forEach(this::refreshFile);
+                    publish();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("Desktop file watcher stopped");
+        }
+    }
+
+    private void drain(WatchKey key, Set<Path> changedFiles, Set<Path> dirtyDirs) {
+        Path dir = watchKeys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null) continue;
+            if (event.kind() == OVERFLOW) {
+                dirtyDirs.add(dir);
+            } else if (event.context() instanceof Path name && isDesktopFile(name)) {
+                changedFiles.add(dir.resolve(name));
+            }
+        }
+        if (!key.reset()) {
+            // Directory deleted or unmounted — rescan drops its entries; re-registered if it returns
+            watchKeys.remove(key);
+            if (dir != null) dirtyDirs.add(dir);
+        }
+    }
+
+    private static boolean isDesktopFile(Path p) {
+        return p.getFileName().toString().endsWith(".desktop");
+    }
+
+    // -------------------------------------------------------------------------
+    // Parsing
+    // -------------------------------------------------------------------------
+
     /**
-     * Parses only the [Desktop Entry] section of a .desktop file.
-     * Returns null if the entry should be excluded (wrong Type or NoDisplay=true).
+     * Streams the file line by line: everything before {@code [Desktop Entry]} is skipped,
+     * reading stops at the next group header, and only the keys used here are materialised
+     * (keys are compared in place, without substring or trim copies). Returns null as soon
+     * as the entry is known to be excluded (wrong Type or NoDisplay=true).
+     *
+     * Name and Comment prefer the best {@code [locale]} variant for the user's
+     * LC_ALL / LC_MESSAGES / LANG, falling back to the untranslated value.
      */
     private DesktopEntry parseDesktopFile(Path path, PackageInfo.Source source) {
-        try {
-            Map<String, String> fields = new HashMap<>();
+        String type = null, name = null, comment = null, categories = null;
+        int nameRank = Integer.MAX_VALUE, commentRank = Integer.MAX_VALUE;
+
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
             boolean inDesktopEntry = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int start = 0;
+                while (start < line.length() && Character.isWhitespace(line.charAt(start))) start++;
+                if (start == line.length() || line.charAt(start) == '#') continue;
 
-            for (String raw : Files.readAllLines(path)) {
-                String line = raw.trim();
-                if (line.equals("[Desktop Entry]")) {
-                    inDesktopEntry = true;
+                if (line.charAt(start) == '[') {
+                    if (inDesktopEntry) break; // left [Desktop Entry] section
+                    inDesktopEntry = line.startsWith("[Desktop Entry]", start);
                     continue;
                 }
-                if (line.startsWith("[") && inDesktopEntry) break; // left [Desktop Entry] section
-                if (!inDesktopEntry || line.startsWith("#") || line.isBlank()) continue;
+                if (!inDesktopEntry) continue;
 
-                int eq = line.indexOf('=');
-                if (eq > 0) {
-                    // putIfAbsent so the first occurrence wins (spec compliant)
-                    fields.putIfAbsent(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+                int eq = line.indexOf('=', start);
+                if (eq <= start) continue;
+                int keyEnd = eq;
+                while (keyEnd > start && line.charAt(keyEnd - 1) == ' ') keyEnd--;
+
+                // First occurrence wins (spec compliant)
+                if (isKey(line, start, keyEnd, "Type")) {
+                    if (type == null) type = value(line, eq);
+                    if (!"Application".equals(type)) return null;
+                } else if (isKey(line, start, keyEnd, "NoDisplay")) {
+                    if ("true".equalsIgnoreCase(value(line, eq))) return null;
+                } else if (isKey(line, start, keyEnd, "Categories")) {
+                    if (categories == null) categories = value(line, eq);
+                } else if (isLocalized(line, start, keyEnd, "Name")) {
+                    int rank = localeRank(line, start + "Name[".length(), keyEnd - 1);
+                    if (rank < nameRank) { name = value(line, eq); nameRank = rank; }
+                } else if (isLocalized(line, start, keyEnd, "Comment")) {
+                    int rank = localeRank(line, start + "Comment[".length(), keyEnd - 1);
+                    if (rank < commentRank) { comment = value(line, eq); commentRank = rank; }
+                } else if (isKey(line, start, keyEnd, "Name")) {
+                    if (nameRank == Integer.MAX_VALUE) { name = value(line, eq); nameRank = UNLOCALIZED; }
+                } else if (isKey(line, start, keyEnd, "Comment")) {
+                    if (commentRank == Integer.MAX_VALUE) { comment = value(line, eq); commentRank = UNLOCALIZED; }
                 }
             }
+        } catch (Exception e) {
+            log.debug("Failed to parse {}: {}", path, e.getMessage());
+            return null;
+        }
 
-            if (!"Application".equals(fields.get("Type"))) return null;
-            if ("true".equalsIgnoreCase(fields.get("NoDisplay"))) return null;
+        if (!"Application".equals(type)) return null;
 
-            String filename = path.getFileName().toString();
-            String appId = filename.substring(0, filename.length() - ".desktop".length());
+        String filename = path.getFileName().toString();
+        String appId = filename.substring(0, filename.length() - ".desktop".length());
+        return new DesktopEntry(appId, name == null ? appId : name, splitCategories(categories),
+                comment == null ? "" : comment, source);
+    }
 
-            String name       = fields.getOrDefault("Name", appId);
-            String comment    = fields.getOrDefault("Comment", "");
-            String catsRaw    = fields.getOrDefault("Categories", "");
-            List<String> cats = Arrays.stream(catsRaw.split(";"))
-                    .map(String::trim)
-                    .filter(s -> !s.isBlank())
-                    .toList();
+    /**
+     * Locale variants to look for, best first, per the Desktop Entry spec:
+     * lang_COUNTRY@MODIFIER, lang_COUNTRY, lang@MODIFIER, lang.
+     */
+    private static final List<String> LOCALE_VARIANTS = localeVariants();
 
-            return new DesktopEntry(appId, name, cats, comment, source);
+    /** Rank of the untranslated key — worse than any matching locale variant. */
+    private static final int UNLOCALIZED = LOCALE_VARIANTS.size();
 
-        } catch (Exception e) {
-            log.debug("Failed to parse {}: {}", path, e.getMessage());
-            return null;
+    private static List<String> localeVariants() {
+        String locale = Stream.of("LC_ALL", "LC_MESSAGES", "LANG")
+                .map(System::getenv)
+                .filter(v -> v != null && !v.isBlank())
+                .findFirst()
+                .orElse("C");
+        if (locale.equals("C") || locale.startsWith("C.") || locale.equals("POSIX")) return List.of();
+
+        String modifier = "";
+        int at = locale.indexOf('@');
+        if (at >= 0) {
+            modifier = locale.substring(at);
+            locale = locale.substring(0, at);
+        }
+        int dot = locale.indexOf('.');
+        if (dot >= 0) locale = locale.substring(0, dot);
+        int underscore = locale.indexOf('_');
+        String lang = underscore >= 0 ? locale.substring(0, underscore) : locale;
+
+        List<String> variants = new ArrayList<>();
+        if (underscore >= 0 && !modifier.isEmpty()) variants.add(locale + modifier);
+        if (underscore >= 0) variants.add(locale);
+        if (!modifier.isEmpty()) variants.add(lang + modifier);
+        variants.add(lang);
+        return List.copyOf(variants);
+    }
+
+    /** Position of {@code line[from, to)} in {@link #LOCALE_VARIANTS}, or MAX_VALUE if not wanted. */
+    private static int localeRank(String line, int from, int to) {
+        for (int i = 0; i < LOCALE_VARIANTS.size(); i++) {
+            String variant = LOCALE_VARIANTS.get(i);
+            if (to - from == variant.length() && line.regionMatches(from, variant, 0, variant.length())) return i;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private static boolean isKey(String line, int start, int keyEnd, String key) {
+        return keyEnd - start == key.length() && line.startsWith(key, start);
+    }
+
+    /** True for {@code key[...]}. */
+    private static boolean isLocalized(String line, int start, int keyEnd, String key) {
+        return keyEnd - start > key.length() + 2
+                && line.startsWith(key, start)
+                && line.charAt(start + key.length()) == '['
+                && line.charAt(keyEnd - 1) == ']';
+    }
+
+    private static String value(String line, int eq) {
+        return line.substring(eq + 1).strip();
+    }
+
+    private static List<String> splitCategories(String raw) {
+        if (raw == null || raw.isEmpty()) return List.of();
+        List<String> cats = new ArrayList<>();
+        int from = 0;
+        while (from < raw.length()) {
+            int semi = raw.indexOf(';', from);
+            if (semi < 0) semi = raw.length();
+            String cat = raw.substring(from, semi).strip();
+            if (!cat.isEmpty()) cats.add(cat);
+            from = semi + 1;
         }
+        return List.copyOf(cats);
     }
 }
@@ -0,0 +1,431 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.PackageInfo;
+import com.linuxpkgmgr.model.PackageInfo.Installed;
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local, persistent index of the packages available in the configured repositories,
+ * built from the metadata the package managers already keep on disk
+ * (primary.xml, apt lists, pacman sync DBs, Flatpak appstream).
+ *
+ * Searches run in-process against this index instead of spawning
+ * {@code dnf search} / {@code apt-cache search} / {@code flatpak search}.
+ *
+ * The index is persisted to {@code pkg-mgr.catalog.dir} and rebuilt incrementally:
+ * each metadata file is re-parsed only when its mtime changes (e.g. after
+ * {@code dnf makecache} or {@code apt update}). Rebuilds run only on the background
+ * {@code catalog-refresh} thread — every {@code pkg-mgr.catalog.refresh-seconds} and after
+ * each search — so a search never parses metadata on the caller's thread; it answers
+ * from the current snapshot. When no readable metadata exists for a source, or any of
+ * its metadata files cannot be parsed (e.g. the zstd-compressed primary.xml of current
+ * Fedora releases), {@link #covers} returns false and callers fall back to the package
+ * manager's own search — a catalog holding only some repositories would report
+ * packages from the others as missing.
+ */
+@Slf4j
+@Service
+public class PackageCatalogService {
+
+    private static final int FORMAT_VERSION = 2;
+    private static final String INDEX_FILE = "catalog.bin.gz";
+
+    private final SystemPackageService packageService;
+
+    @Value("${pkg-mgr.catalog.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${pkg-mgr.catalog.dir:${user.home}/.cache/linux-pkg-mgr}")
+    private Path cacheDir;
+
+    @Value("${pkg-mgr.catalog.refresh-seconds:60}")
+    private long refreshSeconds;
+
+    /** Parsed contents of one metadata file, tagged with the mtime it was parsed at. */
+    private record FileIndex(Source source, long mtime, List<PackageInfo> entries) {}
+
+    /** A catalog entry with its search text pre-lowercased once at build time. */
+    private record Indexed(PackageInfo pkg, String name, String text) {}
+
+    /**
+     * Immutable view published to readers; swapped atomically on refresh.
+     * {@code failed} holds the discovered files that could not be parsed (with no entries),
+     * so an unchanged broken file is not re-parsed on every refresh.
+     */
+    private record Snapshot(Map<Path, FileIndex> files, Map<Path, FileIndex> failed,
+                            Map<Source, List<Indexed>> bySource, Instant builtAt) {
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), Map.of(), Instant.EPOCH);
+    }
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final AtomicBoolean refreshRequested = new AtomicBoolean();
+    private ScheduledExecutorService refresher;
+
+    public PackageCatalogService(SystemPackageService packageService) {
+        this.packageService = packageService;
+    }
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            log.info("Package catalog disabled");
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("catalog-refresh").daemon().factory());
+        // Loading and the first incremental refresh can take a while on a cold cache — keep startup fast
+        refresher.execute(this::load);
+        refresher.scheduleWithFixedDelay(this::refreshIfChanged, 0, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (refresher != null) refresher.shutdownNow();
+    }
+
+    /** Queues one background rebuild check unless one is already pending. */
+    private void requestRefresh() {
+        if (refresher == null || !refreshRequested.compareAndSet(false, true)) return;
+        try {
+            refresher.execute(() -> {
+                refreshRequested.set(false);
+                refreshIfChanged();
+            });
+        } catch (RejectedExecutionException e) {
+            refreshRequested.set(false);   // shutting down
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Queries
+    // -------------------------------------------------------------------------
+
+    /**
+     * True if the catalog holds metadata for {@code source} and can answer searches on its own,
+     * i.e. every metadata file discovered for it was parsed.
+     */
+    public boolean covers(Source source) {
+        Snapshot snap = snapshot;
+        return enabled && !snap.bySource().getOrDefault(source, List.of()).isEmpty()
+                && snap.failed().values().stream().noneMatch(f -> f.source() == source);
+    }
+
+    /** Time of the last successful (re)build, or {@link Instant#EPOCH} if never built. */
+    public Instant builtAt() {
+        return snapshot.builtAt();
+    }
+
+    /**
+     * Returns up to {@code limit} available packages from {@code source} whose name or summary
+     * contains every whitespace-separated term of {@code query} (case-insensitive).
+     * Exact name matches rank first, then name prefixes, then name substrings, then summary-only hits.
+     * Answers from the current snapshot and queues a background mtime check, so a repo
+     * refresh shows up in the searches after it has been re-parsed.
+     */
+    public List<PackageInfo> search(Source source, String query, int limit) {
+        requestRefresh();
+
+        String q = query == null ? "" : query.trim().toLowerCase();
+        String[] terms = q.split("\\s+");
+        record Ranked(Indexed entry, int rank) {}
+
+        List<Ranked> matches = new ArrayList<>();
+        for (Indexed e : snapshot.bySource().getOrDefault(source, List.of())) {
+            boolean all = true;
+            for (String t : terms) {
+                if (!e.text().contains(t)) { all = false; break; }
+            }
+            if (!all) continue;
+            int rank = e.name().equals(q) ? 0
+                    : e.name().startsWith(q) ? 1
+                    : e.name().contains(q) ? 2
+                    : 3;
+            matches.add(new Ranked(e, rank));
+        }
+
+        matches.sort(Comparator.comparingInt(Ranked::rank)
+                .thenComparingInt(r -> r.entry().name().length()));
+
+        // The same package usually appears in several repos (e.g. main + updates) — keep the first
+        Set<String> seen = new HashSet<>();
+        return matches.stream()
+                .map(r -> r.entry().pkg())
+                .filter(p -> seen.add(p.id()))
+                .limit(limit)
+                .toList();
+    }
+
+    // -------------------------------------------------------------------------
+    // Incremental rebuild
+    // -------------------------------------------------------------------------
+
+    /**
+     * Re-parses only the metadata files that appeared or changed since the last build and
+     * drops files that disappeared. Cheap (a handful of stat calls) when nothing changed.
+     */
+    public void refreshIfChanged() {
+        if (!enabled) return;
+        refreshIfChanged(discoverMetadata());
+    }
+
+    /** {@link #refreshIfChanged()} over the given metadata files instead of the discovered ones. */
+    void refreshIfChanged(Map<Path, Source> metadata) {
+        refreshLock.lock();
+        try {
+            rebuildChanged(metadata);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void rebuildChanged(Map<Path, Source> current) {
+        Map<Path, FileIndex> previous = snapshot.files();
+        Map<Path, FileIndex> previousFailed = snapshot.failed();
+        Map<Path, FileIndex> next = new LinkedHashMap<>();
+        Map<Path, FileIndex> failed = new LinkedHashMap<>();
+        int parsed = 0;
+
+        for (Map.Entry<Path, Source> e : current.entrySet()) {
+            Path file = e.getKey();
+            long mtime;
+            try {
+                mtime = Files.getLastModifiedTime(file).toMillis();
+            } catch (IOException ex) {
+                continue;
+            }
+            FileIndex old = previous.get(file);
+            if (old != null && old.mtime() == mtime) {
+                next.put(file, old);
+                continue;
+            }
+            FileIndex oldFailure = previousFailed.get(file);
+            if (oldFailure != null && oldFailure.mtime() == mtime) {
+                failed.put(file, oldFailure);
+                continue;
+            }
+            try {
+                List<PackageInfo> entries = parse(file);
+                next.put(file, new FileIndex(e.getValue(), mtime, entries));
+                parsed++;
+                log.debug("Catalog — parsed {} entries from {}", entries.size(), file);
+            } catch (Exception ex) {
+                failed.put(file, new FileIndex(e.getValue(), mtime, List.of()));
+                log.info("Catalog — cannot parse {} ({}); {} searches use the package manager",
+                        file, ex.getMessage(), e.getValue());
+            }
+        }
+
+        if (parsed == 0 && next.keySet().equals(previous.keySet())
+                && failed.keySet().equals(previousFailed.keySet())) return;
+
+        snapshot = buildSnapshot(next, failed, Instant.now());
+        log.info("Package catalog rebuilt — {} file(s) re-parsed, {} native / {} flatpak entries",
+                parsed,
+                snapshot.bySource().getOrDefault(Source.NATIVE, List.of()).size(),
+                snapshot.bySource().getOrDefault(Source.FLATPAK, List.of()).size());
+        save(snapshot);
+    }
+
+    private Snapshot buildSnapshot(Map<Path, FileIndex> files, Map<Path, FileIndex> failed, Instant builtAt) {
+        Map<Source, List<Indexed>> bySource = new HashMap<>();
+        for (FileIndex fi : files.values()) {
+            List<Indexed> list = bySource.computeIfAbsent(fi.source(), s -> new ArrayList<>());
+            for (PackageInfo p : fi.entries()) {
+                String name = p.name().toLowerCase();
+                String text = (name + " " + p.id().toLowerCase() + " " + p.summary().toLowerCase());
+                list.add(new Indexed(p, name, text));
+            }
+        }
+        bySource.replaceAll((s, l) -> List.copyOf(l));
+        return new Snapshot(Map.copyOf(files), Map.copyOf(failed), Map.copyOf(bySource), builtAt);
+    }
+
+    private List<PackageInfo> parse(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        if (name.startsWith("appstream.xml")) return RepoMetadataParser.parseAppstream(file);
+        return switch (packageService.getNativePackageManager()) {
+            case DNF, ZYPPER -> RepoMetadataParser.parsePrimaryXml(file);
+            case APT         -> RepoMetadataParser.parseAptPackages(file);
+            case PACMAN      -> RepoMetadataParser.parsePacmanSyncDb(file);
+            default          -> List.of();
+        };
+    }
+
+    // -------------------------------------------------------------------------
+    // Metadata discovery
+    // -------------------------------------------------------------------------
+
+    /** Lists the metadata files for the detected native PM plus any Flatpak appstream caches. */
+    private Map<Path, Source> discoverMetadata() {
+        Map<Path, Source> files = new LinkedHashMap<>();
+        switch (packageService.getNativePackageManager()) {
+            case DNF -> {
+                find(Path.of("/var/cache/libdnf5"), 3, "glob:**/repodata/*primary.xml*", files, Source.NATIVE);
+                find(Path.of("/var/cache/dnf"), 3, "glob:**/repodata/*primary.xml*", files, Source.NATIVE);
+            }
+            case ZYPPER -> find(Path.of("/var/cache/zypp/raw"), 3, "glob:**/repodata/*primary.xml*", files, Source.NATIVE);
+            case APT    -> find(Path.of("/var/lib/apt/lists"), 1, "glob:**/*_Packages{,.gz}", files, Source.NATIVE);
+            case PACMAN -> find(Path.of("/var/lib/pacman/sync"), 1, "glob:**/*.db", files, Source.NATIVE);
+            default     -> { }
+        }
+        if (packageService.isFlatpakAvailable()) {
+            findAppstream(Path.of("/var/lib/flatpak/appstream"), files);
+            findAppstream(Path.of(System.getProperty("user.home"), ".local/share/flatpak/appstream"), files);
+        }
+        return files;
+    }
+
+    /**
+     * Flatpak keeps {@code <remote>/<arch>/active}, a symlink to the current appstream
+     * checkout, which holds the same data as {@code appstream.xml} and {@code appstream.xml.gz}.
+     * The symlink is resolved directly (a plain walk does not follow it) and only one of
+     * the two files is taken, the uncompressed one when present.
+     */
+    private void findAppstream(Path root, Map<Path, Source> into) {
+        if (!Files.isDirectory(root)) return;
+        try (Stream<Path> remotes = Files.list(root)) {
+            for (Path remote : remotes.filter(Files::isDirectory).sorted().toList()) {
+                try (Stream<Path> arches = Files.list(remote)) {
+                    for (Path arch : arches.filter(Files::isDirectory).sorted().toList()) {
+                        Path active = arch.resolve("active");
+                        Path xml = active.resolve("appstream.xml");
+                        Path gz = active.resolve("appstream.xml.gz");
+                        if (Files.isRegularFile(xml)) into.put(xml, Source.FLATPAK);
+                        else if (Files.isRegularFile(gz)) into.put(gz, Source.FLATPAK);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Catalog — cannot scan {}: {}", root, e.getMessage());
+        }
+    }
+
+    private void find(Path root, int depth, String glob, Map<Path, Source> into, Source source) {
+        if (!Files.isDirectory(root)) return;
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher(glob);
+        try (Stream<Path> paths = Files.walk(root, depth)) {
+            // Unsupported compressions (.zst/.zck/.xz) match too — they fail to parse, which
+            // leaves the source to the package manager's own search
+            paths.filter(matcher::matches)
+                 .filter(Files::isRegularFile)
+                 .sorted()
+                 .forEach(p -> into.put(p, source));
+        } catch (IOException e) {
+            log.debug("Catalog — cannot scan {}: {}", root, e.getMessage());
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Persistence — gzip'd DataOutputStream, one block per metadata file, then the failed files
+    // -------------------------------------------------------------------------
+
+    private void load() {
+        Path file = cacheDir.resolve(INDEX_FILE);
+        if (!Files.isRegularFile(file)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != FORMAT_VERSION) return;
+            Instant builtAt = Instant.ofEpochMilli(in.readLong());
+            int fileCount = in.readInt();
+            Map<Path, FileIndex> files = new LinkedHashMap<>();
+            for (int i = 0; i < fileCount; i++) {
+                Path path = Path.of(in.readUTF());
+                Source source = Source.values()[in.readByte()];
+                long mtime = in.readLong();
+                int count = in.readInt();
+                List<PackageInfo> entries = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    entries.add(new PackageInfo(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+                            source, Installed.NO));
+                }
+                files.put(path, new FileIndex(source, mtime, entries));
+            }
+            int failedCount = in.readInt();
+            Map<Path, FileIndex> failed = new LinkedHashMap<>();
+            for (int i = 0; i < failedCount; i++) {
+                Path path = Path.of(in.readUTF());
+                failed.put(path, new FileIndex(Source.values()[in.readByte()], in.readLong(), List.of()));
+            }
+            refreshLock.lock();
+            try {
+                if (snapshot == Snapshot.EMPTY) snapshot = buildSnapshot(files, failed, builtAt);
+            } finally {
+                refreshLock.unlock();
+            }
+            log.info("Package catalog loaded from {} — {} metadata file(s)", file, fileCount);
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable package catalog {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void save(Snapshot snap) {
+        Path file = cacheDir.resolve(INDEX_FILE);
+        try {
+            Files.createDirectories(cacheDir);
+            Path tmp = Files.createTempFile(cacheDir, "catalog", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(snap.builtAt().toEpochMilli());
+                out.writeInt(snap.files().size());
+                for (Map.Entry<Path, FileIndex> e : snap.files().entrySet()) {
+                    FileIndex fi = e.getValue();
+                    out.writeUTF(e.getKey().toString());
+                    out.writeByte(fi.source().ordinal());
+                    out.writeLong(fi.mtime());
+                    out.writeInt(fi.entries().size());
+                    for (PackageInfo p : fi.entries()) {
+                        out.writeUTF(p.name());
+                        out.writeUTF(p.id());
+                        out.writeUTF(p.version());
+                        out.writeUTF(p.summary());
+                    }
+                }
+                out.writeInt(snap.failed().size());
+                for (Map.Entry<Path, FileIndex> e : snap.failed().entrySet()) {
+                    out.writeUTF(e.getKey().toString());
+                    out.writeByte(e.getValue().source().ordinal());
+                    out.writeLong(e.getValue().mtime());
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not persist package catalog to {}: {}", file, e.getMessage());
+        }
+    }
+}
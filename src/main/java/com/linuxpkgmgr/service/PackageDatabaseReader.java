@@ -0,0 +1,218 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.PackageInfo;
+import com.linuxpkgmgr.model.PackageInfo.Installed;
+import com.linuxpkgmgr.model.PackageInfo.Source;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads the native package databases directly instead of spawning
+ * {@code dpkg-query} / {@code apt-mark} / {@code pacman -Qe}.
+ *
+ *   APT:    /var/lib/dpkg/status (installed packages) minus the
+ *           {@code Auto-Installed: 1} entries in /var/lib/apt/extended_states
+ *   Pacman: /var/lib/pacman/local/<pkg>-<ver>/desc, keeping entries without
+ *           {@code %REASON% 1} (i.e. explicitly installed)
+ *
+ * The dpkg files can be several MB and are memory-mapped rather than read through
+ * a stream. Keys are matched on the raw bytes; only the values that are kept are
+ * decoded, so the file is never turned into one large char buffer.
+ *
+ * RPM databases (sqlite/ndb) have no JDK reader, so dnf and zypper stay on their
+ * subprocess paths.
+ */
+final class PackageDatabaseReader {
+
+    static final Path DPKG_STATUS         = Path.of("/var/lib/dpkg/status");
+    static final Path APT_EXTENDED_STATES = Path.of("/var/lib/apt/extended_states");
+    static final Path PACMAN_LOCAL        = Path.of("/var/lib/pacman/local");
+
+    private PackageDatabaseReader() {}
+
+    // -------------------------------------------------------------------------
+    // dpkg / apt
+    // -------------------------------------------------------------------------
+
+    /** Equivalent of {@code apt-mark showmanual} joined with {@code dpkg-query -W}. */
+    static List<PackageInfo> readDpkgManual() throws IOException {
+        return readDpkgManual(DPKG_STATUS, APT_EXTENDED_STATES);
+    }
+
+    static List<PackageInfo> readDpkgManual(Path dpkgStatus, Path extendedStates) throws IOException {
+        // "name:arch" of every auto-installed package; "name:*" for entries without an architecture
+        Set<String> auto = new HashSet<>();
+        Set<String> autoNames = new HashSet<>();
+        if (Files.isReadable(extendedStates)) {
+            forEachStanza(mapFile(extendedStates), Set.of("Package", "Architecture", "Auto-Installed"), f -> {
+                String name = f.get("Package");
+                if (name == null || !"1".equals(f.get("Auto-Installed"))) return;
+                auto.add(name + ":" + f.getOrDefault("Architecture", "*"));
+                autoNames.add(name);
+            });
+        }
+
+        // Keyed by name: multiarch installs of the same package collapse to one entry
+        Map<String, PackageInfo> manual = new LinkedHashMap<>();
+        forEachStanza(mapFile(dpkgStatus), Set.of("Package", "Architecture", "Status", "Version", "Description"), f -> {
+            String name   = f.get("Package");
+            String status = f.getOrDefault("Status", "");
+            if (name == null || !status.endsWith(" installed")
+                    || isAuto(name, f.get("Architecture"), auto, autoNames)) return;
+            manual.putIfAbsent(name, new PackageInfo(name, name,
+                    f.getOrDefault("Version", ""), f.getOrDefault("Description", ""),
+                    Source.NATIVE, Installed.YES));
+        });
+        return List.copyOf(manual.values());
+    }
+
+    /**
+     * apt records {@code Architecture: all} packages under the native architecture, and
+     * older extended_states files carry no architecture at all; both match by name.
+     */
+    private static boolean isAuto(String name, String arch, Set<String> auto, Set<String> autoNames) {
+        if (auto.contains(name + ":*")) return true;
+        if (arch == null || arch.equals("all")) return autoNames.contains(name);
+        return auto.contains(name + ":" + arch);
+    }
+
+    /**
+     * Walks an RFC-822 style control file stanza by stanza, handing {@code sink} only the
+     * requested keys (first line of each value). Continuation lines are skipped.
+     */
+    private static void forEachStanza(ByteBuffer text, Set<String> keys, Consumer<Map<String, String>> sink) {
+        List<byte[]> keyBytes = keys.stream().map(k -> (k + ":").getBytes(StandardCharsets.US_ASCII)).toList();
+        List<String> keyNames = List.copyOf(keys);
+        int len = text.limit();
+        Map<String, String> fields = new HashMap<>();
+
+        int pos = 0;
+        while (pos < len) {
+            int eol = endOfLine(text, pos);
+
+            if (eol == pos) {
+                if (!fields.isEmpty()) {
+                    sink.accept(fields);
+                    fields = new HashMap<>();
+                }
+            } else if (text.get(pos) != ' ' && text.get(pos) != '\t') {
+                for (int k = 0; k < keyBytes.size(); k++) {
+                    byte[] key = keyBytes.get(k);
+                    if (startsWith(text, pos, eol, key)) {
+                        fields.put(keyNames.get(k), decode(text, pos + key.length, eol).trim());
+                        break;
+                    }
+                }
+            }
+            pos = eol + 1;
+        }
+        if (!fields.isEmpty()) sink.accept(fields);
+    }
+
+    private static int endOfLine(ByteBuffer text, int pos) {
+        int len = text.limit();
+        while (pos < len && text.get(pos) != '\n') pos++;
+        return pos;
+    }
+
+    /** True if the line at {@code [pos, eol)} starts with {@code prefix} — checked without allocating. */
+    private static boolean startsWith(ByteBuffer text, int pos, int eol, byte[] prefix) {
+        if (pos + prefix.length > eol) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (text.get(pos + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /** Decodes {@code [from, to)}; malformed input is replaced rather than rejected. */
+    private static String decode(ByteBuffer text, int from, int to) {
+        return StandardCharsets.UTF_8.decode(text.slice(from, to - from)).toString();
+    }
+
+    private static ByteBuffer mapFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // pacman
+    // -------------------------------------------------------------------------
+
+    /** Equivalent of {@code pacman -Qe}. */
+    static List<PackageInfo> readPacmanExplicit() throws IOException {
+        return readPacmanExplicit(PACMAN_LOCAL);
+    }
+
+    static List<PackageInfo> readPacmanExplicit(Path localDb) throws IOException {
+        List<PackageInfo> result = new ArrayList<>();
+        try (Stream<Path> dirs = Files.list(localDb)) {
+            for (Path dir : (Iterable<Path>) dirs::iterator) {
+                Path desc = dir.resolve("desc");
+                if (!Files.isRegularFile(desc)) continue; // ALPM_DB_VERSION etc.
+                PackageInfo pkg = parsePacmanDesc(ByteBuffer.wrap(Files.readAllBytes(desc)));
+                if (pkg != null) result.add(pkg);
+            }
+        }
+        return result;
+    }
+
+    private static final byte[] PACMAN_NAME    = "%NAME%".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PACMAN_VERSION = "%VERSION%".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PACMAN_DESC    = "%DESC%".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PACMAN_REASON  = "%REASON%".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Parses a pacman {@code desc} file: each {@code %KEY%} line is followed by its value.
+     * Returns null for dependency installs ({@code %REASON%} = 1).
+     */
+    private static PackageInfo parsePacmanDesc(ByteBuffer text) {
+        String name = null, version = "", summary = "";
+        int len = text.limit();
+        int pos = 0;
+        while (pos < len) {
+            int eol = endOfLine(text, pos);
+            if (eol < len && text.get(pos) == '%') {
+                int valueEnd = endOfLine(text, eol + 1);
+                if (isLine(text, pos, eol, PACMAN_NAME)) {
+                    name = decode(text, eol + 1, valueEnd).trim();
+                } else if (isLine(text, pos, eol, PACMAN_VERSION)) {
+                    version = decode(text, eol + 1, valueEnd).trim();
+                } else if (isLine(text, pos, eol, PACMAN_DESC)) {
+                    summary = decode(text, eol + 1, valueEnd).trim();
+                } else if (isLine(text, pos, eol, PACMAN_REASON)) {
+                    if ("1".equals(decode(text, eol + 1, valueEnd).trim())) return null;
+                } else {
+                    pos = eol + 1;
+                    continue;
+                }
+                pos = valueEnd + 1;
+                continue;
+            }
+            pos = eol + 1;
+        }
+        if (name == null || name.isEmpty()) return null;
+        return new PackageInfo(name, name, version, summary, Source.NATIVE, Installed.YES);
+    }
+
+    /** True if the line at {@code [pos, eol)} is exactly {@code key}, ignoring a trailing CR. */
+    private static boolean isLine(ByteBuffer text, int pos, int eol, byte[] key) {
+        if (eol > pos && text.get(eol - 1) == '\r') eol--;
+        return eol - pos == key.length && startsWith(text, pos, eol, key);
+    }
+}
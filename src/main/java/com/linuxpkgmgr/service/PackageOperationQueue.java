@@ -0,0 +1,441 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+
+/**
+ * Serialises mutating package operations per backend (native, Flatpak) so two
+ * overlapping requests never race each other for the package database lock.
+ *
+ * Each backend has one lane, drained by a single virtual thread. Before an operation
+ * runs, the lane checks whether the package manager's lock is held by someone else
+ * (another apt/dnf, {@code packagekitd}, an unattended upgrade):
+ *   APT:    /var/lib/dpkg/lock-frontend, /var/lib/dpkg/lock   (fcntl — looked up in /proc/locks)
+ *   DNF:    rpm's .rpm.lock                                   (fcntl — looked up in /proc/locks)
+ *   Zypper: /run/zypp.pid plus the rpm lock
+ *   Pacman: /var/lib/pacman/db.lck                            (exists while held)
+ * and waits with exponential backoff, up to {@code pkg-mgr.operations.lock-wait-seconds},
+ * instead of failing. A run that still fails with a lock error is retried within the
+ * same budget.
+ *
+ * Operations queued behind a running one are merged when compatible (same backend, kind
+ * and transaction, contiguous in the queue): five queued installs become one
+ * {@code dnf install a b c d e}.
+ * If a merged transaction fails, its parts are re-run one by one so a bad name in one
+ * request cannot fail the others.
+ *
+ * {@link #cancelAll()} (the UI's Stop button) fails every queued operation and any
+ * operation still waiting for the lock with a {@link CancellationException}; a running
+ * transaction is stopped through {@link CommandExecutor#cancelAll()}.
+ */
+@Slf4j
+@Service
+public class PackageOperationQueue {
+
+    private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(15);
+
+    /** Messages package managers print when they lost the race for their lock. */
+    private static final Pattern LOCK_ERROR = Pattern.compile(
+            "Could not get lock|Unable to acquire the dpkg frontend lock|unable to lock database"
+                    + "|System management is locked|Waiting for process with pid"
+                    + "|Failed to obtain the transaction lock|database is locked",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Path PROC_LOCKS = Path.of("/proc/locks");
+    private static final Path PROC_MOUNTINFO = Path.of("/proc/self/mountinfo");
+
+    public enum Kind { INSTALL, REMOVE, UPDATE }
+
+    /** Runs one package-manager transaction for {@code packages}; an empty list means "all" (updates). */
+    @FunctionalInterface
+    public interface PackageTransaction {
+        String run(List<String> packages) throws IOException, InterruptedException;
+    }
+
+    private record Pending(Kind kind, List<String> packages, PackageTransaction transaction,
+                           CompletableFuture<String> result) {}
+
+    /** One backend's queue. Guarded by its own monitor. */
+    private static final class Lane {
+        final Deque<Pending> queue = new ArrayDeque<>();
+        boolean draining;
+        Thread worker;
+        boolean waitingForLock;  // worker is in the backoff sleep and may be interrupted
+    }
+
+    private final SystemPackageService packageService;
+    private final SudoService sudoService;
+    private final ShellOutputBus shellOutputBus;
+    private final Map<Source, Lane> lanes = new EnumMap<>(Source.class);
+
+    @Value("${pkg-mgr.operations.lock-wait-seconds:300}")
+    private long lockWaitSeconds;
+
+    public PackageOperationQueue(SystemPackageService packageService, SudoService sudoService,
+                                 ShellOutputBus shellOutputBus) {
+        this.packageService = packageService;
+        this.sudoService = sudoService;
+        this.shellOutputBus = shellOutputBus;
+        for (Source source : Source.values()) lanes.put(source, new Lane());
+    }
+
+    /**
+     * Queues the operation on {@code backend}'s lane and blocks until it has run,
+     * possibly merged with other queued operations of the same kind.
+     * Returns the transaction's output; failures are rethrown as thrown by {@code transaction}.
+     */
+    public String execute(Source backend, Kind kind, List<String> packages, PackageTransaction transaction)
+            throws IOException, InterruptedException {
+        Pending pending = new Pending(kind, List.copyOf(packages), transaction, new CompletableFuture<>());
+        Lane lane = lanes.get(backend);
+        synchronized (lane) {
+            lane.queue.add(pending);
+            if (!lane.draining) {
+                lane.draining = true;
+                lane.worker = Thread.ofVirtual().name("pkg-op-" + backend.name().toLowerCase())
+                        .start(() -> drain(backend, lane));
+            } else {
+                log.info("{} {} queued behind a running {} operation", kind, packages, backend);
+                shellOutputBus.emit("… queued: another " + backend.name().toLowerCase() + " operation is running");
+            }
+        }
+
+        try {
+            return pending.result().get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof InterruptedException ie) throw ie;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Fails every queued operation and every operation waiting for the package manager
+     * lock with a {@link CancellationException}. Running transactions are left to
+     * {@link CommandExecutor#cancelAll()}, which kills their processes.
+     */
+    public void cancelAll() {
+        for (Map.Entry<Source, Lane> entry : lanes.entrySet()) {
+            Lane lane = entry.getValue();
+            synchronized (lane) {
+                if (!lane.queue.isEmpty()) {
+                    log.info("Cancelling {} queued {} operation(s)", lane.queue.size(), entry.getKey());
+                    failQueued(lane, new CancellationException("Operation cancelled by user"));
+                }
+                if (lane.waitingForLock) lane.worker.interrupt();
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Lane worker
+    // -------------------------------------------------------------------------
+
+    private void drain(Source backend, Lane lane) {
+        try {
+            if (backend != Source.NATIVE) {
+                drainQueue(backend, lane);
+                return;
+            }
+            // Native operations run through sudo — keep its timestamp alive until the lane is empty
+            try (SudoService.CredentialHold ignored = sudoService.holdCredentials()) {
+                drainQueue(backend, lane);
+            }
+        } finally {
+            synchronized (lane) {
+                // drainQueue hands the lane back itself once it is empty; still owning it
+                // here means the worker died, so release the lane and fail what was queued
+                if (lane.worker == Thread.currentThread()) {
+                    lane.draining = false;
+                    lane.worker = null;
+                    failQueued(lane, new IllegalStateException(backend + " operation worker stopped unexpectedly"));
+                }
+            }
+        }
+    }
+
+    /** Caller holds the lane's monitor. */
+    private static void failQueued(Lane lane, RuntimeException cause) {
+        Pending p;
+        while ((p = lane.queue.poll()) != null) p.result().completeExceptionally(cause);
+    }
+
+    private void drainQueue(Source backend, Lane lane) {
+        while (true) {
+            List<Pending> batch = new ArrayList<>();
+            synchronized (lane) {
+                Pending head = lane.queue.poll();
+                if (head == null) {
+                    lane.draining = false;
+                    lane.worker = null;
+                    return;
+                }
+                batch.add(head);
+                // Merge only contiguous compatible operations — never reorder around a different kind
+                while (!lane.queue.isEmpty() && compatible(head, lane.queue.peek())) {
+                    batch.add(lane.queue.poll());
+                }
+            }
+            try {
+                runBatch(backend, lane, batch);
+            } catch (Throwable t) {
+                // Never leave a caller blocked on a batch the worker could not finish
+                batch.forEach(p -> p.result().completeExceptionally(t));
+                throw t;
+            }
+        }
+    }
+
+    /**
+     * Same kind and transaction, and either both target named packages or both target "all".
+     * The merged batch runs the head's transaction for everyone, so callers must pass the
+     * same {@link PackageTransaction} instance for operations that may be merged.
+     */
+    private static boolean compatible(Pending a, Pending b) {
+        return a.kind() == b.kind() && a.transaction() == b.transaction()
+                && a.packages().isEmpty() == b.packages().isEmpty();
+    }
+
+    private void runBatch(Source backend, Lane lane, List<Pending> batch) {
+        if (batch.size() == 1) {
+            runOne(backend, lane, batch.getFirst());
+            return;
+        }
+
+        Set<String> union = new LinkedHashSet<>();
+        batch.forEach(p -> union.addAll(p.packages()));
+        log.info("Merged {} queued {} operations into one transaction: {}", batch.size(), batch.getFirst().kind(), union);
+        try {
+            String output = runWithLockWait(backend, lane, batch.getFirst().transaction(), List.copyOf(union));
+            batch.forEach(p -> p.result().complete(output));
+        } catch (CancellationException e) {
+            // Stopped by the user — re-running the parts would undo the cancellation
+            batch.forEach(p -> p.result().completeExceptionally(e));
+        } catch (Exception e) {
+            log.warn("Merged {} transaction failed ({}), running its parts separately", backend, e.getMessage());
+            batch.forEach(p -> runOne(backend, lane, p));
+        }
+    }
+
+    private void runOne(Source backend, Lane lane, Pending pending) {
+        try {
+            pending.result().complete(runWithLockWait(backend, lane, pending.transaction(), pending.packages()));
+        } catch (Throwable t) {
+            pending.result().completeExceptionally(t);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Lock awareness
+    // -------------------------------------------------------------------------
+
+    private String runWithLockWait(Source backend, Lane lane, PackageTransaction transaction, List<String> packages)
+            throws IOException, InterruptedException {
+        Instant deadline = Instant.now().plusSeconds(lockWaitSeconds);
+        Duration backoff = MIN_BACKOFF;
+        while (true) {
+            String holder = backend == Source.NATIVE ? nativeLockHolder() : null;
+            if (holder == null) {
+                try {
+                    return transaction.run(packages);
+                } catch (RuntimeException e) {
+                    // Lost a race with another process that took the lock after our check
+                    if (e instanceof CancellationException || e.getMessage() == null
+                            || !LOCK_ERROR.matcher(e.getMessage()).find()) throw e;
+                    holder = "another process";
+                }
+            }
+
+            if (Instant.now().plus(backoff).isAfter(deadline)) {
+                throw new RuntimeException("Package manager is busy (lock held by " + holder + ") — gave up after "
+                        + lockWaitSeconds + "s. Try again once it has finished.");
+            }
+            log.info("Package manager lock held by {} — retrying in {}s", holder, backoff.toSeconds());
+            shellOutputBus.emit("… waiting for package manager lock held by " + holder);
+            awaitLock(lane, backoff);
+            backoff = backoff.multipliedBy(2).compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff.multipliedBy(2);
+        }
+    }
+
+    /** Sleeps {@code backoff} unless {@link #cancelAll()} interrupts the wait. */
+    private static void awaitLock(Lane lane, Duration backoff) {
+        synchronized (lane) {
+            lane.waitingForLock = true;
+        }
+        try {
+            Thread.sleep(backoff);
+        } catch (InterruptedException e) {
+            throw new CancellationException("Cancelled while waiting for the package manager lock");
+        } finally {
+            synchronized (lane) {
+                lane.waitingForLock = false;
+            }
+        }
+        // An interrupt that arrived just after the sleep ended is still a cancellation
+        if (Thread.interrupted()) {
+            throw new CancellationException("Cancelled while waiting for the package manager lock");
+        }
+    }
+
+    /** Describes who holds the native PM lock ("PID 812 (packagekitd)"), or null if it is free. */
+    private String nativeLockHolder() {
+        return switch (packageService.getNativePackageManager()) {
+            case APT    -> fcntlHolder(List.of(Path.of("/var/lib/dpkg/lock-frontend"), Path.of("/var/lib/dpkg/lock")));
+            case DNF    -> fcntlHolder(rpmLocks());
+            case ZYPPER -> {
+                String pidHolder = pidFileHolder(Path.of("/run/zypp.pid"));
+                yield pidHolder != null ? pidHolder : fcntlHolder(rpmLocks());
+            }
+            case PACMAN -> Files.exists(Path.of("/var/lib/pacman/db.lck")) ? "pacman (db.lck present)" : null;
+            default     -> null;
+        };
+    }
+
+    private static List<Path> rpmLocks() {
+        return List.of(Path.of("/usr/lib/sysimage/rpm/.rpm.lock"), Path.of("/var/lib/rpm/.rpm.lock"));
+    }
+
+    /**
+     * Looks the lock files up in /proc/locks, which lists every held POSIX/flock lock as
+     * {@code "1: POSIX ADVISORY WRITE <pid> <maj>:<min>:<inode> 0 EOF"} with major and
+     * minor in hex. Needs no access to the (root-only) lock files themselves. Matches on
+     * device and inode, since inode numbers repeat across filesystems.
+     *
+     * /proc/locks prints the superblock's device, which is not always what stat reports:
+     * a btrfs subvolume stats with its own anonymous device. The device is therefore taken
+     * from the file's mount in /proc/self/mountinfo; if that lookup fails and stat gave an
+     * anonymous device (major 0), the inode alone has to do.
+     */
+    private static String fcntlHolder(List<Path> lockFiles) {
+        List<String> mountinfo;
+        try {
+            mountinfo = Files.readAllLines(PROC_MOUNTINFO, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            mountinfo = List.of();
+        }
+
+        Set<String> keys = new LinkedHashSet<>();
+        Set<Long> anyDeviceInodes = new HashSet<>();
+        for (Path p : lockFiles) {
+            try {
+                Path real = p.toRealPath();
+                long ino = ((Number) Files.getAttribute(real, "unix:ino")).longValue();
+                String device = mountDevice(real, mountinfo);
+                if (device == null) {
+                    long dev = ((Number) Files.getAttribute(real, "unix:dev")).longValue();
+                    // glibc's dev_t layout (gnu_dev_major / gnu_dev_minor)
+                    long major = ((dev >>> 8) & 0xfff) | ((dev >>> 32) & ~0xfffL);
+                    long minor = (dev & 0xff) | ((dev >>> 12) & ~0xffL);
+                    if (major == 0) {
+                        anyDeviceInodes.add(ino);
+                        continue;
+                    }
+                    device = Long.toHexString(major) + ":" + Long.toHexString(minor);
+                }
+                keys.add(device + ":" + ino);
+            } catch (IOException | UnsupportedOperationException e) {
+                // lock file absent — nothing to hold
+            }
+        }
+        if ((keys.isEmpty() && anyDeviceInodes.isEmpty()) || !Files.isReadable(PROC_LOCKS)) return null;
+
+        try {
+            String pid = lockingPid(Files.readAllLines(PROC_LOCKS, StandardCharsets.US_ASCII), keys, anyDeviceInodes);
+            return pid != null ? describe(pid) : null;
+        } catch (IOException e) {
+            log.debug("Cannot read {}: {}", PROC_LOCKS, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Device ("maj:min", hex) of the mount {@code realFile} lives on: the longest mount
+     * point in {@code mountinfo} that contains it. Null if no line matches.
+     */
+    static String mountDevice(Path realFile, List<String> mountinfo) {
+        String device = null;
+        int longest = -1;
+        for (String line : mountinfo) {
+            // "36 35 0:31 /@ / rw,relatime shared:1 - btrfs /dev/vda3 rw" — fields 3 and 5
+            String[] f = line.split(" ");
+            if (f.length < 5) continue;
+            String[] majMin = f[2].split(":");
+            Path mountPoint = Path.of(f[4].replace("\\040", " ").replace("\\011", "\t")
+                    .replace("\\012", "\n").replace("\\134", "\\"));
+            if (majMin.length != 2 || !realFile.startsWith(mountPoint)
+                    || mountPoint.getNameCount() <= longest) continue;
+            try {
+                device = Long.toHexString(Long.parseLong(majMin[0])) + ":" + Long.toHexString(Long.parseLong(majMin[1]));
+                longest = mountPoint.getNameCount();
+            } catch (NumberFormatException e) {
+                // not a mountinfo line
+            }
+        }
+        return device;
+    }
+
+    /**
+     * PID holding a lock on one of {@code keys} ("maj:min:inode", hex device) or, for
+     * {@code anyDeviceInodes}, on that inode whatever the device. Null if none.
+     */
+    static String lockingPid(List<String> procLocks, Set<String> keys, Set<Long> anyDeviceInodes) {
+        for (String line : procLocks) {
+            if (line.contains("->")) continue; // waiters, not holders
+            String[] f = line.trim().split("\\s+");
+            if (f.length < 6) continue;
+            String[] dev = f[5].split(":");
+            if (dev.length != 3) continue;
+            try {
+                long ino = Long.parseLong(dev[2]);
+                String key = Long.toHexString(Long.parseLong(dev[0], 16)) + ":"
+                        + Long.toHexString(Long.parseLong(dev[1], 16)) + ":" + ino;
+                if (keys.contains(key) || anyDeviceInodes.contains(ino)) return f[4];
+            } catch (NumberFormatException e) {
+                // malformed line
+            }
+        }
+        return null;
+    }
+
+    private static String pidFileHolder(Path pidFile) {
+        try {
+            String pid = Files.readString(pidFile).trim();
+            return !pid.isEmpty() && Files.exists(Path.of("/proc", pid)) ? describe(pid) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String describe(String pid) {
+        try {
+            return "PID " + pid + " (" + Files.readString(Path.of("/proc", pid, "comm")).trim() + ")";
+        } catch (IOException e) {
+            return "PID " + pid;
+        }
+    }
+}
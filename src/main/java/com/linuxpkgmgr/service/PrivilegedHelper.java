@@ -0,0 +1,278 @@
+package com.linuxpkgmgr.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * A long-lived root shell started once through sudo and spoken to over its stdin/stdout
+ * pipes, so follow-up privileged commands cost one pipe round trip instead of a
+ * {@code sudo -n true} probe plus a fresh {@code sudo} fork.
+ *
+ * The helper only runs the package-manager and systemctl invocations this app builds
+ * itself. Each command has a fixed {@link Grammar}: optional global flags, one subcommand
+ * from an exact set, then flags from that command's own fixed list and operands that look
+ * like package or unit names (no leading {@code -}, no paths). Anything else — e.g.
+ * {@code apt-get -o …}, {@code pacman -U file}, {@code dnf --setopt=…} or a
+ * {@code ./local.rpm} operand — is refused. The check runs here before anything is sent
+ * and again inside the helper script, which refuses with exit 126.
+ *
+ * Its lifetime is bound to sudo's own credential timestamp by {@link SudoService}, so a
+ * lapsed timestamp means re-authenticating before the next privileged command.
+ *
+ * Wire protocol, one request at a time:
+ *   request:  argument count on one line, then one argument per line
+ *   response: the command's combined stdout/stderr, then {@code "<nonce> <exit code>"}
+ *   cancel:   a {@code "cancel"} line while a command runs sends it SIGTERM
+ * The nonce is random per helper, so no command output can forge the end-of-response line.
+ * Cancellation goes through the pipe because the JVM cannot signal root processes, and
+ * sudo does not relay signals sent from its own parent's process group.
+ */
+@Slf4j
+final class PrivilegedHelper implements AutoCloseable {
+
+    /**
+     * Accepted shape of one command: {@code cmd [globalFlags…] subcommand [flags… | operands…]}.
+     * For pacman the "subcommand" is its operation flag.
+     */
+    record Grammar(List<String> globalFlags, List<String> subcommands, List<String> flags) {}
+
+    static final Map<String, Grammar> GRAMMARS = Map.of(
+            "dnf",       new Grammar(List.of(), List.of("install", "remove", "upgrade"), List.of("-y")),
+            "apt-get",   new Grammar(List.of(), List.of("install", "remove", "upgrade"),
+                                     List.of("-y", "--only-upgrade", "--with-new-pkgs")),
+            "pacman",    new Grammar(List.of(), List.of("-S", "-R", "-Syu"), List.of("--needed", "--noconfirm")),
+            "zypper",    new Grammar(List.of("--non-interactive"), List.of("install", "remove", "update"), List.of()),
+            "systemctl", new Grammar(List.of(), List.of("start", "stop", "restart", "reload", "enable", "disable"),
+                                     List.of()));
+
+    /** Package / unit names: what the package managers and systemd accept, minus paths and options. */
+    private static final Pattern OPERAND = Pattern.compile("[A-Za-z0-9][A-Za-z0-9@._+:=~-]*");
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final String SCRIPT = """
+            nonce=$1
+            exec 3<&0
+            printf '%s ready\\n' "$nonce"
+            while IFS= read -r n <&3; do
+              [ "$n" = cancel ] && continue   # arrived after its command had already finished
+              set --
+              while [ "$n" -gt 0 ]; do
+                IFS= read -r a <&3 || exit 0
+                set -- "$@" "$a"
+                n=$((n - 1))
+              done
+              allowed=1
+              case "$1" in
+            @GRAMMARS@
+                *) allowed= ;;
+              esac
+              phase=command   # command → globals/subcommand → rest
+              for a; do
+                [ -n "$allowed" ] || break
+                [ -n "$a" ] || { allowed=; break; }
+                case $phase in
+                  command) phase=subcommand; continue ;;
+                  subcommand)
+                    case " $globals " in *" $a "*) continue ;; esac
+                    case " $subs " in *" $a "*) phase=rest; continue ;; esac
+                    allowed= ;;
+                  rest)
+                    case "$a" in
+                      -*) case " $flags " in *" $a "*) ;; *) allowed= ;; esac ;;
+                      [A-Za-z0-9]*) case "$a" in *[!A-Za-z0-9@._+:=~-]*) allowed= ;; esac ;;
+                      *) allowed= ;;
+                    esac ;;
+                esac
+              done
+              [ "$phase" = rest ] || allowed=
+              if [ -z "$allowed" ]; then
+                printf 'not allowed: %s %s\\n' "$1" "$2"
+                rc=126
+              else
+                "$@" </dev/null 2>&1 &
+                pid=$!
+                # Reads control lines while the command runs; read(1) on a pipe never over-reads
+                ( while IFS= read -r ctl; do [ "$ctl" = cancel ] && kill -TERM "$pid"; done ) <&3 &
+                watcher=$!
+                wait "$pid"
+                rc=$?
+                kill "$watcher" 2>/dev/null
+                wait "$watcher" 2>/dev/null
+              fi
+              printf '%s %d\\n' "$nonce" "$rc"
+            done
+            """
+            .replace("@GRAMMARS@", scriptGrammars());
+
+    private final Process process;
+    private final Writer stdin;
+    private final BufferedReader stdout;
+    private final String nonce;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Wraps an already started helper process; {@link #start()} is the way to get one. */
+    PrivilegedHelper(Process process, String nonce) {
+        this.process = process;
+        this.nonce = nonce;
+        this.stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        this.stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /** One {@code case} branch per command, setting the word lists the script checks against. */
+    private static String scriptGrammars() {
+        StringBuilder branches = new StringBuilder();
+        GRAMMARS.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> branches
+                .append("    ").append(e.getKey()).append(") ")
+                .append("globals='").append(String.join(" ", e.getValue().globalFlags())).append("'; ")
+                .append("subs='").append(String.join(" ", e.getValue().subcommands())).append("'; ")
+                .append("flags='").append(String.join(" ", e.getValue().flags())).append("' ;;\n"));
+        return branches.toString().stripTrailing();
+    }
+
+    /** True if {@code command} matches its {@link Grammar}; the helper script applies the same rules. */
+    static boolean allows(List<String> command) {
+        if (command.size() < 2) return false;
+        Grammar grammar = GRAMMARS.get(command.get(0));
+        if (grammar == null) return false;
+
+        int i = 1;
+        while (i < command.size() && grammar.globalFlags().contains(command.get(i))) i++;
+        if (i == command.size() || !grammar.subcommands().contains(command.get(i))) return false;
+        for (String arg : command.subList(i + 1, command.size())) {
+            boolean ok = arg.startsWith("-") ? grammar.flags().contains(arg) : OPERAND.matcher(arg).matches();
+            if (!ok) return false;   // also rules out newlines, which would shift the one-per-line protocol
+        }
+        return true;
+    }
+
+    /**
+     * Starts the helper with {@code sudo -n}, i.e. the sudo credential cache must already
+     * be warm. Returns null if sudo refused or the helper did not report ready in time.
+     */
+    static PrivilegedHelper start() throws IOException, InterruptedException {
+        String nonce = UUID.randomUUID().toString();
+        Process process = new ProcessBuilder("sudo", "-n", "--", "/bin/sh", "-c", SCRIPT, "pkg-mgr-helper", nonce)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        PrivilegedHelper helper = new PrivilegedHelper(process, nonce);
+
+        // readLine() cannot time out, so a watchdog kills a helper that never answers
+        Thread watchdog = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(STARTUP_TIMEOUT);
+                process.destroyForcibly();
+            } catch (InterruptedException ignored) {
+                // started in time
+            }
+        });
+        String ready;
+        try {
+            ready = helper.stdout.readLine();
+        } finally {
+            watchdog.interrupt();
+        }
+
+        if (!(nonce + " ready").equals(ready)) {
+            log.debug("Privileged helper did not start (sudo exit {})",
+                    process.waitFor(1, TimeUnit.SECONDS) ? process.exitValue() : "n/a");
+            helper.close();
+            return null;
+        }
+        log.info("Privileged helper started (pid {})", process.pid());
+        return helper;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /** True while a command claimed through {@link #tryClaim()} is running. */
+    boolean isBusy() {
+        return lock.isLocked();
+    }
+
+    /**
+     * Claims the helper for one command. Returns false if it is busy with another one —
+     * the caller then falls back to a one-shot sudo. Pair with {@link #release()}.
+     */
+    boolean tryClaim() {
+        return lock.tryLock();
+    }
+
+    void release() {
+        lock.unlock();
+    }
+
+    /** {@code command} as an {@link CommandExecutor.ExternalCommand}; run it only while claimed. */
+    CommandExecutor.ExternalCommand command(List<String> command) {
+        return new CommandExecutor.ExternalCommand() {
+            @Override
+            public int run(Consumer<String> sink) throws IOException {
+                send(command.size() + "\n" + String.join("\n", command) + "\n");
+
+                String sentinel = nonce + " ";
+                String line;
+                while ((line = stdout.readLine()) != null) {
+                    int at = line.indexOf(sentinel);
+                    if (at < 0) {
+                        sink.accept(line);
+                        continue;
+                    }
+                    // Output without a trailing newline runs into the sentinel on the same line
+                    if (at > 0) sink.accept(line.substring(0, at));
+                    int exitCode = Integer.parseInt(line.substring(at + sentinel.length()).trim());
+                    log.debug("helper exit code: {}", exitCode);
+                    return exitCode;
+                }
+                throw new IOException("Privileged helper exited unexpectedly while running: " + String.join(" ", command));
+            }
+
+            @Override
+            public void cancel() {
+                try {
+                    send("cancel\n");
+                } catch (IOException e) {
+                    log.debug("Cannot send cancel to privileged helper: {}", e.getMessage());
+                }
+            }
+        };
+    }
+
+    private void send(String text) throws IOException {
+        synchronized (stdin) {
+            stdin.write(text);
+            stdin.flush();
+        }
+    }
+
+    /** Closing stdin ends the helper's read loop; a helper stuck mid-command is killed. */
+    @Override
+    public void close() {
+        try {
+            stdin.close();
+        } catch (IOException ignored) {
+            // already gone
+        }
+        try {
+            if (!process.waitFor(2, TimeUnit.SECONDS)) process.destroyForcibly();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
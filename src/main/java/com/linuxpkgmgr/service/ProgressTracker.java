@@ -0,0 +1,356 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.ProgressEvent;
+import com.linuxpkgmgr.model.ProgressEvent.Phase;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns the output of one install / update / remove command into {@link ProgressEvent}s.
+ *
+ * {@link CommandExecutor} feeds it every output line. Lines that only report progress
+ * (per-package download rows, "Installing : foo 3/12", "(Reading database ... 45%") are
+ * published as events and left out of the text returned to the caller. {@link #summary()}
+ * then replaces them with a single line, so the LLM sees "downloaded 12 package(s)
+ * (143.2 MB), installed 12" instead of hundreds of progress rows.
+ *
+ * Everything else — errors, conflicts, "already installed" — is kept verbatim.
+ * Not thread-safe: one tracker per command, fed from its reader thread.
+ */
+final class ProgressTracker {
+
+    private enum Backend { FLATPAK, DNF, APT, PACMAN, ZYPPER }
+
+    private static final String SIZE = "([\\d.,]+\\s*[kKMGT]?i?B|[\\d.,]+\\s*[kKMGT])";
+
+    private static final Pattern FLATPAK_STEP = Pattern.compile(
+            "^(Installing|Updating|Uninstalling)\\s+(\\d+)/(\\d+)\\S*(?:.*?(\\d{1,3})%)?");
+
+    private static final Pattern DNF4_DOWNLOAD = Pattern.compile(
+            "^\\((\\d+)/(\\d+)\\):\\s+(\\S+).*\\|\\s*" + SIZE + "\\s+\\S+$");
+    private static final Pattern DNF4_STEP = Pattern.compile(
+            "^(Preparing|Installing|Upgrading|Cleanup|Erasing|Removing|Verifying|Reinstalling|Downgrading"
+                    + "|Obsoleting|Running scriptlet)\\s*:\\s+(\\S+)\\s+(\\d+)/(\\d+)$");
+    private static final Pattern DNF5_STEP = Pattern.compile(
+            "^\\[\\s*(\\d+)/(\\d+)]\\s+(.+?)\\s+(\\d{1,3})%\\s*\\|(?:.*?\\|\\s*" + SIZE + "\\s*\\|)?");
+    private static final Pattern DNF_TOTAL = Pattern.compile(
+            "^(?:Total download size:|Total size of inbound packages is)\\s*" + SIZE);
+
+    private static final Pattern APT_GET = Pattern.compile(
+            "^Get:(\\d+)\\s.*\\s(\\S+)\\s+\\S+\\s+\\S+\\s+\\[" + SIZE + "]$");
+    private static final Pattern APT_NEED = Pattern.compile(
+            "^Need to get (?:[\\d.,]+\\s*[kMGT]?B/)?" + SIZE + " of archives");
+    private static final Pattern APT_COUNTS = Pattern.compile(
+            "^(\\d+) upgraded, (\\d+) newly installed, (\\d+) to remove");
+    private static final Pattern APT_STEP = Pattern.compile("^(Unpacking|Setting up|Removing|Purging)\\s+(\\S+)");
+    private static final Pattern APT_NOISE = Pattern.compile(
+            "^(?:\\(Reading database \\.\\.\\.|Preparing to unpack|Selecting previously unselected package)");
+
+    private static final Pattern PACMAN_STEP = Pattern.compile(
+            "^\\(\\s*(\\d+)/(\\d+)\\)\\s+(installing|upgrading|reinstalling|downgrading|removing|checking keys in keyring"
+                    + "|checking package integrity|loading package files|checking for file conflicts"
+                    + "|checking available disk space)(?:\\s+(\\S+))?");
+    private static final Pattern PACMAN_DOWNLOAD = Pattern.compile(
+            "^(?:downloading\\s+(\\S+?)(?:\\.\\.\\.)?|(\\S+)\\s+downloading\\.\\.\\.)$");
+    private static final Pattern PACMAN_TOTAL = Pattern.compile("^Total Download Size:\\s+" + SIZE);
+
+    private static final Pattern ZYPPER_DOWNLOAD = Pattern.compile(
+            "^Retrieving package\\s+(\\S+).*?\\((\\d+)/(\\d+)\\)(?:,\\s*" + SIZE + ")?");
+    private static final Pattern ZYPPER_STEP = Pattern.compile(
+            "^\\((\\d+)/(\\d+)\\)\\s+(Installing|Removing|Updating)\\s*:?\\s+(\\S+)");
+    private static final Pattern ZYPPER_TOTAL = Pattern.compile("^Overall download size:\\s+" + SIZE);
+    private static final Pattern ZYPPER_NOISE = Pattern.compile("^Retrieving:\\s");
+
+    private static final Pattern SIZE_PARTS = Pattern.compile("([\\d.,]+)\\s*([kKMGT]?)(i?)");
+
+    private final Backend backend;
+    private final String operation;
+    private final Consumer<ProgressEvent> listener;
+
+    private final Map<Phase, Set<String>> items = new EnumMap<>(Phase.class);
+    private long downloadedBytes;
+    private long totalBytes;
+    private int aptSteps;        // unpack + setup + remove lines announced by the apt summary
+    private int aptStep;
+    private int omitted;
+    private ProgressEvent last;
+
+    private ProgressTracker(Backend backend, String operation, Consumer<ProgressEvent> listener) {
+        this.backend = backend;
+        this.operation = operation;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns a tracker if {@code command} is a package transaction we know how to follow
+     * (a leading {@code sudo} and its options are skipped), or null for anything else —
+     * queries such as {@code dnf check-update} are never filtered.
+     */
+    static ProgressTracker forCommand(List<String> command, Consumer<ProgressEvent> listener) {
+        int i = 0;
+        if (i < command.size() && command.get(i).equals("sudo")) {
+            i++;
+            while (i < command.size() && command.get(i).startsWith("-")) {
+                if (command.get(i++).equals("--")) break;
+            }
+        }
+        if (i >= command.size()) return null;
+
+        String program = command.get(i).substring(command.get(i).lastIndexOf('/') + 1);
+        List<String> args = command.subList(i + 1, command.size());
+        String verb = args.stream().filter(a -> !a.startsWith("-")).findFirst().orElse("");
+
+        Backend backend = switch (program) {
+            case "flatpak" -> Set.of("install", "update", "uninstall", "remove").contains(verb) ? Backend.FLATPAK : null;
+            case "dnf", "dnf5", "yum" -> Set.of("install", "upgrade", "update", "remove", "erase", "reinstall",
+                    "downgrade", "distro-sync").contains(verb) ? Backend.DNF : null;
+            case "apt-get", "apt" -> Set.of("install", "upgrade", "dist-upgrade", "full-upgrade", "remove",
+                    "purge", "autoremove").contains(verb) ? Backend.APT : null;
+            case "zypper" -> Set.of("install", "in", "update", "up", "dist-upgrade", "dup", "remove", "rm",
+                    "patch").contains(verb) ? Backend.ZYPPER : null;
+            case "pacman" -> args.stream().anyMatch(a -> a.matches("-[SUR][a-z]*") && !a.matches("-S.*[silgp].*"))
+                    ? Backend.PACMAN : null;
+            default -> null;
+        };
+        if (backend == null) return null;
+        String label = program + (verb.isEmpty() ? "" : " " + verb);
+        return new ProgressTracker(backend, label, listener);
+    }
+
+    /**
+     * Parses one output line, publishing an event if it reports progress.
+     * Returns false if the line carried nothing but progress and can be dropped.
+     */
+    boolean keep(String line) {
+        String l = line.strip();
+        if (l.isEmpty()) return true;
+        boolean progressOnly = switch (backend) {
+            case FLATPAK -> flatpak(l);
+            case DNF     -> dnf(l);
+            case APT     -> apt(l);
+            case PACMAN  -> pacman(l);
+            case ZYPPER  -> zypper(l);
+        };
+        if (progressOnly) omitted++;
+        return !progressOnly;
+    }
+
+    /** One line summarising what the omitted progress lines said, or null if nothing was tracked. */
+    String summary() {
+        List<String> parts = new ArrayList<>();
+        int downloads = count(Phase.DOWNLOADING);
+        if (downloads > 0) {
+            parts.add("downloaded " + downloads + " package(s)"
+                    + (downloadedBytes > 0 ? " (" + formatSize(downloadedBytes) + ")" : ""));
+        }
+        if (count(Phase.INSTALLING) > 0)  parts.add("installed " + count(Phase.INSTALLING));
+        if (count(Phase.UPDATING) > 0)    parts.add("updated " + count(Phase.UPDATING));
+        if (count(Phase.REMOVING) > 0)    parts.add("removed " + count(Phase.REMOVING));
+        if (count(Phase.CONFIGURING) > 0) parts.add("configured " + count(Phase.CONFIGURING));
+        if (parts.isEmpty() && omitted == 0) return null;
+        return "[" + operation + ": " + (parts.isEmpty() ? "no package progress reported" : String.join(", ", parts))
+                + (omitted > 0 ? "; " + omitted + " progress line(s) omitted" : "") + "]";
+    }
+
+    /** Publishes the closing {@link Phase#DONE} event if any progress was reported. */
+    void finish() {
+        if (last != null && !last.isDone()) {
+            publish(new ProgressEvent(operation, Phase.DONE, null, 0, 0, downloadedBytes, totalBytes, 100));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Per-backend parsing — each returns true for a progress-only line
+    // -------------------------------------------------------------------------
+
+    private boolean flatpak(String l) {
+        Matcher m = FLATPAK_STEP.matcher(l);
+        if (!m.find()) return false;
+        Phase phase = phaseOf(m.group(1));
+        int pct = m.group(4) != null ? Integer.parseInt(m.group(4)) : -1;
+        report(phase, null, Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)), 0, pct);
+        return true;
+    }
+
+    private boolean dnf(String l) {
+        Matcher m;
+        if ((m = DNF_TOTAL.matcher(l)).find()) {
+            totalBytes = parseSize(m.group(1));
+            return false;
+        }
+        if ((m = DNF4_DOWNLOAD.matcher(l)).find()) {
+            report(Phase.DOWNLOADING, m.group(3), Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)),
+                    parseSize(m.group(4)), 100);
+            return true;
+        }
+        if ((m = DNF4_STEP.matcher(l)).find()) {
+            report(phaseOf(m.group(1)), m.group(2), Integer.parseInt(m.group(3)), Integer.parseInt(m.group(4)), 0, 100);
+            return true;
+        }
+        if ((m = DNF5_STEP.matcher(l)).find()) {
+            // "[3/12] Installing foo-1.0   100% | ..." during the transaction, "[3/12] foo-1.0 ..." while downloading
+            String text = m.group(3);
+            int space = text.indexOf(' ');
+            Phase phase = space > 0 ? phaseOf(text.substring(0, space)) : null;
+            String item = phase != null ? text.substring(space + 1).strip() : text;
+            int pct = Integer.parseInt(m.group(4));
+            long bytes = phase == null && pct == 100 && m.group(5) != null ? parseSize(m.group(5)) : 0;
+            report(phase != null ? phase : Phase.DOWNLOADING, item,
+                    Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), bytes, pct);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean apt(String l) {
+        Matcher m;
+        if ((m = APT_NEED.matcher(l)).find()) {
+            totalBytes = parseSize(m.group(1));
+            return false;
+        }
+        if ((m = APT_COUNTS.matcher(l)).find()) {
+            int changed = Integer.parseInt(m.group(1)) + Integer.parseInt(m.group(2));
+            aptSteps = 2 * changed + Integer.parseInt(m.group(3));
+            return false;
+        }
+        if ((m = APT_GET.matcher(l)).find()) {
+            report(Phase.DOWNLOADING, m.group(2), Integer.parseInt(m.group(1)), 0, parseSize(m.group(3)), 100);
+            return true;
+        }
+        if ((m = APT_STEP.matcher(l)).find()) {
+            report(phaseOf(m.group(1)), m.group(2), ++aptStep, aptSteps, 0, 100);
+            return true;
+        }
+        return APT_NOISE.matcher(l).find();
+    }
+
+    private boolean pacman(String l) {
+        Matcher m;
+        if ((m = PACMAN_TOTAL.matcher(l)).find()) {
+            totalBytes = parseSize(m.group(1));
+            return false;
+        }
+        if ((m = PACMAN_STEP.matcher(l)).find()) {
+            report(phaseOf(m.group(3)), m.group(4), Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), 0, 100);
+            return true;
+        }
+        if ((m = PACMAN_DOWNLOAD.matcher(l)).find()) {
+            String item = m.group(1) != null ? m.group(1) : m.group(2);
+            report(Phase.DOWNLOADING, item, count(Phase.DOWNLOADING) + 1, 0, 0, -1);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean zypper(String l) {
+        Matcher m;
+        if ((m = ZYPPER_TOTAL.matcher(l)).find()) {
+            totalBytes = parseSize(m.group(1));
+            return false;
+        }
+        if ((m = ZYPPER_DOWNLOAD.matcher(l)).find()) {
+            long bytes = m.group(4) != null ? parseSize(m.group(4)) : 0;
+            report(Phase.DOWNLOADING, m.group(1), Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)), bytes, 100);
+            return true;
+        }
+        if ((m = ZYPPER_STEP.matcher(l)).find()) {
+            report(phaseOf(m.group(3)), m.group(4), Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), 0, 100);
+            return true;
+        }
+        return ZYPPER_NOISE.matcher(l).find();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Records a step and publishes an event if the phase, item or overall percentage
+     * moved. {@code stepPercent} is how far the current step is (-1 if unknown).
+     */
+    private void report(Phase phase, String item, int step, int steps, long bytes, int stepPercent) {
+        boolean firstSight = items.computeIfAbsent(phase, p -> new LinkedHashSet<>())
+                .add(item != null ? item : "#" + step);
+        if (firstSight) downloadedBytes += bytes;
+
+        int percent;
+        if (phase == Phase.DOWNLOADING && totalBytes > 0 && downloadedBytes > 0) {
+            percent = (int) (100 * downloadedBytes / totalBytes);
+        } else if (steps > 0 && step > 0) {
+            double done = stepPercent >= 0 ? (step - 1) + stepPercent / 100.0 : step - 1;
+            percent = (int) (100 * done / steps);
+        } else {
+            percent = -1;
+        }
+        percent = Math.min(percent, 100);
+
+        if (last != null && last.phase() == phase && last.percent() == percent && last.step() == step) return;
+        publish(new ProgressEvent(operation, phase, item, step, steps, downloadedBytes, totalBytes, percent));
+    }
+
+    private void publish(ProgressEvent event) {
+        last = event;
+        listener.accept(event);
+    }
+
+    private int count(Phase phase) {
+        Set<String> seen = items.get(phase);
+        return seen == null ? 0 : seen.size();
+    }
+
+    private static Phase phaseOf(String verb) {
+        String v = verb.toLowerCase(Locale.ROOT);
+        if (v.startsWith("install") || v.startsWith("reinstall") || v.startsWith("unpack")) return Phase.INSTALLING;
+        if (v.startsWith("upgrad") || v.startsWith("updat") || v.startsWith("downgrad")
+                || v.startsWith("cleanup") || v.startsWith("obsolet") || v.startsWith("replac")) return Phase.UPDATING;
+        if (v.startsWith("remov") || v.startsWith("eras") || v.startsWith("uninstall") || v.startsWith("purg")) {
+            return Phase.REMOVING;
+        }
+        if (v.startsWith("setting up") || v.startsWith("running")) return Phase.CONFIGURING;
+        if (v.startsWith("verif") || v.startsWith("check")) return Phase.VERIFYING;
+        if (v.startsWith("prepar") || v.startsWith("loading")) return Phase.PREPARING;
+        return null;
+    }
+
+    /** "234 kB", "1.2 MiB", "143 M" (dnf4) → bytes; 0 if unparseable. */
+    static long parseSize(String text) {
+        Matcher m = SIZE_PARTS.matcher(text);
+        if (!m.find()) return 0;
+        double value;
+        try {
+            value = Double.parseDouble(m.group(1).replace(",", ""));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        int base = m.group(3).isEmpty() && !m.group(2).isEmpty() && text.contains("B") ? 1000 : 1024;
+        int exponent = switch (m.group(2).toUpperCase(Locale.ROOT)) {
+            case "K" -> 1;
+            case "M" -> 2;
+            case "G" -> 3;
+            case "T" -> 4;
+            default  -> 0;
+        };
+        return (long) (value * Math.pow(base, exponent));
+    }
+
+    static String formatSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        String[] units = {"KiB", "MiB", "GiB", "TiB"};
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format(Locale.ROOT, "%.1f %s", value, units[unit]);
+    }
+}
@@ -0,0 +1,275 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.PackageInfo;
+import com.linuxpkgmgr.model.PackageInfo.Installed;
+import com.linuxpkgmgr.model.PackageInfo.Source;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Parses on-disk repository metadata into {@link PackageInfo} records
+ * ({@link Installed#NO} — these describe what is available, not what is installed).
+ *
+ * Supported formats:
+ *   rpm-md primary.xml (dnf, zypper raw cache)   — plain or .gz
+ *   apt lists/*_Packages                         — plain or .gz
+ *   pacman sync/*.db                              — gzip'd tar of {@code <pkg>/desc} files
+ *   Flatpak appstream.xml                         — plain or .gz
+ *
+ * Files in other compressions (zstd, xz, zchunk) are rejected with an {@link IOException}
+ * so the caller can fall back to the package manager's own search.
+ */
+final class RepoMetadataParser {
+
+    private static final int TAR_BLOCK = 512;
+
+    private RepoMetadataParser() {}
+
+    // -------------------------------------------------------------------------
+    // rpm-md primary.xml
+    // -------------------------------------------------------------------------
+
+    /**
+     * Reads {@code <package>} elements: {@code <name>}, {@code <arch>},
+     * {@code <version ver= rel=>}, {@code <summary>}. Source RPMs are skipped.
+     */
+    static List<PackageInfo> parsePrimaryXml(Path file) throws IOException {
+        List<PackageInfo> result = new ArrayList<>();
+        try (InputStream in = open(file)) {
+            XMLStreamReader xml = xmlFactory().createXMLStreamReader(in);
+            String name = null, arch = null, version = "", summary = "";
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (xml.getLocalName()) {
+                        case "package" -> { name = null; arch = null; version = ""; summary = ""; }
+                        case "name"    -> name = xml.getElementText().trim();
+                        case "arch"    -> arch = xml.getElementText().trim();
+                        case "summary" -> summary = xml.getElementText().trim();
+                        case "version" -> {
+                            String ver = xml.getAttributeValue(null, "ver");
+                            String rel = xml.getAttributeValue(null, "rel");
+                            version = ver == null ? "" : rel == null ? ver : ver + "-" + rel;
+                        }
+                        default -> { }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT
+                        && "package".equals(xml.getLocalName())
+                        && name != null && !"src".equals(arch)) {
+                    result.add(available(name, name, version, summary, Source.NATIVE));
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed primary.xml: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    // -------------------------------------------------------------------------
+    // apt Packages
+    // -------------------------------------------------------------------------
+
+    /** Reads RFC-822 style stanzas; only Package, Version and the first Description line are kept. */
+    static List<PackageInfo> parseAptPackages(Path file) throws IOException {
+        List<PackageInfo> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(file), StandardCharsets.UTF_8))) {
+            String name = null, version = "", summary = "";
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    if (name != null) result.add(available(name, name, version, summary, Source.NATIVE));
+                    name = null; version = ""; summary = "";
+                } else if (line.startsWith("Package: ")) {
+                    name = line.substring(9).trim();
+                } else if (line.startsWith("Version: ")) {
+                    version = line.substring(9).trim();
+                } else if (line.startsWith("Description: ")) {
+                    summary = line.substring(13).trim();
+                }
+            }
+            if (name != null) result.add(available(name, name, version, summary, Source.NATIVE));
+        }
+        return result;
+    }
+
+    // -------------------------------------------------------------------------
+    // pacman sync db
+    // -------------------------------------------------------------------------
+
+    /**
+     * Walks the tar archive block by block and parses every {@code <pkg>/desc} entry:
+     * <pre>
+     *   %NAME%
+     *   vim
+     *
+     *   %VERSION%
+     *   9.1.0-1
+     * </pre>
+     */
+    static List<PackageInfo> parsePacmanSyncDb(Path file) throws IOException {
+        List<PackageInfo> result = new ArrayList<>();
+        try (InputStream in = open(file)) {
+            byte[] header = new byte[TAR_BLOCK];
+            while (in.readNBytes(header, 0, TAR_BLOCK) == TAR_BLOCK && header[0] != 0) {
+                String entryName = tarString(header, 0, 100);
+                String octalSize = tarString(header, 124, 12).trim();
+                long size = octalSize.isEmpty() ? 0 : Long.parseLong(octalSize, 8);
+                byte type = header[156];
+                long padded = (size + TAR_BLOCK - 1) / TAR_BLOCK * TAR_BLOCK;
+
+                if (entryName.endsWith("/desc") && (type == '0' || type == 0)) {
+                    byte[] body = in.readNBytes((int) size);
+                    in.skipNBytes(padded - size);
+                    PackageInfo pkg = parsePacmanDesc(body);
+                    if (pkg != null) result.add(pkg);
+                } else {
+                    in.skipNBytes(padded);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed tar header in " + file, e);
+        }
+        return result;
+    }
+
+    private static PackageInfo parsePacmanDesc(byte[] body) throws IOException {
+        String name = null, version = "", summary = "";
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                switch (line) {
+                    case "%NAME%"    -> name = reader.readLine();
+                    case "%VERSION%" -> version = reader.readLine();
+                    case "%DESC%"    -> summary = reader.readLine();
+                    default -> { }
+                }
+            }
+        }
+        if (name == null || name.isBlank()) return null;
+        return available(name.trim(), name.trim(),
+                version == null ? "" : version.trim(), summary == null ? "" : summary.trim(), Source.NATIVE);
+    }
+
+    private static String tarString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) end++;
+        return new String(header, offset, end - offset, StandardCharsets.US_ASCII);
+    }
+
+    // -------------------------------------------------------------------------
+    // Flatpak appstream
+    // -------------------------------------------------------------------------
+
+    /**
+     * Reads application {@code <component>}s: the untranslated {@code <id>}, {@code <name>}
+     * and {@code <summary>} that are direct children, plus the first {@code <release version=>}.
+     * Runtimes, extensions and fonts are skipped.
+     */
+    static List<PackageInfo> parseAppstream(Path file) throws IOException {
+        List<PackageInfo> result = new ArrayList<>();
+        try (InputStream in = open(file)) {
+            XMLStreamReader xml = xmlFactory().createXMLStreamReader(in);
+            int depth = 0;
+            int componentDepth = -1;
+            String id = null, name = null, summary = "", version = "";
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String local = xml.getLocalName();
+                    if ("component".equals(local)) {
+                        String type = xml.getAttributeValue(null, "type");
+                        if (type != null && (type.startsWith("desktop") || type.equals("console-application"))) {
+                            componentDepth = depth;
+                            id = null; name = null; summary = ""; version = "";
+                        }
+                        continue;
+                    }
+                    if (componentDepth < 0) continue;
+
+                    boolean direct = depth == componentDepth + 1;
+                    boolean untranslated = xml.getAttributeValue(XMLConstants.XML_NS_URI, "lang") == null;
+                    if (direct && untranslated && local.equals("id")) {
+                        id = xml.getElementText().trim();
+                        depth--;
+                    } else if (direct && untranslated && local.equals("name") && name == null) {
+                        name = xml.getElementText().trim();
+                        depth--;
+                    } else if (direct && untranslated && local.equals("summary") && summary.isEmpty()) {
+                        summary = xml.getElementText().trim();
+                        depth--;
+                    } else if (local.equals("release") && version.isEmpty()) {
+                        String v = xml.getAttributeValue(null, "version");
+                        if (v != null) version = v;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == componentDepth && "component".equals(xml.getLocalName())) {
+                        if (id != null) {
+                            String appId = id.endsWith(".desktop") ? id.substring(0, id.length() - 8) : id;
+                            result.add(available(name == null ? appId : name, appId, version, summary, Source.FLATPAK));
+                        }
+                        componentDepth = -1;
+                    }
+                    depth--;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed appstream.xml: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static PackageInfo available(String name, String id, String version, String summary, Source source) {
+        return new PackageInfo(name, id, version, summary, source, Installed.NO);
+    }
+
+    /** Opens a metadata file, transparently un-gzipping; rejects compressions the JDK can't read. */
+    private static InputStream open(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+        in.mark(4);
+        byte[] magic = in.readNBytes(4);
+        in.reset();
+        if (magic.length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return new BufferedInputStream(new GZIPInputStream(in, 1 << 16), 1 << 16);
+        }
+        if (magic.length == 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5
+                && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd) {
+            in.close();
+            throw new IOException("zstd-compressed metadata is not supported: " + file);
+        }
+        if (magic.length >= 2 && (magic[0] & 0xff) == 0xfd && magic[1] == '7') {
+            in.close();
+            throw new IOException("xz-compressed metadata is not supported: " + file);
+        }
+        return in;
+    }
+
+    private static XMLInputFactory xmlFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
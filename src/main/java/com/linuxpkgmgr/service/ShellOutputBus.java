@@ -1,5 +1,6 @@
 package com.linuxpkgmgr.service;
 
+import com.linuxpkgmgr.model.ProgressEvent;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -12,11 +13,15 @@ import java.util.function.Consumer;
  * CommandExecutor emits one line at a time as the subprocess streams output.
  * ChatController registers a listener that appends each line to the TextArea
  * via Platform.runLater().
+ *
+ * Installs, updates and removals additionally publish parsed {@link ProgressEvent}s
+ * (see ProgressTracker), which drive the progress bar above the shell pane.
  */
 @Component
 public class ShellOutputBus {
 
     private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<ProgressEvent>> progressListeners = new CopyOnWriteArrayList<>();
 
     public void addListener(Consumer<String> listener) {
         listeners.add(listener);
@@ -26,4 +31,13 @@ public class ShellOutputBus {
     public void emit(String line) {
         for (Consumer<String> l : listeners) l.accept(line);
     }
+
+    public void addProgressListener(Consumer<ProgressEvent> listener) {
+        progressListeners.add(listener);
+    }
+
+    /** Called from background threads — must be thread-safe. */
+    public void emitProgress(ProgressEvent event) {
+        for (Consumer<ProgressEvent> l : progressListeners) l.accept(event);
+    }
 }
@@ -1,15 +1,29 @@
 package com.linuxpkgmgr.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Runs commands with sudo privilege elevation.
@@ -21,6 +35,27 @@ import java.util.List;
  *
  * The password is held in a local String only for the duration of the subprocess
  * launch and is never logged.
+ *
+ * Package-manager and systemctl commands are sent to a {@link PrivilegedHelper} — a root
+ * shell started once after the first successful authentication — so later privileged
+ * operations skip both the cache probe and the sudo fork. The helper lives only as long
+ * as the sudo timestamp it was started under: once {@code credentialsFreshUntil} passes
+ * it is stopped, and the next command re-authenticates through sudo (and sudo's log)
+ * before a new one starts. Anything outside its grammar, or arriving while it is busy,
+ * still takes the one-shot path.
+ *
+ * Credential freshness is tracked here rather than probed: every successful sudo
+ * invocation renews sudo's timestamp, so the cache is known warm until
+ * {@code timestamp_timeout} (read from {@code sudo -l}, else
+ * {@code pkg-mgr.sudo.timestamp-timeout-minutes}) has passed. Helper commands bypass sudo,
+ * so each one is followed by {@code sudo -n -v}. {@code sudo -n true} is only forked when
+ * that state is unknown or expired. While a {@link #holdCredentials() hold}
+ * is open, {@code sudo -n -v} keeps the timestamp alive so a long batch never re-prompts.
+ *
+ * Output streams line by line to the {@link ShellOutputBus} through
+ * {@link CommandExecutor}, with its framing, output cap, deadline and cancel handling.
+ * Root-owned processes cannot be killed from here, so cancelling asks the helper to
+ * SIGTERM its command, or kills a one-shot command through {@code sudo -n kill}.
  */
 @Slf4j
 @Service
@@ -28,20 +63,249 @@ public class SudoService {
 
     private static final List<String> POPUP_DIRS = List.of("/usr/bin", "/bin", "/usr/local/bin");
 
+    /** Renew/expire a little early so a command never starts on a timestamp about to lapse. */
+    private static final Duration FRESHNESS_MARGIN = Duration.ofSeconds(15);
+    private static final Duration MIN_KEEP_ALIVE = Duration.ofSeconds(30);
+    private static final Pattern TIMESTAMP_TIMEOUT = Pattern.compile("timestamp_timeout=(-?[\\d.]+)");
+    /** What {@code sudo -n} prints when it would have had to prompt. */
+    private static final String PASSWORD_REQUIRED = "a password is required";
+
+    /** Scope during which the sudo timestamp is kept alive; see {@link #holdCredentials()}. */
+    public interface CredentialHold extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final CommandExecutor executor;
+
+    @Value("${pkg-mgr.sudo.timestamp-timeout-minutes:5}")
+    private double defaultTimestampTimeoutMinutes = 5;
+
+    @Value("${pkg-mgr.sudo.helper.enabled:true}")
+    private boolean helperEnabled = true;
+
+    private PrivilegedHelper helper;     // guarded by this
+    private boolean helperUnsupported;   // sudo policy refused the helper — don't retry every call
+    private ScheduledExecutorService scheduler;
+    private final Object promptLock = new Object();  // one password dialog at a time
+
+    private volatile Instant credentialsFreshUntil;   // null = unknown
+    private volatile Duration timestampTimeout;       // null = not read yet; negative = never expires
+    private final Object holdLock = new Object();
+    private int holds;                                // guarded by holdLock
+    private ScheduledFuture<?> keepAlive;             // guarded by holdLock
+
+    public SudoService(CommandExecutor executor) {
+        this.executor = executor;
+    }
+
+    @PostConstruct
+    void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("sudo-maintenance").daemon().factory());
+        if (helperEnabled) {
+            scheduler.scheduleWithFixedDelay(this::stopExpiredHelper, 15, 15, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    synchronized void shutdown() {
+        if (scheduler != null) scheduler.shutdownNow();
+        if (helper != null) {
+            helper.close();
+            helper = null;
+        }
+    }
+
     /**
-     * Runs {@code command} with sudo.
-     * Throws {@link RuntimeException} if the command exits non-zero or auth is cancelled.
+     * Runs {@code command} with sudo under the executor's default deadline.
+     * Throws {@link RuntimeException} if the command exits non-zero or auth is cancelled,
+     * and {@link java.util.concurrent.CancellationException} if the user cancels it.
      */
     public String runWithSudo(List<String> command) throws IOException, InterruptedException {
+        return runWithSudo(command, null);
+    }
+
+    /** Like {@link #runWithSudo(List)} with a per-command deadline (null = executor default). */
+    public String runWithSudo(List<String> command, Duration timeout) throws IOException, InterruptedException {
         log.debug("Running with sudo: {}", command);
+        List<String> display = new ArrayList<>(command);
+        display.addFirst("sudo");
 
+        if (helperEnabled && PrivilegedHelper.allows(command)) {
+            PrivilegedHelper h = acquireHelper(command.get(0));
+            if (h != null && h.tryClaim()) {
+                try {
+                    log.info("Running via privileged helper: {}", command);
+                    String output = execute(display, timeout, h.command(command));
+                    // The helper runs as root without going through sudo, so renew the timestamp it lives under
+                    refreshCredentials();
+                    return output;
+                } finally {
+                    h.release();
+                }
+            }
+            if (h != null) log.debug("Privileged helper busy — running {} with a one-shot sudo", command.get(0));
+        }
+
+        String password = null;
         if (isSudoCacheWarm()) {
             log.debug("Sudo cache warm — running without password prompt");
-            return executeSudo(command, null);
+        } else {
+            password = promptPassword(command.get(0));
+        }
+        return execute(display, timeout, new SudoProcess(command, password));
+    }
+
+    private String execute(List<String> display, Duration timeout, CommandExecutor.ExternalCommand command)
+            throws IOException, InterruptedException {
+        return timeout == null
+                ? executor.executeChecked(display, command)
+                : executor.executeChecked(display, timeout, command);
+    }
+
+    /**
+     * Keeps the sudo timestamp alive with {@code sudo -n -v} until the returned hold is
+     * closed, so every step of a multi-command batch finds the credentials still cached.
+     * Holds nest; refreshing stops when the last one closes. Does not prompt by itself.
+     */
+    public CredentialHold holdCredentials() {
+        synchronized (holdLock) {
+            if (holds++ == 0 && scheduler != null) {
+                long periodSeconds = keepAlivePeriod().toSeconds();
+                keepAlive = scheduler.scheduleWithFixedDelay(
+                        this::refreshCredentials, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+            }
+        }
+        return () -> {
+            synchronized (holdLock) {
+                if (--holds == 0 && keepAlive != null) {
+                    keepAlive.cancel(false);
+                    keepAlive = null;
+                }
+            }
+        };
+    }
+
+    // -------------------------------------------------------------------------
+    // Credential state
+    // -------------------------------------------------------------------------
+
+    /** Records a successful sudo invocation — sudo has just renewed its timestamp. */
+    private void markAuthenticated() {
+        if (timestampTimeout == null) timestampTimeout = readTimestampTimeout();
+        Duration timeout = timestampTimeout;
+        credentialsFreshUntil = timeout.isNegative()
+                ? Instant.MAX
+                : Instant.now().plus(timeout).minus(FRESHNESS_MARGIN);
+    }
+
+    /**
+     * {@code sudo -l} lists the Defaults that apply to this user, including a non-default
+     * {@code timestamp_timeout}. Only called while the cache is warm, so it never prompts.
+     */
+    private Duration readTimestampTimeout() {
+        Duration fallback = minutes(defaultTimestampTimeoutMinutes);
+        String output = runQuietly(List.of("sudo", "-n", "-l"));
+        if (output == null) return fallback;
+        Matcher m = TIMESTAMP_TIMEOUT.matcher(output);
+        Duration timeout = fallback;
+        while (m.find()) {   // the last matching Defaults entry wins, as in sudoers
+            try {
+                timeout = minutes(Double.parseDouble(m.group(1)));
+            } catch (NumberFormatException ignored) {
+                // keep the previous value
+            }
+        }
+        log.debug("sudo timestamp_timeout: {}", timeout);
+        return timeout;
+    }
+
+    private static Duration minutes(double minutes) {
+        return minutes < 0 ? Duration.ofSeconds(-1) : Duration.ofMillis((long) (minutes * 60_000));
+    }
+
+    private Duration keepAlivePeriod() {
+        Duration timeout = timestampTimeout != null ? timestampTimeout : minutes(defaultTimestampTimeoutMinutes);
+        Duration half = timeout.isNegative() ? Duration.ofMinutes(5) : timeout.dividedBy(2);
+        return half.compareTo(MIN_KEEP_ALIVE) < 0 ? MIN_KEEP_ALIVE : half;
+    }
+
+    private void refreshCredentials() {
+        if (credentialsFreshUntil == null) return; // never authenticated, or already lapsed — nothing to keep alive
+        if (runQuietly(List.of("sudo", "-n", "-v")) != null) {
+            log.debug("sudo timestamp refreshed");
+            markAuthenticated();
+        } else {
+            credentialsFreshUntil = null;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Privileged helper
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns a running helper started under still-fresh credentials, starting one if
+     * needed. The password prompt runs outside this object's monitor so an open dialog
+     * never blocks {@link #stopExpiredHelper()} or other sudo callers.
+     */
+    private PrivilegedHelper acquireHelper(String cmdName) throws IOException, InterruptedException {
+        synchronized (this) {
+            if (helperUsable()) return helper;
+            // Never cut off a running command; it is stopped once idle, use one-shot sudo until then
+            if (helper != null && helper.isAlive() && helper.isBusy()) return null;
+            stopHelper("its sudo credentials lapsed or it exited");
+            if (helperUnsupported) return null;
         }
 
-        String password = promptPassword(command.get(0));
-        return executeSudo(command, password);
+        // The helper itself is started with sudo -n, so authenticate first if needed
+        ensureAuthenticated(cmdName);
+
+        synchronized (this) {
+            if (helperUsable()) return helper;   // another caller started one meanwhile
+            if (helperUnsupported || (helper != null && helper.isBusy())) return null;
+            stopHelper("it exited");
+            helper = startHelper();
+            if (helper == null) {
+                log.warn("sudo did not allow the privileged helper — falling back to one sudo per command");
+                helperUnsupported = true;
+            }
+            return helper;
+        }
+    }
+
+    /** Prompts and validates a password unless the sudo timestamp is warm; one dialog at a time. */
+    private void ensureAuthenticated(String cmdName) throws IOException, InterruptedException {
+        synchronized (promptLock) {
+            if (!isSudoCacheWarm()) authenticate(promptPassword(cmdName));
+        }
+    }
+
+    /** Starts a helper under the current sudo timestamp; null if sudo refused. */
+    PrivilegedHelper startHelper() throws IOException, InterruptedException {
+        return PrivilegedHelper.start();
+    }
+
+    private synchronized boolean helperUsable() {
+        return helper != null && helper.isAlive() && credentialsFresh();
+    }
+
+    private boolean credentialsFresh() {
+        Instant freshUntil = credentialsFreshUntil;
+        return freshUntil != null && Instant.now().isBefore(freshUntil);
+    }
+
+    /** Stops the helper once the sudo timestamp it was started under has lapsed. */
+    private synchronized void stopExpiredHelper() {
+        if (helper != null && !helper.isBusy() && !credentialsFresh()) stopHelper("its sudo credentials lapsed");
+    }
+
+    private synchronized void stopHelper(String reason) {
+        if (helper == null) return;
+        log.info("Stopping privileged helper — {}", reason);
+        helper.close();
+        helper = null;
     }
 
     // -------------------------------------------------------------------------
@@ -49,44 +313,131 @@ public class SudoService {
     // -------------------------------------------------------------------------
 
     private boolean isSudoCacheWarm() {
+        if (credentialsFresh()) return true;
+
+        // Unknown or expired — ask sudo (NOPASSWD rules succeed here regardless of the timestamp)
+        if (runQuietly(List.of("sudo", "-n", "true")) != null) {
+            markAuthenticated();
+            return true;
+        }
+        credentialsFreshUntil = null;
+        return false;
+    }
+
+    /** Runs a non-interactive sudo command; returns its output, or null on failure. */
+    String runQuietly(List<String> command) {
         try {
-            Process p = new ProcessBuilder("sudo", "-n", "true")
+            Process p = new ProcessBuilder(command)
                     .redirectErrorStream(true)
                     .start();
-            p.getInputStream().readAllBytes(); // drain so the process can exit
-            return p.waitFor() == 0;
+            String output = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8); // drain so the process can exit
+            return p.waitFor() == 0 ? output : null;
         } catch (Exception e) {
-            return false;
+            return null;
         }
     }
 
-    private String executeSudo(List<String> command, String password)
-            throws IOException, InterruptedException {
-
-        List<String> sudoCmd = new ArrayList<>();
-        sudoCmd.add("sudo");
-        if (password != null) sudoCmd.add("-S"); // read password from stdin
-        sudoCmd.add("--");
-        sudoCmd.addAll(command);
-
-        ProcessBuilder pb = new ProcessBuilder(sudoCmd).redirectErrorStream(true);
-        Process process = pb.start();
+    /** Validates {@code password} with {@code sudo -S -v}, which renews the timestamp without running anything. */
+    private void authenticate(String password) throws IOException, InterruptedException {
+        Process process = startSudo(List.of("sudo", "-S", "-v"), password);
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new RuntimeException("Command failed (exit " + exitCode + "): " + output.strip());
+        }
+        markAuthenticated();
+    }
 
+    /** Starts {@code sudoCmd}, writing {@code password} (if any) to its stdin. */
+    Process startSudo(List<String> sudoCmd, String password) throws IOException {
+        Process process = new ProcessBuilder(sudoCmd).redirectErrorStream(true).start();
         if (password != null) {
             try (OutputStream stdin = process.getOutputStream()) {
                 stdin.write((password + "\n").getBytes(StandardCharsets.UTF_8));
                 stdin.flush();
             }
         }
+        return process;
+    }
 
-        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-        int exitCode = process.waitFor();
-        log.debug("sudo exit code: {}", exitCode);
+    /**
+     * A one-shot {@code sudo -- command}, streamed line by line. sudo ignores signals from
+     * its parent's process group and its child runs as root, so cancel kills the child's
+     * process tree through {@code sudo -n kill}, which works while the timestamp is fresh.
+     *
+     * Without a password the command runs with {@code sudo -n}: if the timestamp lapsed
+     * after the freshness check, sudo fails instead of prompting on a terminal nobody
+     * watches, and the command is retried once with a password from the popup.
+     */
+    private final class SudoProcess implements CommandExecutor.ExternalCommand {
+        private final List<String> command;
+        private final String password;
+        private volatile Process process;
+        private volatile boolean cancelled;
 
-        if (exitCode != 0) {
-            throw new RuntimeException("Command failed (exit " + exitCode + "): " + output.strip());
+        SudoProcess(List<String> command, String password) {
+            this.command = command;
+            this.password = password;
+        }
+
+        @Override
+        public int run(Consumer<String> sink) throws IOException, InterruptedException {
+            boolean[] passwordRequired = {false};
+            int exitCode = runOnce(password, line -> {
+                if (password == null && line.contains(PASSWORD_REQUIRED)) {
+                    passwordRequired[0] = true;
+                } else {
+                    sink.accept(line);
+                }
+            });
+            if (exitCode != 0 && passwordRequired[0] && !cancelled) {
+                credentialsFreshUntil = null;
+                log.info("sudo credentials lapsed before {} ran — prompting", command.get(0));
+                exitCode = runOnce(promptPassword(command.get(0)), sink);
+            }
+            return exitCode;
+        }
+
+        private int runOnce(String pw, Consumer<String> sink) throws IOException, InterruptedException {
+            List<String> sudoCmd = new ArrayList<>();
+            sudoCmd.add("sudo");
+            sudoCmd.add(pw != null ? "-S" : "-n"); // read password from stdin / never prompt
+            sudoCmd.add("--");
+            sudoCmd.addAll(command);
+
+            process = startSudo(sudoCmd, pw);
+            if (cancelled) cancel();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) sink.accept(line);
+            }
+            int exitCode = process.waitFor();
+            log.debug("sudo exit code: {}", exitCode);
+            if (exitCode == 0) markAuthenticated();
+            return exitCode;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Process p = process;
+            if (p == null) return;
+            List<String> pids = p.descendants().map(h -> String.valueOf(h.pid())).toList();
+            if (pids.isEmpty()) {
+                p.destroy();
+                return;
+            }
+            // Called from the UI thread on cancel — don't make it wait for another sudo
+            Thread.ofVirtual().name("sudo-cancel").start(() -> {
+                List<String> kill = new ArrayList<>(List.of("sudo", "-n", "kill", "-TERM"));
+                kill.addAll(pids);
+                if (runQuietly(kill) == null) {
+                    log.warn("Could not signal {} — sudo credentials have expired", command.get(0));
+                }
+                p.destroy();
+            });
         }
-        return output;
     }
 
     // -------------------------------------------------------------------------
@@ -97,7 +448,7 @@ public class SudoService {
      * Prompts for a password using the best available input method.
      * zenity → kdialog → System.console()
      */
-    private String promptPassword(String cmdName) throws IOException, InterruptedException {
+    String promptPassword(String cmdName) throws IOException, InterruptedException {
         String message = "Enter password to run: " + cmdName;
 
         String zenity = findExecutable("zenity");
@@ -1,22 +1,27 @@
 package com.linuxpkgmgr.service;
 
+import com.linuxpkgmgr.model.InstalledPackages;
 import com.linuxpkgmgr.model.PackageInfo;
 import com.linuxpkgmgr.model.PackageInfo.Installed;
 import com.linuxpkgmgr.model.PackageInfo.Source;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -25,21 +30,66 @@ import java.util.stream.Collectors;
  *
  * System/dependency packages are excluded by using each PM's own
  * "user-installed" query rather than pattern matching.
+ *
+ * The cache is change-driven rather than time-based: each half (native, Flatpak)
+ * remembers a fingerprint of its package database files (mtime + size) and is
+ * re-fetched only when that fingerprint changes — whether the change came from
+ * this app or from outside it. Fingerprinting costs a few stat calls per lookup.
+ *
+ * Readers never wait on a refresh they don't need: when a database change is detected
+ * the last snapshot is returned immediately and a single background refresh is started
+ * (concurrent callers share it). Only a cold cache, or one explicitly invalidated after
+ * an install/remove, makes the caller wait. With {@code pkg-mgr.packages.warm-up}
+ * the first fetch starts at startup, so the first user query does not pay it either.
+ *
+ * Each refresh publishes an {@link InstalledPackages} snapshot with its id, source and
+ * substring indexes already built, so tool lookups never scan the full list.
  */
 @Slf4j
 @Service
 public class SystemPackageService {
-    private static final Duration CACHE_TTL = Duration.ofSeconds(60);
+
+    /** Used only when none of the package database paths exist, so changes cannot be detected. */
+    private static final Duration FALLBACK_TTL = Duration.ofSeconds(60);
+
+    private static final String HOME = System.getProperty("user.home");
 
     public enum PackageManager { DNF, APT, PACMAN, ZYPPER, UNKNOWN }
 
     private final CommandExecutor executor;
+    private final Executor refresher = r -> Thread.ofVirtual().name("installed-pkg-refresh").start(r);
+
+    @Value("${pkg-mgr.packages.warm-up:true}")
+    private boolean warmUp;
 
     private PackageManager nativePackageManager;
     private boolean flatpakAvailable;
 
-    private volatile List<PackageInfo> cachedPackages = null;
-    private volatile Instant cacheExpiry = Instant.MIN;
+    private List<Path> nativeDbPaths = List.of();
+    private List<Path> flatpakDbPaths = List.of();
+
+    /**
+     * One cached half of the installed list.
+     *
+     * @param fingerprint database fingerprint taken just before the fetch
+     * @param generation  the half's invalidation generation when the fetch started
+     * @param fetchedAt   when the fetch completed (drives {@link #FALLBACK_TTL} only)
+     */
+    private record CachedHalf(List<PackageInfo> packages, long fingerprint, long generation, Instant fetchedAt) {}
+
+    private volatile CachedHalf nativeCache = null;
+    private volatile CachedHalf flatpakCache = null;
+    private volatile InstalledPackages snapshot = null;
+
+    /** The refresh currently running, shared by every caller that needs it. Guarded by {@code this}. */
+    private CompletableFuture<InstalledPackages> inFlight = null;
+
+    /**
+     * Bumped by every invalidation of a half. A half cached under an older generation is
+     * stale, so a fetch that was running when the invalidation landed never counts as fresh.
+     */
+    private final AtomicLong nativeGeneration = new AtomicLong();
+    private final AtomicLong flatpakGeneration = new AtomicLong();
 
     public SystemPackageService(CommandExecutor executor) {
         this.executor = executor;
@@ -49,7 +99,13 @@ public class SystemPackageService {
     void init() {
         nativePackageManager = detectNativePackageManager();
         flatpakAvailable = isCommandAvailable("flatpak");
+        nativeDbPaths = nativeDatabasePaths(nativePackageManager);
+        flatpakDbPaths = flatpakAvailable ? flatpakDatabasePaths() : List.of();
         log.info("Native package manager: {}, Flatpak available: {}", nativePackageManager, flatpakAvailable);
+        if (warmUp) {
+            log.debug("Warming installed-package cache in the background");
+            refreshAsync();
+        }
     }
 
     public PackageManager getNativePackageManager() {
@@ -66,42 +122,226 @@ public class SystemPackageService {
 
     /**
      * Returns all user-installed packages (native + Flatpak).
-     * Results are cached for {@value} seconds to avoid repeated subprocess spawns.
-     * Call {@link #invalidateCache()} after any install/update/remove operation.
+     * Shorthand for {@code installed().all()}.
+     */
+    public List<PackageInfo> listInstalled() {
+        return installed().all();
+    }
+
+    /**
+     * Returns the indexed snapshot of user-installed packages (native + Flatpak).
+     * Each half is served from cache until its package database changes on disk;
+     * a change triggers a background re-fetch of just that half while the previous
+     * snapshot is returned. Blocks only when there is no usable snapshot.
      */
-    public synchronized List<PackageInfo> listInstalled() {
-        if (cachedPackages != null && Instant.now().isBefore(cacheExpiry)) {
-            log.debug("Returning {} cached packages", cachedPackages.size());
-            return cachedPackages;
+    public InstalledPackages installed() {
+        InstalledPackages current = snapshot;
+        if (!hasUsableSnapshot()) {
+            log.debug("No usable package snapshot — waiting for refresh");
+            // A joined refresh can finish just before an invalidation lands; wait for the next one then
+            do {
+                refreshAsync().join();
+            } while (!hasUsableSnapshot());
+            return snapshot;
         }
+        if (isStale(nativeCache, nativeGeneration, fingerprint(nativeDbPaths), nativeDbPaths)
+                || (flatpakAvailable && isStale(flatpakCache, flatpakGeneration, fingerprint(flatpakDbPaths), flatpakDbPaths))) {
+            log.debug("Package database changed — serving {} cached packages, refreshing in background",
+                    current.size());
+            refreshAsync();
+        }
+        return current;
+    }
 
-        List<PackageInfo> packages = new ArrayList<>();
+    private boolean hasUsableSnapshot() {
+        return snapshot != null && isCurrent(nativeCache, nativeGeneration)
+                && (!flatpakAvailable || isCurrent(flatpakCache, flatpakGeneration));
+    }
+
+    /** Starts a refresh unless one is already running, in which case that one is returned. */
+    private synchronized CompletableFuture<InstalledPackages> refreshAsync() {
+        if (inFlight == null || inFlight.isDone()) {
+            inFlight = CompletableFuture.supplyAsync(this::refreshStaleHalves, refresher);
+        }
+        return inFlight;
+    }
+
+    /**
+     * Re-fetches whichever halves are missing, invalidated or whose fingerprint moved, then
+     * republishes the combined list. Runs on the refresher thread without holding any lock
+     * over the fetch, so invalidation never waits for it: a half whose generation moved
+     * while it was being fetched is discarded and fetched again on the next lookup.
+     */
+    private InstalledPackages refreshStaleHalves() {
+        boolean changed = false;
+
+        long nativeGen = nativeGeneration.get();
+        long nativeFp = fingerprint(nativeDbPaths);
+        if (isStale(nativeCache, nativeGeneration, nativeFp, nativeDbPaths)) {
+            List<PackageInfo> fetched = fetchHalf("native", this::fetchNativePackages);
+            changed |= publish(fetched, nativeFp, nativeGen, nativeGeneration, "native");
+        }
+
+        if (flatpakAvailable) {
+            long flatpakGen = flatpakGeneration.get();
+            long flatpakFp = fingerprint(flatpakDbPaths);
+            if (isStale(flatpakCache, flatpakGeneration, flatpakFp, flatpakDbPaths)) {
+                List<PackageInfo> fetched = fetchHalf("Flatpak", this::fetchFlatpakPackages);
+                changed |= publish(fetched, flatpakFp, flatpakGen, flatpakGeneration, "Flatpak");
+            }
+        }
+
+        // Read each field once — an invalidation may null them at any point
+        CachedHalf nativeHalf = nativeCache;
+        CachedHalf flatpakHalf = flatpakCache;
+        InstalledPackages current = snapshot;
+        if (nativeHalf == null) {
+            // Invalidated while being fetched — the next lookup starts another refresh
+            return current;
+        }
+        if (changed || current == null) {
+            List<PackageInfo> packages = new ArrayList<>(nativeHalf.packages());
+            if (flatpakHalf != null) packages.addAll(flatpakHalf.packages());
+            current = InstalledPackages.of(packages);
+            snapshot = current;
+            log.debug("Cached and indexed {} installed packages", current.size());
+        } else {
+            log.debug("Returning {} cached packages", current.size());
+        }
+        return current;
+    }
+
+    /** Stores a fetched half unless its half was invalidated after the fetch started. */
+    private boolean publish(List<PackageInfo> fetched, long fingerprint, long startGeneration,
+                            AtomicLong generation, String label) {
+        if (generation.get() != startGeneration) {
+            log.debug("{} packages invalidated during fetch — discarding it", label);
+            return false;
+        }
+        CachedHalf half = new CachedHalf(fetched, fingerprint, startGeneration, Instant.now());
+        if (generation == nativeGeneration) nativeCache = half;
+        else flatpakCache = half;
+        return true;
+    }
 
+    /** Forces a fresh fetch of both halves on the next call to {@link #installed()}. */
+    public void invalidateCache() {
+        nativeGeneration.incrementAndGet();
+        flatpakGeneration.incrementAndGet();
+        nativeCache = null;
+        flatpakCache = null;
+        snapshot = null;
+        log.debug("Package cache invalidated");
+    }
+
+    /** Forces a fresh fetch of native packages only; the Flatpak half stays cached. */
+    public void invalidateNative() {
+        nativeGeneration.incrementAndGet();
+        nativeCache = null;
+        log.debug("Native package cache invalidated");
+    }
+
+    /** Forces a fresh fetch of Flatpak packages only; the native half stays cached. */
+    public void invalidateFlatpak() {
+        flatpakGeneration.incrementAndGet();
+        flatpakCache = null;
+        log.debug("Flatpak package cache invalidated");
+    }
+
+    // -------------------------------------------------------------------------
+    // Change detection
+    // -------------------------------------------------------------------------
+
+    @FunctionalInterface
+    private interface Fetcher {
+        List<PackageInfo> fetch() throws IOException, InterruptedException;
+    }
+
+    private List<PackageInfo> fetchHalf(String label, Fetcher fetcher) {
         try {
-            packages.addAll(fetchNativePackages());
+            return fetcher.fetch();
         } catch (Exception e) {
-            log.warn("Failed to fetch native packages: {}", e.getMessage());
+            log.warn("Failed to fetch {} packages: {}", label, e.getMessage());
+            return List.of();
         }
+    }
 
-        if (flatpakAvailable) {
+    private static boolean isCurrent(CachedHalf cached, AtomicLong generation) {
+        return cached != null && cached.generation() == generation.get();
+    }
+
+    private boolean isStale(CachedHalf cached, AtomicLong generation, long fingerprint, List<Path> watched) {
+        if (!isCurrent(cached, generation)) return true;
+        if (cached.fingerprint() != fingerprint) {
+            log.debug("Package database changed: {}", watched);
+            return true;
+        }
+        // Nothing on disk to watch — fall back to time-based expiry
+        return watched.stream().noneMatch(Files::exists)
+                && Instant.now().isAfter(cached.fetchedAt().plus(FALLBACK_TTL));
+    }
+
+    /** Changes whenever a native transaction commits, from this app or outside it. */
+    public long nativeDatabaseFingerprint() {
+        return fingerprint(nativeDbPaths);
+    }
+
+    /** Changes whenever a Flatpak transaction commits, from this app or outside it. */
+    public long flatpakDatabaseFingerprint() {
+        return fingerprint(flatpakDbPaths);
+    }
+
+    /** Folds mtime and size of every watched path into one value; missing paths contribute a constant. */
+    static long fingerprint(List<Path> paths) {
+        long fp = 1;
+        for (Path p : paths) {
             try {
-                packages.addAll(fetchFlatpakPackages());
-            } catch (Exception e) {
-                log.warn("Failed to fetch Flatpak packages: {}", e.getMessage());
+                BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                fp = 31 * fp + attrs.lastModifiedTime().toMillis();
+                fp = 31 * fp + attrs.size();
+            } catch (IOException e) {
+                fp = 31 * fp;
             }
         }
+        return fp;
+    }
 
-        cachedPackages = Collections.unmodifiableList(packages);
-        cacheExpiry = Instant.now().plus(CACHE_TTL);
-        log.debug("Cached {} installed packages", cachedPackages.size());
-        return cachedPackages;
+    /**
+     * Files each PM rewrites on every transaction. Directories are included where
+     * entries are added/removed per package (pacman/local) — their mtime changes then.
+     * The "user-installed" marks live in separate stores (dnf history, apt extended_states),
+     * which are watched too so apt-mark / dnf mark changes are picked up.
+     */
+    private static List<Path> nativeDatabasePaths(PackageManager pm) {
+        return switch (pm) {
+            case DNF -> List.of(
+                    Path.of("/usr/lib/sysimage/rpm/rpmdb.sqlite"),
+                    Path.of("/usr/lib/sysimage/rpm/rpmdb.sqlite-wal"),
+                    Path.of("/var/lib/rpm/rpmdb.sqlite"),
+                    Path.of("/var/lib/rpm/Packages"),
+                    Path.of("/var/lib/dnf/history.sqlite"),
+                    Path.of("/usr/lib/sysimage/libdnf5/transaction_history.sqlite"));
+            case ZYPPER -> List.of(
+                    Path.of("/usr/lib/sysimage/rpm/rpmdb.sqlite"),
+                    Path.of("/usr/lib/sysimage/rpm/rpmdb.sqlite-wal"),
+                    Path.of("/var/lib/rpm/rpmdb.sqlite"),
+                    Path.of("/var/lib/rpm/Packages"),
+                    Path.of("/var/lib/zypp/AutoInstalled"));
+            case APT -> List.of(
+                    Path.of("/var/lib/dpkg/status"),
+                    Path.of("/var/lib/apt/extended_states"));
+            case PACMAN -> List.of(Path.of("/var/lib/pacman/local"));
+            default -> List.of();
+        };
     }
 
-    /** Forces a fresh fetch on the next call to {@link #listInstalled()}. */
-    public synchronized void invalidateCache() {
-        cachedPackages = null;
-        cacheExpiry = Instant.MIN;
-        log.debug("Package cache invalidated");
+    /** Flatpak touches {@code .changed} after every transaction; {@code app/} changes on install/remove. */
+    private static List<Path> flatpakDatabasePaths() {
+        return List.of(
+                Path.of("/var/lib/flatpak/.changed"),
+                Path.of("/var/lib/flatpak/app"),
+                Path.of(HOME, ".local/share/flatpak/.changed"),
+                Path.of(HOME, ".local/share/flatpak/app"));
     }
 
     // -------------------------------------------------------------------------
@@ -140,17 +380,29 @@ public class SystemPackageService {
     }
 
     private List<PackageInfo> fetchApt() throws IOException, InterruptedException {
+        if (Files.isReadable(PackageDatabaseReader.DPKG_STATUS)) {
+            try {
+                return PackageDatabaseReader.readDpkgManual();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Reading dpkg database failed, falling back to dpkg-query: {}", e.getMessage());
+            }
+        }
+        return fetchAptViaCommands();
+    }
+
+    private List<PackageInfo> fetchAptViaCommands() throws IOException, InterruptedException {
         // apt-mark showmanual lists only manually installed packages
-        String manualOutput = executor.execute(List.of("apt-mark", "showmanual"));
-        Set<String> manualPackages = Arrays.stream(manualOutput.split("\n"))
-                .map(String::trim)
-                .filter(s -> !s.isBlank())
-                .collect(Collectors.toSet());
+        Set<String> manualPackages = executor.executeLines(List.of("apt-mark", "showmanual"),
+                lines -> lines
+                        .map(String::trim)
+                        .filter(s -> !s.isBlank())
+                        .collect(Collectors.toSet()));
 
-        String detailOutput = executor.execute(List.of(
+        // dpkg-query lists every installed package — parse and filter line by line
+        // rather than buffering the full (multi-MB) output first
+        return executor.executeLines(List.of(
                 "dpkg-query", "-W", "-f=${Package}\t${Version}\t${binary:Summary}\n"
-        ));
-        return Arrays.stream(detailOutput.split("\n"))
+        ), lines -> lines
                 .filter(l -> !l.isBlank() && l.contains("\t"))
                 .map(l -> {
                     String[] f = l.split("\t", 3);
@@ -160,10 +412,21 @@ public class SystemPackageService {
                     return new PackageInfo(name, name, ver, summ, Source.NATIVE, Installed.YES);
                 })
                 .filter(p -> manualPackages.contains(p.id()))
-                .toList();
+                .toList());
     }
 
     private List<PackageInfo> fetchPacman() throws IOException, InterruptedException {
+        if (Files.isDirectory(PackageDatabaseReader.PACMAN_LOCAL)) {
+            try {
+                return PackageDatabaseReader.readPacmanExplicit();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Reading pacman database failed, falling back to pacman -Qe: {}", e.getMessage());
+            }
+        }
+        return fetchPacmanViaCommand();
+    }
+
+    private List<PackageInfo> fetchPacmanViaCommand() throws IOException, InterruptedException {
         // -Qe: explicitly installed, excludes pulled-in dependencies
         String output = executor.execute(List.of("pacman", "-Qe"));
         return Arrays.stream(output.split("\n"))
@@ -0,0 +1,107 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the update checks in {@link UpdateService} warm so "any updates?" is answered
+ * from a recent snapshot instead of a 5–20 s {@code dnf check-update} /
+ * {@code flatpak remote-ls --updates} round trip.
+ *
+ * Once a minute the prefetcher looks at the cached checks and re-runs any that are older
+ * than {@code pkg-mgr.updates.prefetch.interval-minutes} — but only while the system is
+ * idle: no command running through {@link CommandExecutor} and a per-CPU load average
+ * below {@code pkg-mgr.updates.prefetch.max-load}. A failed prefetch (offline, mirror
+ * down) is not retried until the next interval.
+ */
+@Slf4j
+@Service
+public class UpdatePrefetchService {
+
+    private static final Duration TICK = Duration.ofMinutes(1);
+
+    private final UpdateService updateService;
+    private final SystemPackageService packageService;
+    private final CommandExecutor executor;
+
+    @Value("${pkg-mgr.updates.prefetch.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${pkg-mgr.updates.prefetch.interval-minutes:30}")
+    private long intervalMinutes = 30;
+
+    @Value("${pkg-mgr.updates.prefetch.initial-delay-seconds:120}")
+    private long initialDelaySeconds = 120;
+
+    @Value("${pkg-mgr.updates.prefetch.max-load:0.5}")
+    private double maxLoadPerCpu = 0.5;
+
+    private ScheduledExecutorService scheduler;
+    private volatile Instant nextAttemptAfterFailure = Instant.MIN;
+
+    public UpdatePrefetchService(UpdateService updateService,
+                                 SystemPackageService packageService,
+                                 CommandExecutor executor) {
+        this.updateService = updateService;
+        this.packageService = packageService;
+        this.executor = executor;
+    }
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            log.debug("Update prefetch disabled");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("update-prefetch").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::tick, initialDelaySeconds, TICK.toSeconds(), TimeUnit.SECONDS);
+        log.info("Update prefetch every {} min while idle", intervalMinutes);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    void tick() {
+        if (Instant.now().isBefore(nextAttemptAfterFailure)) return;
+        if (!isIdle()) {
+            log.debug("System busy — postponing update prefetch");
+            return;
+        }
+        Duration interval = Duration.ofMinutes(intervalMinutes);
+        List<Source> sources = packageService.isFlatpakAvailable()
+                ? List.of(Source.NATIVE, Source.FLATPAK)
+                : List.of(Source.NATIVE);
+        try {
+            // Both sources in parallel; a fresh cached check completes immediately
+            CompletableFuture.allOf(sources.stream()
+                    .map(s -> updateService.refreshIfOlderThan(s, interval))
+                    .toArray(CompletableFuture[]::new)).join();
+        } catch (Exception e) {
+            log.warn("Update prefetch failed, next attempt in {} min: {}", intervalMinutes, e.getMessage());
+            nextAttemptAfterFailure = Instant.now().plus(interval);
+        }
+    }
+
+    private boolean isIdle() {
+        if (executor.isBusy()) return false;
+        double load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+        if (load < 0) return true; // not available on this platform
+        return load / Runtime.getRuntime().availableProcessors() < maxLoadPerCpu;
+    }
+}
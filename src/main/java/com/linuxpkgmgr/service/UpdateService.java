@@ -0,0 +1,397 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.PackageInfo;
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import com.linuxpkgmgr.model.PackageUpdate;
+import com.linuxpkgmgr.service.PackageOperationQueue.PackageTransaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks for and applies package updates (native + Flatpak).
+ *
+ * Check results are cached per source and invalidated by metadata timestamps rather
+ * than a clock: a result stays valid until the installed-package database or the
+ * repository metadata on disk changes (any transaction, {@code dnf makecache},
+ * {@code apt update}, a Flatpak appstream refresh). {@code pkg-mgr.updates.max-age-minutes}
+ * still bounds how long a result is trusted, since Flatpak remotes are queried over the
+ * network and can move without anything local changing. Concurrent callers for the same
+ * source share one check; the two sources are checked in parallel.
+ *
+ * Updates run as one package-manager transaction — 'ALL' is a single
+ * {@code dnf upgrade} / {@code flatpak update}, never a loop over packages.
+ * Output of both streams to the shell pane — Flatpak through {@link CommandExecutor},
+ * native updates through {@link SudoService}. Both are queued on
+ * {@link PackageOperationQueue} behind any other operation on the same backend.
+ */
+@Slf4j
+@Service
+public class UpdateService {
+
+    private static final Duration CHECK_TIMEOUT  = Duration.ofMinutes(3);
+    private static final Duration UPDATE_TIMEOUT = Duration.ofHours(1);
+
+    private static final String HOME = System.getProperty("user.home");
+
+    /** {@code firefox.x86_64   120.0-1.fc39   updates} */
+    private static final Pattern DNF_LINE = Pattern.compile("^(\\S+)\\.(\\S+)\\s+(\\S+)\\s+(\\S+)\\s*$");
+    /** {@code firefox/jammy-updates 120.0 amd64 [upgradable from: 119.0]} */
+    private static final Pattern APT_LINE =
+            Pattern.compile("^([^/\\s]+)/\\S+\\s+(\\S+)\\s+\\S+\\s+\\[upgradable from: ([^\\]]+)\\]");
+    /** {@code linux 6.6.1-1 -> 6.6.2-1} */
+    private static final Pattern PACMAN_LINE = Pattern.compile("^(\\S+)\\s+(\\S+)\\s+->\\s+(\\S+)");
+
+    /**
+     * Outcome of one update check.
+     *
+     * @param checkedAt when the package manager was actually queried
+     */
+    public record UpdateCheck(Source source, List<PackageUpdate> updates, Instant checkedAt) {}
+
+    /** @param fingerprint database + metadata fingerprint taken just before the check */
+    private record Cached(UpdateCheck check, long fingerprint) {}
+
+    private final SystemPackageService packageService;
+    private final CommandExecutor executor;
+    private final SudoService sudoService;
+    private final PackageOperationQueue operationQueue;
+    private final Executor checker = r -> Thread.ofVirtual().name("update-check").start(r);
+
+    // One instance per transaction: the queue only merges operations that share it
+    private final PackageTransaction flatpakUpdateTransaction = this::runFlatpakUpdate;
+    private final PackageTransaction nativeUpdateTransaction  = this::runNativeUpdate;
+
+    @Value("${pkg-mgr.updates.max-age-minutes:60}")
+    private long maxAgeMinutes = 60;
+
+    private final Map<Source, Cached> cache = new ConcurrentHashMap<>();
+
+    /** Checks currently running, shared by every caller that needs them. Guarded by {@code this}. */
+    private final Map<Source, CompletableFuture<UpdateCheck>> inFlight = new EnumMap<>(Source.class);
+
+    public UpdateService(SystemPackageService packageService,
+                         CommandExecutor executor,
+                         SudoService sudoService,
+                         PackageOperationQueue operationQueue) {
+        this.packageService = packageService;
+        this.executor = executor;
+        this.sudoService = sudoService;
+        this.operationQueue = operationQueue;
+    }
+
+    // -------------------------------------------------------------------------
+    // Checking
+    // -------------------------------------------------------------------------
+
+    /** Returns the cached check for {@code source} while it is valid, otherwise starts or joins a fresh one. */
+    public CompletableFuture<UpdateCheck> check(Source source) {
+        Cached cached = cache.get(source);
+        if (cached != null && isValid(cached, source)) {
+            log.debug("Serving cached {} update check from {}", source, cached.check().checkedAt());
+            return CompletableFuture.completedFuture(cached.check());
+        }
+        return startCheck(source);
+    }
+
+    /**
+     * Like {@link #check} but also re-runs a still-valid check once it is older than
+     * {@code maxAge}. Used by the background prefetch to keep the cached answer recent.
+     */
+    public CompletableFuture<UpdateCheck> refreshIfOlderThan(Source source, Duration maxAge) {
+        Cached cached = cache.get(source);
+        if (cached != null && isValid(cached, source)
+                && Instant.now().isBefore(cached.check().checkedAt().plus(maxAge))) {
+            return CompletableFuture.completedFuture(cached.check());
+        }
+        return startCheck(source);
+    }
+
+    /** Starts the native and Flatpak checks side by side; Flatpak is left out when it is not installed. */
+    public Map<Source, CompletableFuture<UpdateCheck>> checkAll() {
+        Map<Source, CompletableFuture<UpdateCheck>> checks = new EnumMap<>(Source.class);
+        checks.put(Source.NATIVE, check(Source.NATIVE));
+        if (packageService.isFlatpakAvailable()) checks.put(Source.FLATPAK, check(Source.FLATPAK));
+        return checks;
+    }
+
+    /** Drops the cached check so the next call queries the package manager again. */
+    public void invalidate(Source source) {
+        cache.remove(source);
+        log.debug("{} update check invalidated", source);
+    }
+
+    private synchronized CompletableFuture<UpdateCheck> startCheck(Source source) {
+        CompletableFuture<UpdateCheck> running = inFlight.get(source);
+        if (running == null || running.isDone()) {
+            running = CompletableFuture.supplyAsync(() -> runCheck(source), checker);
+            inFlight.put(source, running);
+        }
+        return running;
+    }
+
+    private UpdateCheck runCheck(Source source) {
+        long fp = fingerprint(source);
+        try {
+            List<PackageUpdate> updates = switch (source) {
+                case NATIVE  -> fetchNativeUpdates();
+                case FLATPAK -> fetchFlatpakUpdates();
+            };
+            UpdateCheck check = new UpdateCheck(source, List.copyOf(updates), Instant.now());
+            cache.put(source, new Cached(check, fp));
+            log.debug("{} update check: {} pending", source, updates.size());
+            return check;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Update check interrupted");
+        }
+    }
+
+    private boolean isValid(Cached cached, Source source) {
+        if (cached.fingerprint() != fingerprint(source)) {
+            log.debug("{} package or repository metadata changed — update check is stale", source);
+            return false;
+        }
+        return Instant.now().isBefore(cached.check().checkedAt().plus(Duration.ofMinutes(maxAgeMinutes)));
+    }
+
+    // -------------------------------------------------------------------------
+    // Metadata timestamps
+    // -------------------------------------------------------------------------
+
+    private long fingerprint(Source source) {
+        return switch (source) {
+            case NATIVE  -> 31 * packageService.nativeDatabaseFingerprint()
+                    + SystemPackageService.fingerprint(nativeMetadataPaths());
+            case FLATPAK -> 31 * packageService.flatpakDatabaseFingerprint()
+                    + SystemPackageService.fingerprint(flatpakMetadataPaths());
+        };
+    }
+
+    /**
+     * Repository metadata each PM rewrites on refresh. Directories are used where the
+     * refresh renames files into place (apt lists, pacman sync), which moves their mtime.
+     */
+    private List<Path> nativeMetadataPaths() {
+        return switch (packageService.getNativePackageManager()) {
+            case DNF -> List.of(
+                    Path.of("/var/cache/dnf"),
+                    Path.of("/var/cache/dnf/last_makecache"),
+                    Path.of("/var/cache/libdnf5"));
+            case APT -> List.of(
+                    Path.of("/var/lib/apt/lists"),
+                    Path.of("/var/cache/apt/pkgcache.bin"));
+            case PACMAN -> List.of(Path.of("/var/lib/pacman/sync"));
+            case ZYPPER -> List.of(
+                    Path.of("/var/cache/zypp/raw"),
+                    Path.of("/var/cache/zypp/solv"));
+            default -> List.of();
+        };
+    }
+
+    private static List<Path> flatpakMetadataPaths() {
+        return List.of(
+                Path.of("/var/lib/flatpak/appstream"),
+                Path.of("/var/lib/flatpak/repo/refs/remotes"),
+                Path.of(HOME, ".local/share/flatpak/appstream"),
+                Path.of(HOME, ".local/share/flatpak/repo/refs/remotes"));
+    }
+
+    // -------------------------------------------------------------------------
+    // Native update checks
+    // -------------------------------------------------------------------------
+
+    /**
+     * Commands per PM:
+     *   DNF:    dnf check-update -q               — exits 100 when updates exist
+     *   APT:    apt list --upgradable             — uses the lists from the last apt update
+     *   Pacman: pacman -Qu                        — against the local sync databases
+     *   Zypper: zypper --no-refresh list-updates  — "v | repo | name | current | available | arch"
+     */
+    private List<PackageUpdate> fetchNativeUpdates() throws IOException, InterruptedException {
+        return switch (packageService.getNativePackageManager()) {
+            case DNF    -> parseDnf(executor.execute(List.of("dnf", "check-update", "-q"), CHECK_TIMEOUT));
+            case APT    -> parseApt(executor.execute(List.of("apt", "list", "--upgradable"), CHECK_TIMEOUT));
+            case PACMAN -> parsePacman(executor.execute(List.of("pacman", "-Qu"), CHECK_TIMEOUT));
+            case ZYPPER -> parseZypper(executor.execute(
+                    List.of("zypper", "--no-refresh", "list-updates"), CHECK_TIMEOUT));
+            default     -> {
+                log.warn("No supported native package manager detected");
+                yield List.of();
+            }
+        };
+    }
+
+    private List<PackageUpdate> parseDnf(String output) {
+        failOnError(output, "Error:");
+        List<PackageUpdate> updates = new ArrayList<>();
+        for (String line : output.split("\n")) {
+            if (line.startsWith("Obsoleting")) break; // trailing section repeats names with obsoleted packages
+            Matcher m = DNF_LINE.matcher(line);
+            if (m.matches()) {
+                String name = m.group(1);
+                updates.add(new PackageUpdate(name, name, installedVersion(name), m.group(3), Source.NATIVE));
+            }
+        }
+        return updates;
+    }
+
+    private List<PackageUpdate> parseApt(String output) {
+        failOnError(output, "E: ");
+        List<PackageUpdate> updates = new ArrayList<>();
+        for (String line : output.split("\n")) {
+            Matcher m = APT_LINE.matcher(line);
+            if (m.find()) {
+                updates.add(new PackageUpdate(m.group(1), m.group(1), m.group(3).trim(), m.group(2), Source.NATIVE));
+            }
+        }
+        return updates;
+    }
+
+    private List<PackageUpdate> parsePacman(String output) {
+        failOnError(output, "error:");
+        List<PackageUpdate> updates = new ArrayList<>();
+        for (String line : output.split("\n")) {
+            Matcher m = PACMAN_LINE.matcher(line.trim());
+            if (m.find()) {
+                updates.add(new PackageUpdate(m.group(1), m.group(1), m.group(2), m.group(3), Source.NATIVE));
+            }
+        }
+        return updates;
+    }
+
+    private List<PackageUpdate> parseZypper(String output) {
+        List<PackageUpdate> updates = new ArrayList<>();
+        for (String line : output.split("\n")) {
+            String[] f = line.split("\\|");
+            if (f.length < 5 || !f[0].trim().equals("v")) continue;
+            String name = f[2].trim();
+            updates.add(new PackageUpdate(name, name, f[3].trim(), f[4].trim(), Source.NATIVE));
+        }
+        return updates;
+    }
+
+    // -------------------------------------------------------------------------
+    // Flatpak update checks
+    // -------------------------------------------------------------------------
+
+    private List<PackageUpdate> fetchFlatpakUpdates() throws IOException, InterruptedException {
+        if (!packageService.isFlatpakAvailable()) return List.of();
+        // columns: human name, app-id, new version
+        String output = executor.executeChecked(List.of(
+                "flatpak", "remote-ls", "--updates", "--columns=name,application,version"
+        ), CHECK_TIMEOUT);
+        List<PackageUpdate> updates = new ArrayList<>();
+        for (String line : output.split("\n")) {
+            if (line.isBlank() || !line.contains("\t")) continue;
+            String[] f = line.split("\t", 3);
+            String name  = f[0].trim();
+            String appId = f.length > 1 ? f[1].trim() : name;
+            String ver   = f.length > 2 ? f[2].trim() : "";
+            updates.add(new PackageUpdate(name, appId, installedVersion(appId), ver, Source.FLATPAK));
+        }
+        return updates;
+    }
+
+    // -------------------------------------------------------------------------
+    // Applying updates
+    // -------------------------------------------------------------------------
+
+    /**
+     * Updates the given Flatpak apps in one {@code flatpak update} transaction;
+     * an empty list updates every installed app and runtime.
+     */
+    public String updateFlatpak(List<String> appIds) throws IOException, InterruptedException {
+        log.info("Updating Flatpak: {}", appIds.isEmpty() ? "ALL" : appIds);
+        try {
+            return operationQueue.execute(Source.FLATPAK, PackageOperationQueue.Kind.UPDATE, appIds,
+                    flatpakUpdateTransaction);
+        } finally {
+            invalidate(Source.FLATPAK);
+            packageService.invalidateFlatpak();
+        }
+    }
+
+    /**
+     * Updates the given native packages in one transaction; an empty list upgrades
+     * the whole system. Throws {@link IllegalStateException} without a supported PM.
+     */
+    public String updateNative(List<String> packages) throws IOException, InterruptedException {
+        if (nativeUpdateCommand(packages) == null) {
+            throw new IllegalStateException("No supported native package manager found.");
+        }
+        log.info("Updating native packages: {}", packages.isEmpty() ? "ALL" : packages);
+        try {
+            return operationQueue.execute(Source.NATIVE, PackageOperationQueue.Kind.UPDATE, packages,
+                    nativeUpdateTransaction);
+        } finally {
+            invalidate(Source.NATIVE);
+            packageService.invalidateNative();
+        }
+    }
+
+    private String runFlatpakUpdate(List<String> appIds) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>(List.of("flatpak", "update", "-y", "--noninteractive"));
+        cmd.addAll(appIds);
+        return executor.executeChecked(cmd, UPDATE_TIMEOUT);
+    }
+
+    private String runNativeUpdate(List<String> packages) throws IOException, InterruptedException {
+        return sudoService.runWithSudo(nativeUpdateCommand(packages), UPDATE_TIMEOUT);
+    }
+
+    private List<String> nativeUpdateCommand(List<String> packages) {
+        boolean all = packages.isEmpty();
+        List<String> base = switch (packageService.getNativePackageManager()) {
+            case DNF    -> List.of("dnf", "upgrade", "-y");
+            // --with-new-pkgs: don't hold back upgrades that pull in a new dependency
+            case APT    -> all ? List.of("apt-get", "upgrade", "--with-new-pkgs", "-y")
+                               : List.of("apt-get", "install", "--only-upgrade", "-y");
+            // Arch does not support partial upgrades of the whole system: ALL is -Syu
+            case PACMAN -> all ? List.of("pacman", "-Syu", "--noconfirm")
+                               : List.of("pacman", "-S", "--needed", "--noconfirm");
+            case ZYPPER -> List.of("zypper", "--non-interactive", "update");
+            default     -> null;
+        };
+        if (base == null) return null;
+        List<String> cmd = new ArrayList<>(base);
+        cmd.addAll(packages);
+        return cmd;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /** Installed version from the package snapshot; "" for packages it does not list (dependencies). */
+    private String installedVersion(String id) {
+        PackageInfo pkg = packageService.installed().byId(id);
+        return pkg == null ? "" : pkg.version();
+    }
+
+    /** Check commands exit non-zero for "updates available", so failures are recognised by their output. */
+    private static void failOnError(String output, String errorPrefix) {
+        output.lines()
+                .filter(l -> l.startsWith(errorPrefix))
+                .findFirst()
+                .ifPresent(l -> { throw new RuntimeException("Update check failed: " + l.strip()); });
+    }
+}
@@ -1,6 +1,7 @@
 package com.linuxpkgmgr.tool;
 
 import com.linuxpkgmgr.model.DesktopEntry;
+import com.linuxpkgmgr.model.InstalledPackages;
 import com.linuxpkgmgr.model.PackageInfo;
 import com.linuxpkgmgr.service.DesktopFileService;
 import com.linuxpkgmgr.service.SystemPackageService;
@@ -16,7 +17,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Tool for listing installed GUI applications filtered by freedesktop.org category.
@@ -98,21 +98,18 @@ public class AppQueryTools implements ToolBean {
         String resolved = raw.isEmpty() ? "" : ALIASES.getOrDefault(raw.toLowerCase(), raw);
         log.debug("listInstalledApps — resolved category: '{}'", resolved.isEmpty() ? "(all)" : resolved);
 
-        // Build id → PackageInfo map for version lookup and Flatpak confirmation
-        Map<String, PackageInfo> installedById;
+        // Indexed snapshot: id lookups for version and Flatpak confirmation are O(1)
+        InstalledPackages installed;
         try {
-            installedById = packageService.listInstalled().stream()
-                    .collect(Collectors.toMap(
-                            p -> p.id().toLowerCase(),
-                            p -> p,
-                            (a, b) -> a   // keep first on collision
-                    ));
+            installed = packageService.installed();
         } catch (Exception e) {
             return "Error fetching installed packages: " + e.getMessage();
         }
 
-        List<DesktopEntry> entries = desktopFileService.getDesktopEntries();
-        log.debug("Total desktop entries found: {}", entries.size());
+        List<DesktopEntry> entries = resolved.isEmpty()
+                ? desktopFileService.getDesktopEntries()
+                : desktopFileService.getEntriesInCategory(resolved);
+        log.debug("Desktop entries to consider: {}", entries.size());
 
         List<AppRow> rows = new ArrayList<>();
         Set<String> seen  = new HashSet<>();
@@ -122,15 +119,9 @@ public class AppQueryTools implements ToolBean {
             String dedupeKey = entry.source() + ":" + entry.appId().toLowerCase();
             if (!seen.add(dedupeKey)) continue;
 
-            PackageInfo pkg = lookupPackage(entry, installedById);
+            PackageInfo pkg = lookupPackage(entry, installed);
             if (pkg == null) continue; // Flatpak desktop file with no matching install
 
-            if (!resolved.isEmpty()) {
-                boolean categoryMatches = entry.categories().stream()
-                        .anyMatch(c -> c.equalsIgnoreCase(resolved));
-                if (!categoryMatches) continue;
-            }
-
             rows.add(new AppRow(entry, pkg));
         }
 
@@ -183,13 +174,8 @@ public class AppQueryTools implements ToolBean {
         if (namePattern == null || namePattern.isBlank())
             return "Please provide a name pattern to search for (e.g. \"java\", \"python\", \"postgres\").";
 
-        String lower = namePattern.trim().toLowerCase();
-        List<PackageInfo> matches = packageService.listInstalled().stream()
-                .filter(p -> p.source() == PackageInfo.Source.NATIVE)
-                .filter(p -> p.name().toLowerCase().contains(lower)
-                          || p.id().toLowerCase().contains(lower))
-                .limit(SYS_MAX_RESULTS)
-                .toList();
+        List<PackageInfo> matches = packageService.installed()
+                .search(namePattern, PackageInfo.Source.NATIVE, SYS_MAX_RESULTS);
 
         if (matches.isEmpty())
             return "No installed system software found matching \"" + namePattern + "\".";
@@ -219,17 +205,17 @@ public class AppQueryTools implements ToolBean {
      *       Falls back to a synthetic entry for unowned .desktop files.</li>
      * </ul>
      */
-    private PackageInfo lookupPackage(DesktopEntry entry, Map<String, PackageInfo> installedById) {
+    private PackageInfo lookupPackage(DesktopEntry entry, InstalledPackages installed) {
         String id = entry.appId().toLowerCase();
 
         // Exact match: works for flatpak app-ids and simple native package names
-        PackageInfo pkg = installedById.get(id);
+        PackageInfo pkg = installed.byId(id);
         if (pkg != null) return pkg;
 
         // Last segment of reverse-domain name: org.kde.kate → kate
         int lastDot = id.lastIndexOf('.');
         if (lastDot >= 0) {
-            pkg = installedById.get(id.substring(lastDot + 1));
+            pkg = installed.byId(id.substring(lastDot + 1));
             if (pkg != null) return pkg;
         }
 
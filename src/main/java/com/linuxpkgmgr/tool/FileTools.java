@@ -51,19 +51,18 @@ public class FileTools implements ToolBean {
         List<String> cmd = buildFindCommand(namePattern, extension, type);
         log.debug("search_files — command: {}", cmd);
 
-        String raw;
+        // find is stopped as soon as MAX_RESULTS matches have been read
+        List<String> results;
         try {
-            raw = executor.execute(cmd);
+            results = executor.executeLines(cmd, lines -> lines
+                    .filter(l -> !l.isBlank() && !l.contains("Permission denied"))
+                    .limit(MAX_RESULTS)
+                    .toList());
         } catch (Exception e) {
             log.error("search_files failed", e);
             return "File search failed: " + e.getMessage();
         }
 
-        List<String> results = raw.lines()
-                .filter(l -> !l.isBlank() && !l.contains("Permission denied"))
-                .limit(MAX_RESULTS)
-                .toList();
-
         if (results.isEmpty()) {
             return "No matches found in ~/ for the given criteria.";
         }
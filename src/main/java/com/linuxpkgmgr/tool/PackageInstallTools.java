@@ -1,6 +1,10 @@
 package com.linuxpkgmgr.tool;
 
+import com.linuxpkgmgr.model.PackageInfo.Source;
 import com.linuxpkgmgr.service.CommandExecutor;
+import com.linuxpkgmgr.service.PackageOperationQueue;
+import com.linuxpkgmgr.service.PackageOperationQueue.Kind;
+import com.linuxpkgmgr.service.PackageOperationQueue.PackageTransaction;
 import com.linuxpkgmgr.service.SudoService;
 import com.linuxpkgmgr.service.SystemPackageService;
 import lombok.extern.slf4j.Slf4j;
@@ -8,7 +12,16 @@ import com.linuxpkgmgr.tool.IntentRole;
 import com.linuxpkgmgr.tool.PkgTool;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Tools for installing and removing packages.
@@ -20,21 +33,48 @@ import java.util.List;
  * Native package manager operations use SudoService, which shows a
  * graphical password popup (zenity or kdialog) when sudo credentials
  * are not already cached.
+ *
+ * The batch variants (install_native_packages, install_flatpaks, ...) run every name
+ * through ONE package-manager transaction, so dependencies are resolved and the
+ * lock / sudo prompt are taken once. If the transaction fails only because some names
+ * are unknown, those are reported as such and the rest are retried once. The result
+ * lists the outcome per package.
+ *
+ * Every mutating call goes through {@link PackageOperationQueue}: operations on the
+ * same backend run one at a time, wait out a package-manager lock held by another
+ * process, and concurrent compatible requests are merged into one transaction.
  */
 @Slf4j
 @Component
 public class PackageInstallTools implements ToolBean {
 
+    private static final Duration TRANSACTION_TIMEOUT = Duration.ofHours(1);
+
+    /** Flatpak messages, matched against output / error text; group 1 is the app-id or ref. */
+    private static final Pattern FLATPAK_NOT_FOUND = Pattern.compile(
+            "Nothing matches (\\S+)|No remote refs found (?:similar to|for) ['‘\"]?([^'’\"\\s]+)");
+    private static final Pattern FLATPAK_ALREADY_INSTALLED = Pattern.compile("([\\w.\\-]+)(?:/\\S*)? is already installed");
+    private static final Pattern FLATPAK_NOT_INSTALLED = Pattern.compile("([\\w.\\-]+)/\\S* not installed");
+
     private final SystemPackageService packageService;
     private final CommandExecutor executor;
     private final SudoService sudoService;
+    private final PackageOperationQueue operationQueue;
+
+    // One instance per transaction: the queue only merges operations that share it
+    private final PackageTransaction flatpakInstallTransaction = this::flatpakInstall;
+    private final PackageTransaction flatpakRemoveTransaction  = this::flatpakRemove;
+    private final PackageTransaction nativeInstallTransaction  = this::nativeInstall;
+    private final PackageTransaction nativeRemoveTransaction   = this::nativeRemove;
 
     public PackageInstallTools(SystemPackageService packageService,
                                CommandExecutor executor,
-                               SudoService sudoService) {
+                               SudoService sudoService,
+                               PackageOperationQueue operationQueue) {
         this.packageService = packageService;
         this.executor = executor;
         this.sudoService = sudoService;
+        this.operationQueue = operationQueue;
     }
 
     // -------------------------------------------------------------------------
@@ -54,8 +94,9 @@ public class PackageInstallTools implements ToolBean {
         }
         log.info("Installing Flatpak: {}", appId);
         try {
-            String output = executor.executeChecked(List.of("flatpak", "install", "--user", "flathub", appId, "-y"));
-            packageService.invalidateCache();
+            String output = operationQueue.execute(Source.FLATPAK, Kind.INSTALL, List.of(appId),
+                    flatpakInstallTransaction);
+            packageService.invalidateFlatpak();
             return "Successfully installed " + appId + ".\n" + output.strip();
         } catch (Exception e) {
             log.error("installFlatpak failed for {}", appId, e);
@@ -75,8 +116,9 @@ public class PackageInstallTools implements ToolBean {
         }
         log.info("Removing Flatpak: {}", appId);
         try {
-            String output = executor.executeChecked(List.of("flatpak", "uninstall", "--user", appId, "-y"));
-            packageService.invalidateCache();
+            String output = operationQueue.execute(Source.FLATPAK, Kind.REMOVE, List.of(appId),
+                    flatpakRemoveTransaction);
+            packageService.invalidateFlatpak();
             return "Successfully removed " + appId + ".\n" + output.strip();
         } catch (Exception e) {
             log.error("removeFlatpak failed for {}", appId, e);
@@ -84,6 +126,39 @@ public class PackageInstallTools implements ToolBean {
         }
     }
 
+    @PkgTool(name = "install_flatpaks", role = IntentRole.END, description = """
+            Installs several Flatpak applications from Flathub in ONE transaction.
+            Prefer this over calling install_flatpak repeatedly when the user wants more than one app.
+            Call this only after the user has explicitly confirmed the installation.
+            appIds: list of Flatpak application IDs (e.g. ['org.videolan.VLC', 'org.gimp.GIMP']).
+            Returns the result for each app.
+            """)
+    public String installFlatpaks(List<String> appIds) {
+        if (!packageService.isFlatpakAvailable()) {
+            return "Flatpak is not installed on this system.";
+        }
+        return runBatch(appIds, Op.INSTALL,
+                ids -> operationQueue.execute(Source.FLATPAK, Kind.INSTALL, ids, flatpakInstallTransaction),
+                new Rules(FLATPAK_NOT_FOUND, FLATPAK_ALREADY_INSTALLED),
+                packageService::invalidateFlatpak);
+    }
+
+    @PkgTool(name = "remove_flatpaks", role = IntentRole.END, description = """
+            Removes several Flatpak applications in ONE transaction.
+            Call this only after the user has explicitly confirmed the removal.
+            appIds: list of Flatpak application IDs.
+            Returns the result for each app.
+            """)
+    public String removeFlatpaks(List<String> appIds) {
+        if (!packageService.isFlatpakAvailable()) {
+            return "Flatpak is not installed on this system.";
+        }
+        return runBatch(appIds, Op.REMOVE,
+                ids -> operationQueue.execute(Source.FLATPAK, Kind.REMOVE, ids, flatpakRemoveTransaction),
+                new Rules(FLATPAK_NOT_INSTALLED, FLATPAK_NOT_INSTALLED),
+                packageService::invalidateFlatpak);
+    }
+
     // -------------------------------------------------------------------------
     // Native package manager — requires sudo (password popup shown as needed)
     // -------------------------------------------------------------------------
@@ -97,12 +172,12 @@ public class PackageInstallTools implements ToolBean {
             Returns installation output or an error message.
             """)
     public String installNativePackage(String packageName) {
-        List<String> cmd = nativeInstallCommand(packageName);
-        if (cmd == null) return "No supported native package manager found.";
+        if (nativeInstallCommand(List.of()) == null) return "No supported native package manager found.";
         log.info("Installing native package: {}", packageName);
         try {
-            String output = sudoService.runWithSudo(cmd);
-            packageService.invalidateCache();
+            String output = operationQueue.execute(Source.NATIVE, Kind.INSTALL, List.of(packageName),
+                    nativeInstallTransaction);
+            packageService.invalidateNative();
             return "Successfully installed " + packageName + ".\n" + output.strip();
         } catch (Exception e) {
             log.error("installNativePackage failed for {}", packageName, e);
@@ -118,12 +193,12 @@ public class PackageInstallTools implements ToolBean {
             Returns removal output or an error message.
             """)
     public String removeNativePackage(String packageName) {
-        List<String> cmd = nativeRemoveCommand(packageName);
-        if (cmd == null) return "No supported native package manager found.";
+        if (nativeRemoveCommand(List.of()) == null) return "No supported native package manager found.";
         log.info("Removing native package: {}", packageName);
         try {
-            String output = sudoService.runWithSudo(cmd);
-            packageService.invalidateCache();
+            String output = operationQueue.execute(Source.NATIVE, Kind.REMOVE, List.of(packageName),
+                    nativeRemoveTransaction);
+            packageService.invalidateNative();
             return "Successfully removed " + packageName + ".\n" + output.strip();
         } catch (Exception e) {
             log.error("removeNativePackage failed for {}", packageName, e);
@@ -131,27 +206,207 @@ public class PackageInstallTools implements ToolBean {
         }
     }
 
+    @PkgTool(name = "install_native_packages", role = IntentRole.END, description = """
+            Installs several packages in ONE native package-manager transaction (dnf/apt/pacman/zypper).
+            Prefer this over calling install_native_package repeatedly, e.g. when setting up a
+            development machine — dependencies are resolved once and the password popup appears at most once.
+            Call this only after the user has explicitly confirmed the installation.
+            Requires sudo/root privileges — a password popup will appear if needed.
+            packageNames: list of native package names (e.g. ['git', 'gcc', 'make']).
+            Returns the result for each package.
+            """)
+    public String installNativePackages(List<String> packageNames) {
+        if (nativeInstallCommand(List.of()) == null) return "No supported native package manager found.";
+        return runBatch(packageNames, Op.INSTALL,
+                pkgs -> operationQueue.execute(Source.NATIVE, Kind.INSTALL, pkgs, nativeInstallTransaction),
+                nativeRules(Op.INSTALL), packageService::invalidateNative);
+    }
+
+    @PkgTool(name = "remove_native_packages", role = IntentRole.END, description = """
+            Removes several packages in ONE native package-manager transaction (dnf/apt/pacman/zypper).
+            Call this only after the user has explicitly confirmed the removal.
+            Requires sudo/root privileges — a password popup will appear if needed.
+            packageNames: list of native package names.
+            Returns the result for each package.
+            """)
+    public String removeNativePackages(List<String> packageNames) {
+        if (nativeRemoveCommand(List.of()) == null) return "No supported native package manager found.";
+        return runBatch(packageNames, Op.REMOVE,
+                pkgs -> operationQueue.execute(Source.NATIVE, Kind.REMOVE, pkgs, nativeRemoveTransaction),
+                nativeRules(Op.REMOVE), packageService::invalidateNative);
+    }
+
     // -------------------------------------------------------------------------
-    // Helpers
+    // Batch transactions
     // -------------------------------------------------------------------------
 
-    private List<String> nativeInstallCommand(String pkg) {
+    private enum Op {
+        INSTALL("installed", "already installed", "not found"),
+        REMOVE ("removed",   "not installed",     "not installed");
+
+        final String done, alreadyDone, unknown;
+
+        Op(String done, String alreadyDone, String unknown) {
+            this.done = done;
+            this.alreadyDone = alreadyDone;
+            this.unknown = unknown;
+        }
+    }
+
+    /**
+     * How a backend reports per-package outcomes. Every capture group that matches names
+     * one or more packages (names, name-version strings or Flatpak refs).
+     *
+     * @param unknown     name the backend cannot resolve — fails the transaction on most PMs
+     * @param alreadyDone package that needed no change (already installed / not installed)
+     */
+    private record Rules(Pattern unknown, Pattern alreadyDone) {}
+
+    /**
+     * Runs all {@code names} as one transaction. If it fails and the error names unknown
+     * packages, those are dropped and the remainder is retried once — so a typo costs
+     * one extra transaction, not one per package.
+     */
+    private String runBatch(List<String> names, Op op, PackageTransaction transaction,
+                            Rules rules, Runnable invalidate) {
+        List<String> pending = names == null ? new ArrayList<>() : new ArrayList<>(names.stream()
+                .filter(n -> n != null && !n.isBlank())
+                .map(String::trim)
+                .distinct()
+                .toList());
+        if (pending.isEmpty()) return "Please pass at least one package name.";
+        log.info("Batch {} of {}", op, pending);
+
+        Map<String, String> results = new LinkedHashMap<>();
+        pending.forEach(n -> results.put(n, null));
+        String output = null;
+        String failure = null;
+
+        for (int attempt = 0; attempt < 2 && !pending.isEmpty(); attempt++) {
+            try {
+                output = transaction.run(List.copyOf(pending));
+                failure = null;
+                break;
+            } catch (Exception e) {
+                log.error("Batch {} failed for {}", op, pending, e);
+                failure = e.getMessage() == null ? e.toString() : e.getMessage();
+                Set<String> unknown = mentioned(rules.unknown(), failure, pending);
+                if (unknown.isEmpty()) break; // not a name problem — retrying would fail the same way
+                unknown.forEach(n -> results.put(n, op.unknown));
+                pending.removeAll(unknown);
+            }
+        }
+        invalidate.run();
+
+        if (output != null) {
+            // Some PMs only warn (exit 0) about unknown or unchanged names
+            mentioned(rules.unknown(), output, pending).forEach(n -> results.put(n, op.unknown));
+            mentioned(rules.alreadyDone(), output, pending).forEach(n -> results.put(n, op.alreadyDone));
+        }
+        for (String n : pending) {
+            if (results.get(n) == null) results.put(n, failure != null ? "failed" : op.done);
+        }
+
+        long changed = results.values().stream().filter(op.done::equals).count();
+        StringBuilder sb = new StringBuilder();
+        sb.append(op == Op.INSTALL ? "Installed " : "Removed ").append(changed)
+          .append(" of ").append(results.size()).append(" package(s) in one transaction:\n\n");
+        results.forEach((n, r) -> sb.append("  %-40s  %s\n".formatted(n, r)));
+        if (failure != null) sb.append("\nTransaction failed: ").append(failure.strip());
+        return sb.toString().strip();
+    }
+
+    /** Which of {@code candidates} the matches of {@code pattern} in {@code text} refer to. */
+    private static Set<String> mentioned(Pattern pattern, String text, List<String> candidates) {
+        Set<String> found = new LinkedHashSet<>();
+        Matcher m = pattern.matcher(text);
+        while (m.find()) {
+            for (int g = 1; g <= m.groupCount(); g++) {
+                if (m.group(g) == null) continue;
+                for (String token : m.group(g).split("[\\s,'\"‘’]+")) {
+                    candidates.stream().filter(c -> refersTo(token, c)).forEach(found::add);
+                }
+            }
+        }
+        return found;
+    }
+
+    /** {@code token} is the package itself, a name-version string ({@code git-2.44.0-1}) or a ref ({@code org.x.Y/x86_64/stable}). */
+    private static boolean refersTo(String token, String name) {
+        if (token.equalsIgnoreCase(name)) return true;
+        if (token.length() <= name.length() + 1 || !token.regionMatches(true, 0, name, 0, name.length())) return false;
+        char sep = token.charAt(name.length());
+        char next = token.charAt(name.length() + 1);
+        return sep == '/' || (sep == '-' && Character.isDigit(next));
+    }
+
+    private Rules nativeRules(Op op) {
+        boolean install = op == Op.INSTALL;
         return switch (packageService.getNativePackageManager()) {
-            case DNF    -> List.of("dnf",     "install",              "-y",           pkg);
-            case APT    -> List.of("apt-get", "install",              "-y",           pkg);
-            case PACMAN -> List.of("pacman",  "-S",                   "--noconfirm",  pkg);
-            case ZYPPER -> List.of("zypper",  "--non-interactive",    "install",      pkg);
+            case DNF    -> new Rules(
+                    Pattern.compile("No match for argument: (.+)|Unable to find a match: (.+)"),
+                    Pattern.compile(install ? "Package (\\S+) is already installed" : "No packages marked for removal: (.+)"));
+            case APT    -> new Rules(
+                    Pattern.compile("Unable to locate package (\\S+)|Package '(\\S+)' has no installation candidate"),
+                    Pattern.compile(install ? "(\\S+) is already the newest version" : "Package '(\\S+)' is not installed"));
+            case PACMAN -> new Rules(
+                    Pattern.compile("target not found: (\\S+)"),
+                    Pattern.compile("(\\S+) is up to date -- skipping"));
+            case ZYPPER -> new Rules(
+                    Pattern.compile("'(\\S+)' not found in package names|No provider of '(\\S+)' found"),
+                    Pattern.compile(install ? "'(\\S+)' is already installed" : "Package '(\\S+)' is not installed"));
+            default     -> new Rules(Pattern.compile("(?!)"), Pattern.compile("(?!)"));
+        };
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private String flatpakInstall(List<String> appIds) throws IOException, InterruptedException {
+        return executor.executeChecked(
+                concat(List.of("flatpak", "install", "--user", "-y", "flathub"), appIds), TRANSACTION_TIMEOUT);
+    }
+
+    private String flatpakRemove(List<String> appIds) throws IOException, InterruptedException {
+        return executor.executeChecked(
+                concat(List.of("flatpak", "uninstall", "--user", "-y"), appIds), TRANSACTION_TIMEOUT);
+    }
+
+    private String nativeInstall(List<String> pkgs) throws IOException, InterruptedException {
+        return sudoService.runWithSudo(nativeInstallCommand(pkgs), TRANSACTION_TIMEOUT);
+    }
+
+    private String nativeRemove(List<String> pkgs) throws IOException, InterruptedException {
+        return sudoService.runWithSudo(nativeRemoveCommand(pkgs), TRANSACTION_TIMEOUT);
+    }
+
+    private List<String> nativeInstallCommand(List<String> pkgs) {
+        List<String> base = switch (packageService.getNativePackageManager()) {
+            case DNF    -> List.of("dnf",     "install",              "-y");
+            case APT    -> List.of("apt-get", "install",              "-y");
+            // --needed: don't reinstall what is already there (matches dnf/apt behaviour)
+            case PACMAN -> List.of("pacman",  "-S",                   "--needed", "--noconfirm");
+            case ZYPPER -> List.of("zypper",  "--non-interactive",    "install");
             default     -> null;
         };
+        return base == null ? null : concat(base, pkgs);
     }
 
-    private List<String> nativeRemoveCommand(String pkg) {
-        return switch (packageService.getNativePackageManager()) {
-            case DNF    -> List.of("dnf",     "remove",           "-y",           pkg);
-            case APT    -> List.of("apt-get", "remove",           "-y",           pkg);
-            case PACMAN -> List.of("pacman",  "-R",               "--noconfirm",  pkg);
-            case ZYPPER -> List.of("zypper",  "--non-interactive","remove",       pkg);
+    private List<String> nativeRemoveCommand(List<String> pkgs) {
+        List<String> base = switch (packageService.getNativePackageManager()) {
+            case DNF    -> List.of("dnf",     "remove",           "-y");
+            case APT    -> List.of("apt-get", "remove",           "-y");
+            case PACMAN -> List.of("pacman",  "-R",               "--noconfirm");
+            case ZYPPER -> List.of("zypper",  "--non-interactive","remove");
             default     -> null;
         };
+        return base == null ? null : concat(base, pkgs);
+    }
+
+    private static List<String> concat(List<String> base, List<String> args) {
+        List<String> cmd = new ArrayList<>(base);
+        cmd.addAll(args);
+        return cmd;
     }
 }
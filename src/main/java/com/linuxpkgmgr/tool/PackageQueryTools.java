@@ -1,5 +1,6 @@
 package com.linuxpkgmgr.tool;
 
+import com.linuxpkgmgr.model.InstalledPackages;
 import com.linuxpkgmgr.model.PackageInfo;
 import com.linuxpkgmgr.service.CommandExecutor;
 import com.linuxpkgmgr.service.SystemPackageService;
@@ -37,21 +38,16 @@ public class PackageQueryTools implements ToolBean {
     public String getPackageInfo(String packageName) {
         log.debug("getPackageInfo called — packageName: '{}'", packageName);
 
-        List<PackageInfo> installed;
+        InstalledPackages installed;
         try {
-            installed = packageService.listInstalled();
+            installed = packageService.installed();
         } catch (Exception e) {
             log.warn("getPackageInfo — failed to fetch installed list: {}", e.getMessage());
-            installed = List.of();
+            installed = InstalledPackages.EMPTY;
         }
 
-        String lower = packageName.toLowerCase();
-        List<PackageInfo> matches = installed.stream()
-                .filter(p -> p.id().equalsIgnoreCase(packageName)
-                        || p.name().equalsIgnoreCase(packageName)
-                        || p.id().toLowerCase().contains(lower)
-                        || p.name().toLowerCase().contains(lower))
-                .toList();
+        // Exact id/name matches rank first, then prefix, then substring
+        List<PackageInfo> matches = installed.search(packageName, null, Integer.MAX_VALUE);
 
         log.debug("getPackageInfo — installed matches for '{}': {}", packageName, matches.size());
 
@@ -1,19 +1,32 @@
 package com.linuxpkgmgr.tool;
 
+import com.linuxpkgmgr.model.PackageInfo;
+import com.linuxpkgmgr.model.PackageInfo.Source;
 import com.linuxpkgmgr.service.CommandExecutor;
+import com.linuxpkgmgr.service.PackageCatalogService;
 import com.linuxpkgmgr.service.SystemPackageService;
 import lombok.extern.slf4j.Slf4j;
 import com.linuxpkgmgr.tool.IntentRole;
 import com.linuxpkgmgr.tool.PkgTool;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tools for searching available packages in repositories and Flathub.
- * Search order: Flathub first, then native repo.
+ * Search order: Flathub first, then native repo — or both at once via
+ * {@link #searchPackages}, which overlaps the two backends.
+ *
+ * Whenever {@link PackageCatalogService} holds repo metadata for a backend, that backend
+ * is answered from the in-process catalog; otherwise the package manager is spawned.
  */
 @Slf4j
 @Component
@@ -21,12 +34,109 @@ public class PackageSearchTools implements ToolBean {
 
     private static final int MAX_RESULTS = 20;
 
+    /** Hard deadline for a single search subprocess (stale mirrors can hang dnf indefinitely). */
+    private static final Duration SEARCH_TIMEOUT = Duration.ofSeconds(60);
+
     private final SystemPackageService packageService;
     private final CommandExecutor executor;
+    private final PackageCatalogService catalog;
+
+    @Value("${pkg-mgr.search.latency-budget-ms:8000}")
+    private long latencyBudgetMs = 8000;
 
-    public PackageSearchTools(SystemPackageService packageService, CommandExecutor executor) {
+    public PackageSearchTools(SystemPackageService packageService, CommandExecutor executor,
+                              PackageCatalogService catalog) {
         this.packageService = packageService;
         this.executor = executor;
+        this.catalog = catalog;
+    }
+
+    /**
+     * One parsed search result.
+     *
+     * @param name package name (native) or human-readable name (Flatpak)
+     * @param id   Flatpak app-id; same as {@code name} for native packages
+     * @param line display line, already formatted for the LLM
+     */
+    private record Hit(String name, String id, String line) {}
+
+    @PkgTool(name = "search_packages", role = IntentRole.START, description = """
+            Searches Flathub AND the native system repository (dnf/apt/pacman/zypper) at the same time
+            for applications or packages NOT YET INSTALLED on the system.
+            Prefer this over calling search_flathub and search_native_repo one after the other.
+            Use this ONLY when the user wants to discover or install new packages.
+            Do NOT use this to list or query already-installed packages.
+            query: keyword, app name, or description term (e.g. 'video editor', 'vlc', 'scanner').
+            Returns merged results, Flatpak first; apps found in both sources are listed once.
+            """)
+    public String searchPackages(String query) {
+        log.debug("searchPackages called — query: '{}', budget: {} ms", query, latencyBudgetMs);
+
+        // Raw command futures — cancelling them kills searches still running after the budget
+        List<CompletableFuture<String>> commands = new ArrayList<>();
+        CompletableFuture<List<Hit>> flathub = !packageService.isFlatpakAvailable()
+                ? CompletableFuture.completedFuture(List.of())
+                : catalog.covers(Source.FLATPAK)
+                ? CompletableFuture.completedFuture(catalogHits(Source.FLATPAK, query))
+                : launch(flathubCommand(query), commands).thenApply(this::parseFlathub);
+
+        List<String> nativeCmd = nativeSearchCommand(query);
+        CompletableFuture<List<Hit>> nativeRepo = nativeCmd == null
+                ? CompletableFuture.completedFuture(List.of())
+                : catalog.covers(Source.NATIVE)
+                ? CompletableFuture.completedFuture(catalogHits(Source.NATIVE, query))
+                : launch(nativeCmd, commands).thenApply(this::parseNative);
+
+        // Wait for both, but never longer than the budget — whatever has arrived by then is returned
+        try {
+            CompletableFuture.allOf(flathub, nativeRepo)
+                    .completeOnTimeout(null, latencyBudgetMs, TimeUnit.MILLISECONDS)
+                    .join();
+        } catch (Exception e) {
+            log.debug("searchPackages — a backend failed: {}", e.getMessage());
+        }
+
+        List<String> notes = new ArrayList<>();
+        List<Hit> flatpakHits = collect(flathub, "Flathub", "search_flathub", notes);
+        List<Hit> nativeHits  = collect(nativeRepo, "native repo", "search_native_repo", notes);
+        commands.forEach(c -> c.cancel(true));
+        if (!packageService.isFlatpakAvailable()) notes.add("Flatpak is not available on this system.");
+        if (nativeCmd == null) notes.add("No supported native package manager detected on this system.");
+
+        // Dedupe: a native package named like a Flatpak's name or last app-id segment is the same app
+        Map<String, Hit> flatpakByKey = new HashMap<>();
+        for (Hit h : flatpakHits) {
+            flatpakByKey.putIfAbsent(h.name().toLowerCase(), h);
+            flatpakByKey.putIfAbsent(lastSegment(h.id()).toLowerCase(), h);
+        }
+        Map<Hit, String> alsoNative = new HashMap<>();
+        List<Hit> nativeOnly = new ArrayList<>();
+        for (Hit h : nativeHits) {
+            Hit twin = flatpakByKey.get(h.name().toLowerCase());
+            if (twin != null) alsoNative.putIfAbsent(twin, h.name());
+            else nativeOnly.add(h);
+        }
+
+        List<String> rows = new ArrayList<>();
+        flatpakHits.stream().limit(MAX_RESULTS / 2).forEach(h -> rows.add(
+                alsoNative.containsKey(h) ? h.line() + "  (also in native repo as " + alsoNative.get(h) + ")" : h.line()));
+        nativeOnly.stream().limit(MAX_RESULTS / 2).forEach(h -> rows.add("[native]   " + h.line()));
+
+        log.debug("searchPackages — flatpak: {}, native: {}, merged: {}", flatpakHits.size(), nativeHits.size(), rows.size());
+
+        StringBuilder sb = new StringBuilder();
+        if (rows.isEmpty()) {
+            sb.append("No packages found matching \"").append(query).append("\".\n");
+        } else {
+            sb.append("Search results for \"").append(query)
+              .append("\" (").append(rows.size()).append(" shown):\n\n");
+            rows.forEach(r -> sb.append(r).append("\n"));
+        }
+        if (!notes.isEmpty()) {
+            sb.append("\n");
+            notes.forEach(n -> sb.append("(").append(n).append(")\n"));
+        }
+        return sb.toString().strip();
     }
 
     @PkgTool(name = "search_flathub", role = IntentRole.START, description = """
@@ -44,42 +154,25 @@ public class PackageSearchTools implements ToolBean {
             return "Flatpak is not available on this system.";
         }
 
-        String output;
+        List<Hit> hits;
         try {
-            output = executor.execute(List.of(
-                    "flatpak", "search", query, "--columns=name,application,description,version"
-            ));
+            hits = catalog.covers(Source.FLATPAK)
+                    ? catalogHits(Source.FLATPAK, query)
+                    : parseFlathub(executor.execute(flathubCommand(query), SEARCH_TIMEOUT));
         } catch (Exception e) {
             return "Error searching Flathub: " + e.getMessage();
         }
 
-        List<String[]> rows = Arrays.stream(output.split("\n"))
-                .filter(l -> !l.isBlank() && l.contains("\t"))
-                .map(l -> l.split("\t", 4))
-                .filter(f -> f.length >= 2)
-                .limit(MAX_RESULTS)
-                .toList();
+        log.debug("searchFlathub — results: {}", hits.size());
 
-        log.debug("searchFlathub — results: {}", rows.size());
-
-        if (rows.isEmpty()) {
+        if (hits.isEmpty()) {
             return "No Flatpak applications found on Flathub matching \"" + query + "\".";
         }
 
         StringBuilder sb = new StringBuilder();
         sb.append("Flathub results for \"").append(query)
-          .append("\" (").append(rows.size()).append(" shown):\n\n");
-
-        for (String[] f : rows) {
-            String name    = f[0].trim();
-            String appId   = f.length > 1 ? f[1].trim() : "";
-            String desc    = f.length > 2 ? f[2].trim() : "";
-            String version = f.length > 3 ? f[3].trim() : "";
-            String summary = desc.isBlank() ? "" : " — " + desc;
-            sb.append("[flatpak]  %-45s %-15s%s\n".formatted(
-                    name + " (" + appId + ")", version, summary));
-        }
-
+          .append("\" (").append(hits.size()).append(" shown):\n\n");
+        hits.forEach(h -> sb.append(h.line()).append("\n"));
         return sb.toString();
     }
 
@@ -94,14 +187,16 @@ public class PackageSearchTools implements ToolBean {
     public String searchNativeRepo(String query) {
         log.debug("searchNativeRepo called — query: '{}', pm: {}", query, packageService.getNativePackageManager());
 
+        List<String> cmd = nativeSearchCommand(query);
+        if (cmd == null) return "No supported native package manager detected on this system.";
+
         try {
-            return switch (packageService.getNativePackageManager()) {
-                case DNF    -> searchDnf(query);
-                case APT    -> searchApt(query);
-                case PACMAN -> searchPacman(query);
-                case ZYPPER -> searchZypper(query);
-                default     -> "No supported native package manager detected on this system.";
-            };
+            List<Hit> hits = catalog.covers(Source.NATIVE)
+                    ? catalogHits(Source.NATIVE, query)
+                    : parseNative(executor.execute(cmd, SEARCH_TIMEOUT));
+            log.debug("searchNativeRepo — lines: {}", hits.size());
+            if (hits.isEmpty()) return "No native packages found matching \"" + query + "\".";
+            return formatNativeOutput(query, hits.stream().map(Hit::line).toList());
         } catch (Exception e) {
             return "Error searching native repo: " + e.getMessage();
         }
@@ -109,66 +204,114 @@ public class PackageSearchTools implements ToolBean {
 
     // -------------------------------------------------------------------------
 
+    private List<String> flathubCommand(String query) {
+        return List.of("flatpak", "search", query, "--columns=name,application,description,version");
+    }
+
+    private List<Hit> parseFlathub(String output) {
+        return Arrays.stream(output.split("\n"))
+                .filter(l -> !l.isBlank() && l.contains("\t"))
+                .map(l -> l.split("\t", 4))
+                .filter(f -> f.length >= 2)
+                .limit(MAX_RESULTS)
+                .map(f -> flatpakHit(
+                        f[0].trim(),
+                        f.length > 1 ? f[1].trim() : "",
+                        f.length > 2 ? f[2].trim() : "",
+                        f.length > 3 ? f[3].trim() : ""))
+                .toList();
+    }
+
+    /** Answers a search from the local catalog, formatted exactly like the subprocess results. */
+    private List<Hit> catalogHits(Source source, String query) {
+        List<PackageInfo> pkgs = catalog.search(source, query, MAX_RESULTS);
+        log.debug("catalog search — source: {}, query: '{}', hits: {}", source, query, pkgs.size());
+        return pkgs.stream()
+                .map(p -> source == Source.FLATPAK
+                        ? flatpakHit(p.name(), p.id(), p.summary(), p.version())
+                        : nativeHit(p.name(), p.name() + " " + p.version()
+                                + (p.summary().isBlank() ? "" : " — " + p.summary())))
+                .toList();
+    }
+
+    private List<String> nativeSearchCommand(String query) {
+        return switch (packageService.getNativePackageManager()) {
+            case DNF    -> List.of("dnf", "search", query);
+            case APT    -> List.of("apt-cache", "search", query);
+            case PACMAN -> List.of("pacman", "-Ss", query);
+            case ZYPPER -> List.of("zypper", "--no-refresh", "search", query);
+            default     -> null;
+        };
+    }
+
+    private List<Hit> parseNative(String output) {
+        return switch (packageService.getNativePackageManager()) {
+            case DNF    -> parseDnf(output);
+            case APT    -> parseApt(output);
+            case PACMAN -> parsePacman(output);
+            case ZYPPER -> parseZypper(output);
+            default     -> List.of();
+        };
+    }
+
     /**
-     * Searches DNF (Fedora/RHEL) repositories.
+     * Parses DNF (Fedora/RHEL) search output.
      * Command: dnf search <query>
      * Output line format: "vlc.x86_64 : VLC media player"
      * Filters out section headers (starting with '=') and metadata lines.
      */
-    private String searchDnf(String query) throws Exception {
-        String output = executor.execute(List.of("dnf", "search", query));
-        List<String> lines = Arrays.stream(output.split("\n"))
+    private List<Hit> parseDnf(String output) {
+        return Arrays.stream(output.split("\n"))
                 .filter(l -> l.contains(" : ") && !l.startsWith("=") && !l.startsWith("Last") && !l.startsWith("Error"))
                 .limit(MAX_RESULTS)
+                .map(l -> {
+                    String nameArch = l.substring(0, l.indexOf(" : ")).trim();
+                    int dot = nameArch.lastIndexOf('.');
+                    return nativeHit(dot > 0 ? nameArch.substring(0, dot) : nameArch, l);
+                })
                 .toList();
-        log.debug("searchDnf — lines: {}", lines.size());
-        if (lines.isEmpty()) return "No native packages found matching \"" + query + "\".";
-        return formatNativeOutput(query, lines);
     }
 
     /**
-     * Searches APT (Debian/Ubuntu) repositories.
+     * Parses APT (Debian/Ubuntu) search output.
      * Command: apt-cache search <query>
      * Output line format: "vlc - multimedia player and streamer"
      * Output is already clean one-line-per-package, no headers to strip.
      */
-    private String searchApt(String query) throws Exception {
-        String output = executor.execute(List.of("apt-cache", "search", query));
-        List<String> lines = Arrays.stream(output.split("\n"))
+    private List<Hit> parseApt(String output) {
+        return Arrays.stream(output.split("\n"))
                 .filter(l -> !l.isBlank())
                 .limit(MAX_RESULTS)
+                .map(l -> nativeHit(l.contains(" - ") ? l.substring(0, l.indexOf(" - ")).trim() : l.trim(), l))
                 .toList();
-        log.debug("searchApt — lines: {}", lines.size());
-        if (lines.isEmpty()) return "No native packages found matching \"" + query + "\".";
-        return formatNativeOutput(query, lines);
     }
 
     /**
-     * Searches Pacman (Arch Linux) repositories.
+     * Parses Pacman (Arch Linux) search output.
      * Command: pacman -Ss <query>
      * Output format is two lines per package:
      *   "extra/vlc 3.0.20-1 [installed]"
      *   "    VLC media player"
      * Both lines are merged into a single entry: "extra/vlc 3.0.20-1 — VLC media player"
      */
-    private String searchPacman(String query) throws Exception {
-        String[] rawLines = executor.execute(List.of("pacman", "-Ss", query)).split("\n");
-        List<String> lines = new ArrayList<>();
-        for (int i = 0; i < rawLines.length && lines.size() < MAX_RESULTS; i++) {
+    private List<Hit> parsePacman(String output) {
+        String[] rawLines = output.split("\n");
+        List<Hit> hits = new ArrayList<>();
+        for (int i = 0; i < rawLines.length && hits.size() < MAX_RESULTS; i++) {
             String l = rawLines[i];
             if (!l.startsWith(" ") && l.contains("/")) {
                 String desc = (i + 1 < rawLines.length) ? rawLines[i + 1].trim() : "";
-                lines.add(l.trim() + (desc.isBlank() ? "" : " — " + desc));
+                String repoName = l.trim().split("\\s+", 2)[0];
+                String name = repoName.substring(repoName.indexOf('/') + 1);
+                hits.add(nativeHit(name, l.trim() + (desc.isBlank() ? "" : " — " + desc)));
                 i++; // skip the description line we already consumed
             }
         }
-        log.debug("searchPacman — lines: {}", lines.size());
-        if (lines.isEmpty()) return "No native packages found matching \"" + query + "\".";
-        return formatNativeOutput(query, lines);
+        return hits;
     }
 
     /**
-     * Searches Zypper (openSUSE/SUSE) repositories.
+     * Parses Zypper (openSUSE/SUSE) search output.
      * Command: zypper --no-refresh search <query>
      * Output row format: "i | vlc | VLC media player | package"
      *   Column 0: status ("i" = installed, blank = available)
@@ -176,27 +319,64 @@ public class PackageSearchTools implements ToolBean {
      *   Column 2: summary
      * Header and separator rows (containing "Name" or "---") are skipped.
      */
-    private String searchZypper(String query) throws Exception {
-        String output = executor.execute(List.of("zypper", "--no-refresh", "search", query));
-        List<String> lines = Arrays.stream(output.split("\n"))
+    private List<Hit> parseZypper(String output) {
+        return Arrays.stream(output.split("\n"))
                 .filter(l -> l.contains("|") && !l.contains("Name") && !l.contains("---"))
                 .map(l -> {
                     String[] f = l.split("\\|");
-                    if (f.length < 3) return l.trim();
+                    if (f.length < 3) return nativeHit(l.trim(), l.trim());
                     String installed = f[0].trim().equals("i") ? "[installed] " : "";
                     String name      = f[1].trim();
                     String summary   = f[2].trim();
-                    return installed + name + " — " + summary;
+                    return nativeHit(name, installed + name + " — " + summary);
                 })
                 .limit(MAX_RESULTS)
                 .toList();
-        log.debug("searchZypper — lines: {}", lines.size());
-        if (lines.isEmpty()) return "No native packages found matching \"" + query + "\".";
-        return formatNativeOutput(query, lines);
+    }
+
+    private Hit flatpakHit(String name, String appId, String desc, String version) {
+        String summary = desc.isBlank() ? "" : " — " + desc;
+        return new Hit(name, appId, "[flatpak]  %-45s %-15s%s".formatted(
+                name + " (" + appId + ")", version, summary));
+    }
+
+    private Hit nativeHit(String name, String line) {
+        return new Hit(name, name, line);
     }
 
     private String formatNativeOutput(String query, List<String> lines) {
         return "[native] results for \"" + query + "\" (" + lines.size() + " shown):\n\n"
                 + String.join("\n", lines);
     }
+
+    /** Starts {@code command} in the background and records its future in {@code launched}. */
+    private CompletableFuture<String> launch(List<String> command, List<CompletableFuture<String>> launched) {
+        CompletableFuture<String> future = executor.executeAsync(command, SEARCH_TIMEOUT);
+        launched.add(future);
+        return future;
+    }
+
+    /**
+     * Returns the future's hits if it finished in time, otherwise an empty list plus
+     * a note telling the LLM which backend is missing and which tool waits for it.
+     */
+    private List<Hit> collect(CompletableFuture<List<Hit>> future, String backend, String tool, List<String> notes) {
+        if (!future.isDone()) {
+            notes.add(backend + " search did not finish within " + latencyBudgetMs + " ms — results omitted; "
+                    + tool + " waits for it");
+            return List.of();
+        }
+        try {
+            return future.join();
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            notes.add("Error searching " + backend + ": " + cause.getMessage());
+            return List.of();
+        }
+    }
+
+    private static String lastSegment(String appId) {
+        int dot = appId.lastIndexOf('.');
+        return dot >= 0 ? appId.substring(dot + 1) : appId;
+    }
 }
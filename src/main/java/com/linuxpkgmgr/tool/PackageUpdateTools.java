@@ -1,21 +1,62 @@
 package com.linuxpkgmgr.tool;
 
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import com.linuxpkgmgr.model.PackageUpdate;
 import com.linuxpkgmgr.service.SystemPackageService;
+import com.linuxpkgmgr.service.UpdateService;
+import com.linuxpkgmgr.service.UpdateService.UpdateCheck;
+import lombok.extern.slf4j.Slf4j;
 import com.linuxpkgmgr.tool.IntentRole;
 import com.linuxpkgmgr.tool.PkgTool;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * Tools for updating packages — individual packages or full system upgrade.
  * The agent MUST confirm with the user before calling mutating tools.
+ *
+ * Checking and applying is delegated to {@link UpdateService}, which caches check
+ * results until package or repository metadata changes and runs every update as a
+ * single package-manager transaction. The cache is kept warm in the background by
+ * {@code UpdatePrefetchService}, so checks usually answer instantly; every report
+ * says when the package manager was last actually queried.
  */
+@Slf4j
 @Component
 public class PackageUpdateTools implements ToolBean {
 
     private final SystemPackageService packageService;
+    private final UpdateService updateService;
+
+    @Value("${pkg-mgr.list.max-results:50}")
+    private int maxResults = 50;
 
-    public PackageUpdateTools(SystemPackageService packageService) {
+    public PackageUpdateTools(SystemPackageService packageService, UpdateService updateService) {
         this.packageService = packageService;
+        this.updateService = updateService;
+    }
+
+    @PkgTool(name = "check_updates", description = """
+            Checks for available updates for Flatpak applications AND native packages at once.
+            Both checks run in parallel. Prefer this over calling check_flatpak_updates and
+            check_native_updates one after the other.
+            Safe to call without confirmation — read-only check.
+            Returns the pending updates per source with current and new versions.
+            """)
+    public String checkUpdates() {
+        log.debug("checkUpdates called");
+        Map<Source, CompletableFuture<UpdateCheck>> checks = updateService.checkAll();
+        StringBuilder sb = new StringBuilder();
+        checks.forEach((source, check) -> sb.append(report(source, check)).append("\n\n"));
+        return sb.toString().trim();
     }
 
     @PkgTool(name = "check_flatpak_updates", description = """
@@ -24,9 +65,11 @@ public class PackageUpdateTools implements ToolBean {
             Returns a list of apps with pending updates and their new versions.
             """)
     public String checkFlatpakUpdates() {
-        // TODO: implement
-        // flatpak remote-ls --updates --columns=name,application,version
-        throw new UnsupportedOperationException("Not yet implemented");
+        log.debug("checkFlatpakUpdates called");
+        if (!packageService.isFlatpakAvailable()) {
+            return "Flatpak is not installed on this system.";
+        }
+        return report(Source.FLATPAK, updateService.check(Source.FLATPAK));
     }
 
     @PkgTool(name = "check_native_updates", description = """
@@ -35,21 +78,31 @@ public class PackageUpdateTools implements ToolBean {
             Returns a list of packages with pending updates.
             """)
     public String checkNativeUpdates() {
-        // TODO: implement
-        // dnf check-update / apt list --upgradable / pacman -Qu / zypper list-updates
-        throw new UnsupportedOperationException("Not yet implemented");
+        log.debug("checkNativeUpdates called");
+        return report(Source.NATIVE, updateService.check(Source.NATIVE));
     }
 
     @PkgTool(name = "update_flatpak", role = IntentRole.END, description = """
             Updates a specific Flatpak application to the latest version.
             Call this only after the user has explicitly confirmed the update.
             Pass 'ALL' as appId to update all installed Flatpak apps.
+            Several app IDs separated by spaces are updated together in one transaction.
             appId: the Flatpak application ID, or 'ALL'.
             """)
     public String updateFlatpak(String appId) {
-        // TODO: implement
-        // flatpak update <appId> -y  /  flatpak update -y
-        throw new UnsupportedOperationException("Not yet implemented");
+        if (!packageService.isFlatpakAvailable()) {
+            return "Flatpak is not installed on this system.";
+        }
+        List<String> targets = targets(appId);
+        if (targets == null) return "Please pass a Flatpak application ID, or 'ALL' to update every app.";
+        String label = targets.isEmpty() ? "all Flatpak apps" : String.join(", ", targets);
+        try {
+            String output = updateService.updateFlatpak(targets);
+            return "Successfully updated " + label + ".\n" + output.strip();
+        } catch (Exception e) {
+            log.error("updateFlatpak failed for {}", label, e);
+            return "Failed to update " + label + ": " + e.getMessage();
+        }
     }
 
     @PkgTool(name = "update_native_package", role = IntentRole.END, description = """
@@ -57,12 +110,76 @@ public class PackageUpdateTools implements ToolBean {
             Call this only after the user has explicitly confirmed the update.
             Requires sudo/root privileges.
             Pass 'ALL' as packageName to upgrade all native packages.
+            Several package names separated by spaces are updated together in one transaction.
             packageName: the native package name, or 'ALL'.
             """)
     public String updateNativePackage(String packageName) {
-        // TODO: implement
-        // sudo dnf update <pkg> -y / sudo apt upgrade <pkg> -y / etc.
-        // For ALL: sudo dnf upgrade -y / sudo apt upgrade -y / etc.
-        throw new UnsupportedOperationException("Not yet implemented");
+        List<String> targets = targets(packageName);
+        if (targets == null) return "Please pass a package name, or 'ALL' for a full system upgrade.";
+        String label = targets.isEmpty() ? "all native packages" : String.join(", ", targets);
+        try {
+            String output = updateService.updateNative(targets);
+            return "Successfully updated " + label + ".\n" + output.strip();
+        } catch (Exception e) {
+            log.error("updateNativePackage failed for {}", label, e);
+            return "Failed to update " + label + ": " + e.getMessage();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /** 'ALL' → empty list (update everything); blank → null; otherwise the space/comma separated names. */
+    private static List<String> targets(String arg) {
+        if (arg == null || arg.isBlank()) return null;
+        if (arg.trim().equalsIgnoreCase("ALL")) return List.of();
+        return Arrays.stream(arg.trim().split("[\\s,]+"))
+                .filter(s -> !s.isBlank())
+                .distinct()
+                .toList();
+    }
+
+    private String report(Source source, CompletableFuture<UpdateCheck> pending) {
+        String label = source == Source.FLATPAK ? "Flatpak" : "native";
+        UpdateCheck check;
+        try {
+            check = pending.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.warn("{} update check failed: {}", label, cause.getMessage());
+            return "Error checking " + label + " updates: " + cause.getMessage();
+        } catch (Exception e) {
+            return "Error checking " + label + " updates: " + e.getMessage();
+        }
+
+        List<PackageUpdate> updates = check.updates();
+        String freshness = freshness(check.checkedAt());
+        if (updates.isEmpty()) {
+            return source == Source.FLATPAK
+                    ? "All Flatpak apps are up to date (" + freshness + ")."
+                    : "All native packages are up to date (" + freshness + ").";
+        }
+
+        boolean truncated = updates.size() > maxResults;
+        StringBuilder sb = new StringBuilder();
+        sb.append(source == Source.FLATPAK ? "Flatpak" : "Native").append(" updates available — ")
+          .append(updates.size()).append(" (").append(freshness).append("):\n\n");
+        for (PackageUpdate u : truncated ? updates.subList(0, maxResults) : updates) {
+            String row = source == Source.FLATPAK ? u.name() + " (" + u.id() + ")" : u.id();
+            String from = u.currentVersion().isBlank() ? "" : u.currentVersion() + " → ";
+            sb.append("  %-45s  %s%s\n".formatted(row, from, u.newVersion()));
+        }
+        if (truncated) {
+            sb.append("\n(Showing ").append(maxResults).append(" of ").append(updates.size()).append(".)");
+        }
+        return sb.toString().strip();
+    }
+
+    private static String freshness(Instant checkedAt) {
+        long minutes = Duration.between(checkedAt, Instant.now()).toMinutes();
+        if (minutes < 1)   return "checked just now";
+        if (minutes < 120) return "checked " + minutes + " min ago";
+        return "checked " + minutes / 60 + " h ago";
     }
 }
@@ -0,0 +1,74 @@
+package com.linuxpkgmgr.tool;
+
+import com.linuxpkgmgr.metrics.CacheMetricsService;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Size- and age-bounded LRU map keyed by normalized user query. Hits, misses and size
+ * are reported to {@link CacheMetricsService} under the cache's name.
+ * Thread-safe; callers compute missing values outside the lock, so two threads missing
+ * on the same query may both compute it (the last result wins).
+ */
+final class QueryCache<V> {
+
+    private record Entry<V>(V value, long storedAtNanos) {}
+
+    private final String name;
+    private final CacheMetricsService metrics;
+    private final Map<String, Entry<V>> entries;
+    private final long ttlNanos;
+
+    QueryCache(String name, int maxSize, Duration ttl, CacheMetricsService metrics) {
+        this.name = name;
+        this.metrics = metrics;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /** Lower-cases, trims trailing punctuation and collapses whitespace, so "Check for updates?" ≡ "check for  updates". */
+    static String normalize(String query) {
+        return query.toLowerCase(Locale.ROOT)
+                .replaceAll("[?!.,;:]+\\s*$", "")
+                .replaceAll("\\s+", " ")
+                .strip();
+    }
+
+    /** Cached value for {@code key} (already normalized), or null on a miss or expired entry. */
+    V get(String key) {
+        synchronized (entries) {
+            Entry<V> e = entries.get(key);
+            if (e != null && System.nanoTime() - e.storedAtNanos() <= ttlNanos) {
+                metrics.recordHit(name);
+                return e.value();
+            }
+            if (e != null) {
+                entries.remove(key);
+                metrics.recordSize(name, entries.size());
+            }
+        }
+        metrics.recordMiss(name);
+        return null;
+    }
+
+    void put(String key, V value) {
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, System.nanoTime()));
+            metrics.recordSize(name, entries.size());
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
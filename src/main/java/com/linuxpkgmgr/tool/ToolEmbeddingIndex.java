@@ -1,49 +1,138 @@
 package com.linuxpkgmgr.tool;
 
+import com.linuxpkgmgr.metrics.CacheMetricsService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.EmbeddingModel;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.SimpleVectorStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Embeds every @PkgTool description at startup into an in-memory vector store.
+ * Embeds every @PkgTool description at startup into an in-memory {@link ToolVectorIndex}.
  * At request time, similarity-searches the user query to return only the
  * most relevant tool beans — reducing token usage and model confusion.
+ *
+ * Description embeddings are cached in {@code pkg-mgr.catalog.dir}, keyed by a hash of
+ * (embedding model, description). A normal startup loads them from disk without calling
+ * the model; new or changed descriptions are embedded together in one batched call.
+ *
+ * Query embeddings and the tools selected for them are kept in {@link QueryCache}s keyed
+ * by the normalized query, so a repeated phrasing skips the embedding round trip. Their
+ * hit/miss counters are published through {@link CacheMetricsService}.
+ *
+ * A BM25 {@link ToolLexicalIndex} over names and descriptions runs alongside, and the two
+ * rankings are merged by reciprocal-rank fusion. If the query embedding misses
+ * {@code pkg-mgr.tools.embedding-budget-ms} or fails, the lexical ranking answers alone.
+ * A failure, or {@code embedding-timeouts-before-backoff} misses in a row, skips the embedder
+ * for {@code embedding-backoff-seconds}, so selection stays in the millisecond range while
+ * Ollama is slow or down. A single miss does not: the first query usually waits for Ollama
+ * to load the model. If the descriptions could not be embedded at startup, they are embedded
+ * in the background by the first query after the backoff.
  */
 @Slf4j
 @Component
 public class ToolEmbeddingIndex {
 
-    private final SimpleVectorStore store;
+    private static final String CACHE_FILE = "tool-embeddings.bin";
+    private static final int FORMAT_VERSION = 1;
+    private static final int RRF_K = 60;  // the usual reciprocal-rank-fusion constant
+    private static final String EMBEDDING_CACHE = "tool-query-embeddings";
+    private static final String SELECTION_CACHE = "tool-selections";
+
+    private final EmbeddingModel embeddingModel;
+    private final List<String> toolNames;  // row i of vectors belongs to toolNames.get(i)
+    private final Map<String, String> descriptionByTool;
+    private final String modelName;
+    private final Path cacheFile;
+    private volatile ToolVectorIndex vectors;  // empty until the descriptions could be embedded
+    private final ToolLexicalIndex lexical;
     private final Map<String, ToolBean> beanByToolName;
     private final List<ToolBean> anchorBeans;
+    private final QueryCache<float[]> queryEmbeddings;
+    private final QueryCache<Object[]> selections;
+    private final CacheMetricsService cacheMetrics;
+    private final ExecutorService embedExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicBoolean reindexing = new AtomicBoolean();
+    private final AtomicInteger consecutiveTimeouts = new AtomicInteger();
 
     @Value("${pkg-mgr.tools.top-k:6}")
-    private int topK;
+    private int topK = 6;
 
     @Value("${pkg-mgr.tools.similarity-threshold:0.4}")
-    private double similarityThreshold;
+    private double similarityThreshold = 0.4;
+
+    @Value("${pkg-mgr.tools.embedding-budget-ms:1500}")
+    private long embeddingBudgetMs = 1500;
+
+    private final long embeddingBackoffSeconds;
+
+    @Value("${pkg-mgr.tools.embedding-timeouts-before-backoff:2}")
+    private int timeoutsBeforeBackoff = 2;
+
+    /** Until this instant queries are answered lexically without asking the embedder. */
+    private volatile Instant embedderBackoffUntil = Instant.MIN;
 
-    public ToolEmbeddingIndex(EmbeddingModel embeddingModel, List<ToolBean> toolBeans) {
-        this.store = SimpleVectorStore.builder(embeddingModel).build();
+    public ToolEmbeddingIndex(EmbeddingModel embeddingModel, List<ToolBean> toolBeans,
+                              @Value("${spring.ai.ollama.embedding.model:nomic-embed-text}") String modelName,
+                              @Value("${pkg-mgr.catalog.dir:${user.home}/.cache/linux-pkg-mgr}") Path cacheDir,
+                              @Value("${pkg-mgr.tools.query-cache.size:256}") int queryCacheSize,
+                              @Value("${pkg-mgr.tools.query-cache.ttl-minutes:60}") long queryCacheTtlMinutes,
+                              @Value("${pkg-mgr.tools.embedding-backoff-seconds:30}") long embeddingBackoffSeconds,
+                              CacheMetricsService cacheMetrics) {
+        this.embeddingModel = embeddingModel;
+        this.cacheMetrics = cacheMetrics;
+        this.embeddingBackoffSeconds = embeddingBackoffSeconds;
         this.beanByToolName = new HashMap<>();
         this.anchorBeans = new ArrayList<>();
-        toolBeans.forEach(this::index);
+        Duration queryCacheTtl = Duration.ofMinutes(queryCacheTtlMinutes);
+        this.queryEmbeddings = new QueryCache<>(EMBEDDING_CACHE, queryCacheSize, queryCacheTtl, cacheMetrics);
+        this.selections = new QueryCache<>(SELECTION_CACHE, queryCacheSize, queryCacheTtl, cacheMetrics);
+
+        Map<String, String> descriptionByTool = new LinkedHashMap<>();
+        toolBeans.forEach(bean -> collect(bean, descriptionByTool));
+        this.descriptionByTool = Collections.unmodifiableMap(descriptionByTool);
+        this.modelName = modelName;
+        this.cacheFile = cacheDir.resolve(CACHE_FILE);
+        this.toolNames = List.copyOf(descriptionByTool.keySet());
+        this.lexical = new ToolLexicalIndex(toolNames, List.copyOf(descriptionByTool.values()));
+        this.vectors = new ToolVectorIndex(embed(descriptionByTool, modelName, cacheFile));
+        if (vectors.size() == 0 && !toolNames.isEmpty()) {
+            log.warn("ToolEmbeddingIndex — no tool embeddings, selecting tools lexically until the embedder is back");
+            backOff();
+        }
+
         log.info("ToolEmbeddingIndex — indexed {} tool method(s) across {} bean(s)",
                 beanByToolName.size(), toolBeans.size());
     }
 
-    private void index(ToolBean bean) {
+    private void collect(ToolBean bean, Map<String, String> descriptionByTool) {
         for (Method method : bean.getClass().getDeclaredMethods()) {
             PkgTool ann = method.getAnnotation(PkgTool.class);
             if (ann == null) continue;
-            store.add(List.of(new Document(ann.description(), Map.of("tool_name", ann.name()))));
+            descriptionByTool.put(ann.name(), ann.description());
             beanByToolName.put(ann.name(), bean);
             if (ann.anchor()) anchorBeans.add(bean);
             log.debug("Indexed tool: {} (anchor={})", ann.name(), ann.anchor());
@@ -51,22 +140,210 @@ public class ToolEmbeddingIndex {
     }
 
     public Object[] findRelevant(String query) {
-        List<Document> hits = store.similaritySearch(
-                SearchRequest.builder()
-                        .query(query)
-                        .topK(topK)
-                        .similarityThreshold(similarityThreshold)
-                        .build());
+        String key = QueryCache.normalize(query);
+        Object[] cached = selections.get(key);
+        if (cached != null) {
+            log.debug("findRelevant('{}') — cached selection of {} tool bean(s); {}", query, cached.length, cacheMetrics.getCacheStats(SELECTION_CACHE));
+            return cached.clone();
+        }
 
-        log.debug("findRelevant('{}') — {} hit(s) above threshold {}", query, hits.size(), similarityThreshold);
+        int[] lexicalRows = lexical.search(key, topK);
+        float[] q = queryEmbedding(key, query);
+        int[] rows;
+        if (q != null) {
+            ToolVectorIndex.Hits hits = vectors.search(q, topK, similarityThreshold);
+            log.debug("findRelevant('{}') — {} semantic hit(s) above threshold {}, {} lexical",
+                    query, hits.size(), similarityThreshold, lexicalRows.length);
+            rows = fuse(hits.rows(), lexicalRows);
+        } else {
+            log.debug("findRelevant('{}') — lexical only, {} hit(s)", query, lexicalRows.length);
+            rows = lexicalRows;
+        }
 
         Set<ToolBean> result = new LinkedHashSet<>(anchorBeans);
-        hits.stream()
-                .map(d -> beanByToolName.get((String) d.getMetadata().get("tool_name")))
-                .filter(Objects::nonNull)
-                .forEach(result::add);
+        for (int row : rows) {
+            ToolBean bean = beanByToolName.get(toolNames.get(row));
+            if (bean != null) result.add(bean);
+        }
+
+        log.debug("findRelevant — returning {} unique tool bean(s); embeddings: {}", result.size(), cacheMetrics.getCacheStats(EMBEDDING_CACHE));
+        Object[] tools = result.toArray();
+        // A lexical-only answer is a stopgap — let the next identical query try the embedder again
+        if (q != null) selections.put(key, tools);
+        return tools.clone();
+    }
+
+    /**
+     * The query's embedding from the cache or the embedder, or null if the embedder is in
+     * backoff, failed, or missed the latency budget. A late embedding is still cached.
+     */
+    private float[] queryEmbedding(String key, String query) {
+        if (vectors.size() == 0) {
+            reindexInBackground();
+            return null;
+        }
+        float[] cached = queryEmbeddings.get(key);
+        if (cached != null) return cached;
+        if (Instant.now().isBefore(embedderBackoffUntil)) return null;
+
+        CompletableFuture<float[]> future = CompletableFuture.supplyAsync(
+                () -> embeddingModel.embed(query), embedExecutor);
+        future.thenAccept(embedding -> queryEmbeddings.put(key, embedding));
+        try {
+            float[] embedding = future.get(embeddingBudgetMs, TimeUnit.MILLISECONDS);
+            consecutiveTimeouts.set(0);
+            return embedding;
+        } catch (TimeoutException e) {
+            int misses = consecutiveTimeouts.incrementAndGet();
+            if (misses < timeoutsBeforeBackoff) {
+                log.info("Query embedding exceeded {} ms ({} in a row) — lexical tool selection for this query",
+                        embeddingBudgetMs, misses);
+                return null;
+            }
+            log.warn("Query embedding exceeded {} ms {} times in a row — using lexical tool selection for {} s",
+                    embeddingBudgetMs, misses, embeddingBackoffSeconds);
+        } catch (ExecutionException e) {
+            log.warn("Query embedding failed ({}) — using lexical tool selection for {} s",
+                    e.getCause().getMessage(), embeddingBackoffSeconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        backOff();
+        return null;
+    }
+
+    private void backOff() {
+        consecutiveTimeouts.set(0);
+        embedderBackoffUntil = Instant.now().plusSeconds(embeddingBackoffSeconds);
+    }
 
-        log.debug("findRelevant — returning {} unique tool bean(s)", result.size());
-        return result.toArray();
+    /**
+     * Retries embedding the tool descriptions once the backoff has expired, without making
+     * the current query wait. At most one attempt runs at a time; a failure backs off again.
+     */
+    private void reindexInBackground() {
+        if (toolNames.isEmpty() || Instant.now().isBefore(embedderBackoffUntil)) return;
+        if (!reindexing.compareAndSet(false, true)) return;
+        embedExecutor.execute(() -> {
+            try {
+                List<float[]> embedded = embed(descriptionByTool, modelName, cacheFile);
+                if (embedded.isEmpty()) {
+                    backOff();
+                    return;
+                }
+                vectors = new ToolVectorIndex(embedded);
+                log.info("ToolEmbeddingIndex — tool descriptions embedded, semantic selection enabled");
+            } finally {
+                reindexing.set(false);
+            }
+        });
+    }
+
+    /** Reciprocal-rank fusion of two rankings of rows; returns at most topK rows, best first. */
+    private int[] fuse(int[] semantic, int[] lexicalRows) {
+        double[] scores = new double[toolNames.size()];
+        for (int rank = 0; rank < semantic.length; rank++) scores[semantic[rank]] += 1.0 / (RRF_K + rank + 1);
+        for (int rank = 0; rank < lexicalRows.length; rank++) scores[lexicalRows[rank]] += 1.0 / (RRF_K + rank + 1);
+        List<Integer> ranked = new ArrayList<>();
+        for (int row = 0; row < scores.length; row++) {
+            if (scores[row] > 0) ranked.add(row);
+        }
+        ranked.sort((a, b) -> Double.compare(scores[b], scores[a]));
+        return ranked.stream().limit(topK).mapToInt(Integer::intValue).toArray();
+    }
+
+    // -------------------------------------------------------------------------
+    // Embedding cache — DataOutputStream of (key, vector) pairs
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns an embedding per tool in iteration order, taken from the cache where the key still matches and
+     * computed in a single batched call otherwise. The cache is rewritten only if it changed.
+     * Returns an empty list if the embedder is unreachable, leaving selection to BM25.
+     */
+    private List<float[]> embed(Map<String, String> descriptionByTool, String modelName, Path file) {
+        Map<String, float[]> cached = load(file);
+        Map<String, String> keyByTool = new LinkedHashMap<>();
+        descriptionByTool.forEach((tool, description) -> keyByTool.put(tool, cacheKey(modelName, description)));
+
+        List<String> missing = keyByTool.entrySet().stream()
+                .filter(e -> !cached.containsKey(e.getValue()))
+                .map(Map.Entry::getKey)
+                .toList();
+
+        Map<String, float[]> byKey = new HashMap<>(cached);
+        if (!missing.isEmpty()) {
+            List<float[]> embedded;
+            try {
+                embedded = embeddingModel.embed(missing.stream().map(descriptionByTool::get).toList());
+            } catch (RuntimeException e) {
+                log.warn("Could not embed {} tool description(s), retrying in {} s: {}",
+                        missing.size(), embeddingBackoffSeconds, e.getMessage());
+                return List.of();
+            }
+            for (int i = 0; i < missing.size(); i++) {
+                byKey.put(keyByTool.get(missing.get(i)), embedded.get(i));
+            }
+            log.info("ToolEmbeddingIndex — embedded {} new or changed description(s), {} from cache",
+                    missing.size(), keyByTool.size() - missing.size());
+        }
+
+        // Keep only the current descriptions so stale entries do not accumulate
+        Map<String, float[]> current = new LinkedHashMap<>();
+        keyByTool.values().forEach(key -> current.put(key, byKey.get(key)));
+        if (!missing.isEmpty() || current.size() != cached.size()) save(file, current);
+
+        return keyByTool.values().stream().map(current::get).toList();
+    }
+
+    private static String cacheKey(String modelName, String description) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(modelName.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            sha.update(description.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);  // SHA-256 is mandatory on every JVM
+        }
+    }
+
+    private static Map<String, float[]> load(Path file) {
+        Map<String, float[]> entries = new HashMap<>();
+        if (!Files.isRegularFile(file)) return entries;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) return entries;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                float[] vector = new float[in.readInt()];
+                for (int j = 0; j < vector.length; j++) vector[j] = in.readFloat();
+                entries.put(key, vector);
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable tool embedding cache {}: {}", file, e.getMessage());
+            entries.clear();
+        }
+        return entries;
+    }
+
+    private static void save(Path file, Map<String, float[]> entries) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "tool-embeddings", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, float[]> e : entries.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeInt(e.getValue().length);
+                    for (float f : e.getValue()) out.writeFloat(f);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not persist tool embedding cache to {}: {}", file, e.getMessage());
+        }
     }
 }
@@ -0,0 +1,105 @@
+package com.linuxpkgmgr.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * In-process BM25 index over tool names and descriptions. Rows line up with
+ * {@link ToolVectorIndex}, so both rankings can be fused by row number.
+ *
+ * Tool names are split on underscores and counted twice, since "flatpak" in
+ * {@code install_flatpak} says more than a passing mention in a description.
+ * Immutable after construction.
+ */
+final class ToolLexicalIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "any", "are", "as", "at", "be", "by", "can", "do", "does", "for", "from",
+            "how", "i", "if", "in", "is", "it", "me", "my", "of", "on", "or", "please", "should", "so",
+            "that", "the", "this", "to", "use", "uses", "want", "was", "what", "when", "which", "with",
+            "you", "your");
+
+    /** Postings of one term: rows containing it and the term frequency in each. */
+    private record Postings(int[] rows, int[] frequencies) {}
+
+    private final Map<String, Postings> postings;
+    private final int[] lengths;
+    private final double averageLength;
+
+    ToolLexicalIndex(List<String> names, List<String> descriptions) {
+        int rows = names.size();
+        this.lengths = new int[rows];
+        Map<String, List<int[]>> building = new HashMap<>();  // term → [row, tf] pairs
+        long total = 0;
+        for (int r = 0; r < rows; r++) {
+            List<String> terms = new ArrayList<>(tokenize(names.get(r)));
+            terms.addAll(tokenize(names.get(r)));
+            terms.addAll(tokenize(descriptions.get(r)));
+            lengths[r] = terms.size();
+            total += terms.size();
+
+            Map<String, Integer> tf = new HashMap<>();
+            terms.forEach(t -> tf.merge(t, 1, Integer::sum));
+            int row = r;
+            tf.forEach((term, count) -> building.computeIfAbsent(term, k -> new ArrayList<>()).add(new int[]{row, count}));
+        }
+        this.averageLength = rows == 0 ? 0 : (double) total / rows;
+
+        this.postings = new HashMap<>(building.size() * 2);
+        building.forEach((term, list) -> postings.put(term, new Postings(
+                list.stream().mapToInt(p -> p[0]).toArray(),
+                list.stream().mapToInt(p -> p[1]).toArray())));
+    }
+
+    /** Up to {@code k} rows matching at least one query term, best BM25 score first. */
+    int[] search(String query, int k) {
+        double[] scores = new double[lengths.length];
+        int n = lengths.length;
+        for (String term : Set.copyOf(tokenize(query))) {
+            Postings p = postings.get(term);
+            if (p == null) continue;
+            int df = p.rows().length;
+            double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+            for (int i = 0; i < df; i++) {
+                int row = p.rows()[i];
+                int tf = p.frequencies()[i];
+                double norm = tf + K1 * (1 - B + B * lengths[row] / averageLength);
+                scores[row] += idf * tf * (K1 + 1) / norm;
+            }
+        }
+        return Arrays.stream(rowsByScore(scores))
+                .filter(r -> scores[r] > 0)
+                .limit(k)
+                .toArray();
+    }
+
+    private static int[] rowsByScore(double[] scores) {
+        return IntStream.range(0, scores.length)
+                .boxed()
+                .sorted((a, b) -> Double.compare(scores[b], scores[a]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /** Lower-cased alphanumeric words minus stop words, with a plural "s" stripped. */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^a-z0-9+]+")) {
+            if (word.length() < 2 || STOP_WORDS.contains(word)) continue;
+            if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) {
+                word = word.substring(0, word.length() - 1);
+            }
+            terms.add(word);
+        }
+        return terms;
+    }
+}
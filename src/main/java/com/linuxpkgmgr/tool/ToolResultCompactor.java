@@ -0,0 +1,380 @@
+package com.linuxpkgmgr.tool;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.ai.util.json.JsonParser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Compacts tool results before they reach the LLM. Every result is re-sent on each later
+ * turn through chat memory, so a 3 000-line dependency tree costs tokens — and latency on
+ * the local model — long after the question was answered.
+ *
+ * Each tool has a reducer chain (normalise whitespace, dedupe lines, project key/value
+ * fields, ...) and the result is then held to a token budget: the tool's own, or
+ * {@code pkg-mgr.tools.result-budget-tokens}. When anything was dropped, the full result is
+ * kept in a small LRU store and the compact form ends with a handle the model can pass to
+ * {@code get_full_result} to page through the original. Stored results belong to the
+ * conversation whose tool call produced them; other conversations cannot page them.
+ *
+ * Tokens are estimated at four characters each — close enough for budgeting.
+ */
+@Slf4j
+@Component
+public class ToolResultCompactor {
+
+    static final String FULL_RESULT_TOOL = "get_full_result";
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    /** Budget for results of mutating tools — the agent needs the outcome, not the transcript. */
+    private static final int ACTION_BUDGET_TOKENS = 400;
+
+    /** Key/value fields worth keeping from dnf/apt/pacman/zypper/flatpak info output. */
+    private static final Set<String> INFO_FIELDS = Set.of(
+            "name", "package", "id", "ref", "version", "release", "epoch", "architecture", "arch", "branch",
+            "size", "installed size", "installed-size", "download-size", "repository", "repo", "from repo",
+            "origin", "summary", "description", "url", "license", "licence", "runtime", "installed",
+            "install date", "depends", "status", "source");
+
+    private record Reducer(UnaryOperator<String> chain, int budgetTokens) {}
+
+    private record StoredResult(String conversationId, String text) {}
+
+    private final Map<String, Reducer> reducers = new LinkedHashMap<>();
+    private final Map<String, StoredResult> fullResults;
+    private final AtomicLong nextHandle = new AtomicLong(1);
+
+    @Value("${pkg-mgr.tools.result-budget-tokens:1200}")
+    private int budgetTokens = 1200;
+
+    public ToolResultCompactor(@Value("${pkg-mgr.tools.result-store-size:32}") int storeSize) {
+        // Access-ordered LRU: a handle the model keeps paging through stays alive
+        this.fullResults = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResult> eldest) {
+                return size() > storeSize;
+            }
+        };
+
+        UnaryOperator<String> dedupeAll = text -> dedupe(normalize(text), true);
+        UnaryOperator<String> dedupeRuns = text -> dedupe(normalize(text), false);
+
+        reducers.put("show_dependency_tree",      new Reducer(ToolResultCompactor::pruneRepeatedSubtrees, 0));
+        reducers.put("show_package_dependencies", new Reducer(dedupeAll, 0));
+        reducers.put("show_reverse_dependencies", new Reducer(dedupeAll, 0));
+        reducers.put("get_package_info",          new Reducer(text -> projectFields(normalize(text)), 0));
+        for (String action : List.of("install_flatpak", "remove_flatpak", "install_flatpaks", "remove_flatpaks",
+                "install_native_package", "remove_native_package", "install_native_packages",
+                "remove_native_packages", "update_flatpak", "update_native_package")) {
+            reducers.put(action, new Reducer(dedupeRuns, ACTION_BUDGET_TOKENS));
+        }
+        reducers.put(FULL_RESULT_TOOL, new Reducer(UnaryOperator.identity(), Integer.MAX_VALUE));
+    }
+
+    /**
+     * Turns tool beans into callbacks whose results pass through {@link #compact} on behalf
+     * of {@code conversationId}. Each finished call is also reported to {@code onCall} as
+     * (tool name, uncompacted result); a call that throws is reported as "Error: message".
+     */
+    public ToolCallback[] wrap(String conversationId, BiConsumer<String, String> onCall, Object... toolBeans) {
+        return Arrays.stream(ToolCallbacks.from(toolBeans))
+                .map(callback -> new CompactingToolCallback(callback, conversationId, onCall))
+                .toArray(ToolCallback[]::new);
+    }
+
+    /** True once a result of {@code conversationId} is stored, i.e. get_full_result has something to return. */
+    public synchronized boolean hasStoredResults(String conversationId) {
+        return fullResults.values().stream().anyMatch(r -> r.conversationId().equals(conversationId));
+    }
+
+    /** Applies {@code toolName}'s reducers and the token budget; see the class comment. */
+    public String compact(String conversationId, String toolName, String result) {
+        if (result == null || result.isEmpty()) return result;
+        Reducer reducer = reducers.getOrDefault(toolName, new Reducer(text -> dedupe(normalize(text), false), 0));
+        if (reducer.budgetTokens() == Integer.MAX_VALUE) return result;
+        int budget = reducer.budgetTokens() > 0 ? Math.min(reducer.budgetTokens(), budgetTokens) : budgetTokens;
+
+        String reduced = truncate(reducer.chain().apply(result), budget);
+        String normalized = normalize(result);
+        if (reduced.equals(normalized)) return normalized;   // only whitespace went — nothing worth a handle
+        if (tokens(reduced) >= tokens(result)) return result;
+
+        String handle = store(conversationId, result);
+        log.debug("Compacted {} result: ~{} → ~{} tokens (handle {})",
+                toolName, tokens(result), tokens(reduced), handle);
+        return reduced + "\n[Compacted from ~" + tokens(result) + " to ~" + tokens(reduced)
+                + " tokens. Full output: " + FULL_RESULT_TOOL + "(handle=\"" + handle + "\")]";
+    }
+
+    /**
+     * Returns lines of a stored full result starting at {@code startLine} (1-based), as
+     * many as fit the token budget, or null if the handle is unknown, has been evicted or
+     * belongs to another conversation.
+     */
+    public String page(String conversationId, String handle, int startLine) {
+        StoredResult stored;
+        synchronized (this) {
+            stored = fullResults.get(handle);
+        }
+        if (stored == null || !stored.conversationId().equals(conversationId)) return null;
+        String full = stored.text();
+
+        List<String> lines = full.lines().toList();
+        int from = Math.max(1, startLine);
+        if (from > lines.size()) return "[" + handle + " has only " + lines.size() + " line(s).]";
+
+        int budgetChars = budgetTokens * CHARS_PER_TOKEN;
+        StringBuilder sb = new StringBuilder();
+        int to = from - 1;
+        while (to < lines.size() && (sb.isEmpty() || sb.length() + lines.get(to).length() < budgetChars)) {
+            sb.append(lines.get(to++)).append('\n');
+        }
+        sb.append("[").append(handle).append(" — lines ").append(from).append('–').append(to)
+          .append(" of ").append(lines.size());
+        if (to < lines.size()) {
+            sb.append("; call ").append(FULL_RESULT_TOOL).append(" with startLine=").append(to + 1).append(" for more");
+        }
+        return sb.append("]").toString();
+    }
+
+    private synchronized String store(String conversationId, String full) {
+        String handle = "r" + nextHandle.getAndIncrement();
+        fullResults.put(handle, new StoredResult(conversationId, full));
+        return handle;
+    }
+
+    // -------------------------------------------------------------------------
+    // Reducers
+    // -------------------------------------------------------------------------
+
+    /** Strips trailing whitespace and collapses runs of blank lines into one. */
+    static String normalize(String text) {
+        StringBuilder sb = new StringBuilder();
+        boolean blank = false;
+        for (String line : text.strip().split("\n")) {
+            String l = line.stripTrailing();
+            if (l.isEmpty()) {
+                if (!blank) sb.append('\n');
+                blank = true;
+                continue;
+            }
+            blank = false;
+            sb.append(l).append('\n');
+        }
+        return sb.toString().strip();
+    }
+
+    /**
+     * Collapses consecutive identical lines into one with a "(×N)" count, or with
+     * {@code global} drops every repeat of a line seen before and reports how many went.
+     */
+    static String dedupe(String text, boolean global) {
+        List<String> out = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        int dropped = 0;
+        String previous = null;
+        int run = 0;
+        for (String line : text.split("\n")) {
+            if (global) {
+                if (!line.isBlank() && !seen.add(line.strip())) dropped++;
+                else out.add(line);
+                continue;
+            }
+            if (line.equals(previous)) {
+                run++;
+                continue;
+            }
+            if (run > 0) out.set(out.size() - 1, previous + " (×" + (run + 1) + ")");
+            out.add(line);
+            previous = line;
+            run = 0;
+        }
+        if (run > 0) out.set(out.size() - 1, previous + " (×" + (run + 1) + ")");
+        String result = String.join("\n", out);
+        return dropped > 0 ? result + "\n(" + dropped + " duplicate line(s) removed)" : result;
+    }
+
+    /**
+     * Dependency trees repeat whole subtrees for every package that shares a dependency.
+     * Keeps the first occurrence of each node and prunes its children on later occurrences.
+     */
+    static String pruneRepeatedSubtrees(String text) {
+        List<String> out = new ArrayList<>();
+        Set<String> expanded = new HashSet<>();
+        int pruned = 0;
+        int skipDeeperThan = -1;
+        for (String line : normalize(text).split("\n")) {
+            int depth = indentOf(line);
+            if (skipDeeperThan >= 0) {
+                if (depth > skipDeeperThan) {
+                    pruned++;
+                    continue;
+                }
+                skipDeeperThan = -1;
+            }
+            String node = line.strip().replaceFirst("^[|`\\\\+\\-─│├└ ]+", "");
+            if (!node.isEmpty() && !expanded.add(node)) {
+                out.add(line + " (see above)");
+                skipDeeperThan = depth;
+                continue;
+            }
+            out.add(line);
+        }
+        String result = String.join("\n", out);
+        return pruned > 0 ? result + "\n(" + pruned + " line(s) of repeated subtrees pruned)" : result;
+    }
+
+    /**
+     * Keeps only the informative fields of "Key : value" blocks (plus up to three
+     * continuation lines of a kept field, e.g. a wrapped Description). Lines that are not
+     * key/value pairs, such as the "[native] foo" headers, are kept as they are.
+     */
+    static String projectFields(String text) {
+        List<String> out = new ArrayList<>();
+        boolean keeping = true;
+        int continuation = 0;
+        for (String line : text.split("\n")) {
+            int colon = line.indexOf(':');
+            boolean indented = !line.isEmpty() && Character.isWhitespace(line.charAt(0));
+            String key = colon > 0 ? line.substring(0, colon).strip().toLowerCase(Locale.ROOT) : null;
+            boolean keyLine = key != null && !indented && !key.isEmpty() && key.length() <= 24;
+
+            if (keyLine) {
+                keeping = INFO_FIELDS.contains(key);
+                continuation = 0;
+                if (keeping) out.add(line);
+            } else if (indented) {
+                if (keeping && continuation++ < 3) out.add(line);
+            } else {
+                keeping = true;
+                out.add(line);
+            }
+        }
+        return out.stream().collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Holds {@code text} to {@code budgetTokens}: keeps whole lines from the head (two
+     * thirds of the budget) and the tail (one third — errors and summaries live there)
+     * and says how much was left out in between.
+     */
+    static String truncate(String text, int budgetTokens) {
+        if (tokens(text) <= budgetTokens) return text;
+        String[] lines = text.split("\n");
+        int headChars = budgetTokens * CHARS_PER_TOKEN * 2 / 3;
+        int tailChars = budgetTokens * CHARS_PER_TOKEN / 3;
+
+        int head = 0;
+        for (int used = 0; head < lines.length && used + lines[head].length() < headChars; head++) {
+            used += lines[head].length() + 1;
+        }
+        int tail = lines.length;
+        for (int used = 0; tail > head && used + lines[tail - 1].length() < tailChars; tail--) {
+            used += lines[tail - 1].length() + 1;
+        }
+        if (head == 0 && tail == lines.length) {
+            // A single enormous line — cut it by characters instead
+            return text.substring(0, headChars) + " … (" + (text.length() - headChars) + " characters omitted)";
+        }
+
+        int omittedChars = Arrays.stream(lines, head, tail).mapToInt(l -> l.length() + 1).sum();
+        List<String> out = new ArrayList<>(Arrays.asList(lines).subList(0, head));
+        out.add("… " + (tail - head) + " line(s), ~" + omittedChars / CHARS_PER_TOKEN + " tokens omitted …");
+        out.addAll(Arrays.asList(lines).subList(tail, lines.length));
+        return String.join("\n", out);
+    }
+
+    private static int indentOf(String line) {
+        int i = 0;
+        while (i < line.length() && " |`\\+-─│├└".indexOf(line.charAt(i)) >= 0) i++;
+        return i;
+    }
+
+    private static int tokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    // -------------------------------------------------------------------------
+    // Callback decorator
+    // -------------------------------------------------------------------------
+
+    /** Delegates to the Spring AI method callback and compacts whatever it returns. */
+    private final class CompactingToolCallback implements ToolCallback {
+
+        private final ToolCallback delegate;
+        private final String conversationId;
+        private final BiConsumer<String, String> onCall;
+
+        CompactingToolCallback(ToolCallback delegate, String conversationId, BiConsumer<String, String> onCall) {
+            this.delegate = delegate;
+            this.conversationId = conversationId;
+            this.onCall = onCall;
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return delegate.getToolDefinition();
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return delegate.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return compactConverted(reported(() -> delegate.call(toolInput)));
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            return compactConverted(reported(() -> delegate.call(toolInput, toolContext)));
+        }
+
+        private String reported(Supplier<String> call) {
+            String name = getToolDefinition().name();
+            String result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                onCall.accept(name, "Error: " + e.getMessage());
+                throw e;
+            }
+            onCall.accept(name, result);
+            return result;
+        }
+
+        /** Method callbacks return a String result JSON-encoded; compact the text inside. */
+        private String compactConverted(String converted) {
+            String name = getToolDefinition().name();
+            if (converted == null || !converted.startsWith("\"")) return compact(conversationId, name, converted);
+            String text;
+            try {
+                text = JsonParser.fromJson(converted, String.class);
+            } catch (RuntimeException e) {
+                return compact(conversationId, name, converted);
+            }
+            return JsonParser.toJson(compact(conversationId, name, text));
+        }
+    }
+}
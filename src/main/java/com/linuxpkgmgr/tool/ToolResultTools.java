@@ -0,0 +1,35 @@
+package com.linuxpkgmgr.tool;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gives the agent access to tool results that {@link ToolResultCompactor} shortened.
+ * Deliberately not a {@link ToolBean}: it is never picked by similarity search, but added
+ * by RoutingChatClient only once the conversation has a compacted result. Created per
+ * request and bound to that conversation, so it only pages the conversation's own results.
+ */
+@Slf4j
+public class ToolResultTools {
+
+    private final ToolResultCompactor compactor;
+    private final String conversationId;
+
+    public ToolResultTools(ToolResultCompactor compactor, String conversationId) {
+        this.compactor = compactor;
+        this.conversationId = conversationId;
+    }
+
+    @PkgTool(name = ToolResultCompactor.FULL_RESULT_TOOL, description = """
+            Returns the full, uncompacted output of an earlier tool call that was shortened.
+            Only call this when a compacted result does not contain what the user asked for.
+            handle: the handle from the "[Compacted ... Full output: get_full_result(handle=...)]" note.
+            startLine: first line to return (1 for the beginning); long outputs are returned in pages.
+            """)
+    public String getFullResult(String handle, int startLine) {
+        log.debug("getFullResult called — handle: '{}', startLine: {}", handle, startLine);
+        String page = compactor.page(conversationId, handle == null ? "" : handle.strip(), startLine);
+        return page != null
+                ? page
+                : "No stored result for handle \"" + handle + "\" — it may have expired. Re-run the original tool.";
+    }
+}
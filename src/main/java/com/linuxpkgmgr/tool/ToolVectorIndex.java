@@ -0,0 +1,96 @@
+package com.linuxpkgmgr.tool;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed set of unit-length vectors stored row-major in one contiguous {@code float[]}.
+ * Cosine similarity against a normalized query is then a plain dot product, and top-k
+ * selection works on primitive arrays — no {@code Document}s, no boxing.
+ *
+ * Immutable after construction, so concurrent searches need no locking.
+ */
+final class ToolVectorIndex {
+
+    /** Rows of the index scoring at least the threshold, best first. */
+    record Hits(int[] rows, float[] scores) {
+        int size() {
+            return rows.length;
+        }
+    }
+
+    private final float[] data;
+    private final int dimensions;
+    private final int rows;
+
+    /** Copies and L2-normalizes {@code vectors}; all must have the same length. */
+    ToolVectorIndex(List<float[]> vectors) {
+        this.rows = vectors.size();
+        this.dimensions = vectors.isEmpty() ? 0 : vectors.get(0).length;
+        this.data = new float[rows * dimensions];
+        for (int r = 0; r < rows; r++) {
+            float[] v = vectors.get(r);
+            if (v.length != dimensions) {
+                throw new IllegalArgumentException("Embedding " + r + " has " + v.length
+                        + " dimensions, expected " + dimensions);
+            }
+            float norm = norm(v);
+            float scale = norm == 0 ? 0 : 1 / norm;
+            int base = r * dimensions;
+            for (int i = 0; i < dimensions; i++) data[base + i] = v[i] * scale;
+        }
+    }
+
+    int size() {
+        return rows;
+    }
+
+    /**
+     * The {@code k} rows most similar to {@code query} whose cosine similarity is at least
+     * {@code threshold}. A query of the wrong dimension matches nothing.
+     */
+    Hits search(float[] query, int k, double threshold) {
+        if (query.length != dimensions || rows == 0 || k <= 0) return new Hits(new int[0], new float[0]);
+        float norm = norm(query);
+        if (norm == 0) return new Hits(new int[0], new float[0]);
+        float scale = 1 / norm;
+
+        // Insertion into a sorted buffer of size k — k and rows are both a few dozen at most
+        int[] best = new int[Math.min(k, rows)];
+        float[] scores = new float[best.length];
+        int found = 0;
+        for (int r = 0; r < rows; r++) {
+            float score = dot(query, data, r * dimensions, dimensions) * scale;
+            if (score < threshold) continue;
+            if (found == best.length && score <= scores[found - 1]) continue;
+
+            int at = found < best.length ? found++ : found - 1;
+            while (at > 0 && scores[at - 1] < score) {
+                scores[at] = scores[at - 1];
+                best[at] = best[at - 1];
+                at--;
+            }
+            scores[at] = score;
+            best[at] = r;
+        }
+        return new Hits(Arrays.copyOf(best, found), Arrays.copyOf(scores, found));
+    }
+
+    /** Four independent accumulators let the JIT pipeline (and usually vectorize) the loop. */
+    private static float dot(float[] a, float[] b, int offset, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int end = length - 3; i < end; i += 4) {
+            s0 += a[i] * b[offset + i];
+            s1 += a[i + 1] * b[offset + i + 1];
+            s2 += a[i + 2] * b[offset + i + 2];
+            s3 += a[i + 3] * b[offset + i + 3];
+        }
+        for (; i < length; i++) s0 += a[i] * b[offset + i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static float norm(float[] v) {
+        return (float) Math.sqrt(dot(v, v, 0, v.length));
+    }
+}
@@ -3,6 +3,9 @@ package com.linuxpkgmgr.ui;
 import com.linuxpkgmgr.cli.RoutingChatClient;
 import com.linuxpkgmgr.metrics.TokenMetricsService;
 import com.linuxpkgmgr.metrics.TokenUsageBus;
+import com.linuxpkgmgr.model.ProgressEvent;
+import com.linuxpkgmgr.service.CommandExecutor;
+import com.linuxpkgmgr.service.PackageOperationQueue;
 import com.linuxpkgmgr.service.ShellOutputBus;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
@@ -13,6 +16,7 @@ import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
@@ -23,6 +27,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.net.URL;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Component
 public class ChatController {
@@ -30,13 +35,18 @@ public class ChatController {
 	private final RoutingChatClient routingClient;
 	private final ShellOutputBus shellOutputBus;
 	private final TokenUsageBus usageBus;
+	private final CommandExecutor commandExecutor;
+	private final PackageOperationQueue operationQueue;
 	private final String sessionId;
 
 	public ChatController(RoutingChatClient routingClient, ShellOutputBus shellOutputBus, TokenUsageBus usageBus,
+			CommandExecutor commandExecutor, PackageOperationQueue operationQueue,
 			@Value("${app.session-id}") String sessionId) {
 		this.routingClient = routingClient;
 		this.shellOutputBus = shellOutputBus;
 		this.usageBus = usageBus;
+		this.commandExecutor = commandExecutor;
+		this.operationQueue = operationQueue;
 		this.sessionId = sessionId;
 	}
 
@@ -91,7 +101,17 @@ public class ChatController {
 		Button sendButton = new Button("Send");
 		sendButton.getStyleClass().add("send-button");
 
-		HBox inputBar = new HBox(inputField, sendButton);
+		// Drops queued package operations, then kills any subprocess the current turn is
+		// waiting on (hung dnf search, etc.)
+		Button stopButton = new Button("Stop");
+		stopButton.getStyleClass().add("stop-button");
+		stopButton.setDisable(true);
+		stopButton.setOnAction(e -> {
+			operationQueue.cancelAll();
+			commandExecutor.cancelAll();
+		});
+
+		HBox inputBar = new HBox(inputField, sendButton, stopButton);
 		inputBar.getStyleClass().add("input-bar");
 		inputBar.setAlignment(Pos.CENTER);
 
@@ -117,11 +137,34 @@ public class ChatController {
 			toggleLabel.setText(expanded ? "▶  Shell Output" : "▼  Shell Output");
 		});
 
-		VBox bottomPane = new VBox(inputBar, shellHeader, shellOutput);
+		// ── Progress of the running install / update ─────────────────────────
+		Label progressLabel = new Label();
+		progressLabel.getStyleClass().add("progress-label");
+		ProgressBar progressBar = new ProgressBar();
+		progressBar.getStyleClass().add("progress-bar");
+		progressBar.setMaxWidth(Double.MAX_VALUE);
+		HBox.setHgrow(progressBar, Priority.ALWAYS);
+
+		HBox progressPanel = new HBox(progressLabel, progressBar);
+		progressPanel.getStyleClass().add("progress-panel");
+		progressPanel.setAlignment(Pos.CENTER_LEFT);
+		progressPanel.setVisible(false);
+		progressPanel.setManaged(false);
+
+		VBox bottomPane = new VBox(inputBar, progressPanel, shellHeader, shellOutput);
 
 		// ── Shell bus → TextArea ──────────────────────────────────────────────
 		shellOutputBus.addListener(line -> Platform.runLater(() -> shellOutput.appendText(line + "\n")));
 
+		// ── Progress events → progress bar (coalesced: only the latest is rendered) ─
+		AtomicReference<ProgressEvent> pendingProgress = new AtomicReference<>();
+		shellOutputBus.addProgressListener(event -> {
+			if (pendingProgress.getAndSet(event) == null) {
+				Platform.runLater(() -> showProgress(pendingProgress.getAndSet(null), progressPanel, progressLabel,
+						progressBar));
+			}
+		});
+
 		// ── Layout ────────────────────────────────────────────────────────────
 		BorderPane root = new BorderPane();
 		VBox topPane = new VBox(header, tokenPanel);
@@ -140,6 +183,7 @@ public class ChatController {
 			Node thinking = aiBubble("thinking…");
 			chatBox.getChildren().add(thinking);
 			scrollToBottom(scrollPane);
+			stopButton.setDisable(false);
 
 			new Thread(() -> {
 				String response;
@@ -150,6 +194,7 @@ public class ChatController {
 				}
 				final String finalResponse = response;
 				Platform.runLater(() -> {
+					stopButton.setDisable(true);
 					chatBox.getChildren().remove(thinking);
 					chatBox.getChildren().add(aiBubble(finalResponse));
 					scrollToBottom(scrollPane);
@@ -174,6 +219,25 @@ public class ChatController {
 		stage.show();
 	}
 
+	private void showProgress(ProgressEvent event, HBox panel, Label label, ProgressBar bar) {
+		if (event == null)
+			return;
+		boolean visible = !event.isDone();
+		panel.setVisible(visible);
+		panel.setManaged(visible);
+		if (!visible)
+			return;
+
+		StringBuilder text = new StringBuilder(event.operation()).append(" — ")
+				.append(event.phase().name().toLowerCase());
+		if (event.steps() > 0)
+			text.append(' ').append(event.step()).append('/').append(event.steps());
+		if (event.item() != null)
+			text.append(": ").append(event.item());
+		label.setText(text.toString());
+		bar.setProgress(event.percent() >= 0 ? event.percent() / 100.0 : ProgressBar.INDETERMINATE_PROGRESS);
+	}
+
 	private Node userBubble(String text) {
 		Label label = new Label(text);
 		label.getStyleClass().add("bubble-user");
@@ -0,0 +1,125 @@
+package com.linuxpkgmgr.cli;
+
+import com.linuxpkgmgr.metrics.CacheMetricsService;
+import com.linuxpkgmgr.tool.IntentRole;
+import com.linuxpkgmgr.tool.PkgTool;
+import com.linuxpkgmgr.tool.ToolBean;
+import com.linuxpkgmgr.tool.ToolEmbeddingIndex;
+import com.linuxpkgmgr.tool.ToolIntentRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ToolSelectorTest {
+
+    static class LifecycleTools implements ToolBean {
+        @PkgTool(name = "search_packages", role = IntentRole.START)
+        public String search(String query) { return ""; }
+
+        @PkgTool(name = "install_flatpak", role = IntentRole.END)
+        public String install(String appId) { return ""; }
+    }
+
+    /** What the index selects per query; anything else selects nothing. */
+    private static final Map<String, Object[]> SELECTIONS = Map.of(
+            "find a video editor", new Object[]{"search"},
+            "how big are they on disk", new Object[]{"disk"},
+            "install the first one", new Object[]{"search", "install"},
+            "show my updates", new Object[]{"updates"});
+
+    @TempDir
+    Path tmp;
+
+    private final List<String> indexQueries = Collections.synchronizedList(new ArrayList<>());
+    private volatile CountDownLatch blockIndex = new CountDownLatch(0);
+    private ToolSelector selector;
+
+    @BeforeEach
+    void setUp() {
+        ToolEmbeddingIndex index = new ToolEmbeddingIndex(null, List.of(), "test-model", tmp, 16, 60, 30,
+                new CacheMetricsService()) {
+            @Override
+            public Object[] findRelevant(String query) {
+                indexQueries.add(query);
+                try {
+                    blockIndex.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return SELECTIONS.getOrDefault(query, new Object[0]);
+            }
+        };
+        selector = new ToolSelector(index, new ToolIntentRegistry(List.of(new LifecycleTools())));
+    }
+
+    @Test
+    void followUpTurnsOfAnIntentKeepEarlierTools() {
+        selector.select("c1", "find a video editor");
+
+        assertThat(selector.select("c1", "how big are they on disk")).containsExactly("search", "disk");
+    }
+
+    @Test
+    void sessionsDoNotShareSelections() {
+        selector.select("c1", "find a video editor");
+
+        assertThat(selector.select("c2", "show my updates")).containsExactly("updates");
+        assertThat(selector.select("c1", "how big are they on disk")).containsExactly("search", "disk");
+    }
+
+    @Test
+    void shortReplyInAnOpenIntentReusesItsToolsWithoutTheIndex() {
+        selector.select("c1", "find a video editor");
+
+        assertThat(selector.select("c1", "yes please")).containsExactly("search");
+        assertThat(indexQueries).containsExactly("find a video editor");
+    }
+
+    @Test
+    void shortReplyAfterAnEndToolStartsAFreshSelection() {
+        selector.select("c1", "install the first one");
+        selector.recordToolCall("c1", "install_flatpak");
+
+        assertThat(selector.select("c1", "thanks!")).isEmpty();
+        assertThat(indexQueries).containsExactly("install the first one", "thanks!");
+    }
+
+    @Test
+    void startToolAfterTheFirstTurnRestartsTheIntentFromThatTurn() {
+        selector.select("c1", "find a video editor");
+        selector.select("c1", "how big are they on disk");
+        selector.recordToolCall("c1", "search_packages");
+
+        assertThat(selector.select("c1", "show my updates")).containsExactly("disk", "updates");
+    }
+
+    @Test
+    void sessionInUseSurvivesEvictionByANewSession() throws Exception {
+        ReflectionTestUtils.setField(selector, "maxSessions", 1);
+        selector.select("c1", "find a video editor");
+
+        blockIndex = new CountDownLatch(1);
+        CompletableFuture<Object[]> inUse = CompletableFuture.supplyAsync(
+                () -> selector.select("c1", "how big are they on disk"));
+        while (indexQueries.size() < 2) Thread.sleep(5);
+        CompletableFuture<Object[]> other = CompletableFuture.supplyAsync(() -> selector.select("c2", "yes"));
+        while (indexQueries.size() < 3) Thread.sleep(5);
+        blockIndex.countDown();
+
+        assertThat(inUse.get()).containsExactly("search", "disk");
+        assertThat(other.get()).isEmpty();
+        // c1 was in use while c2 was created, so its intent is still there
+        assertThat(selector.select("c1", "ok")).containsExactly("search", "disk");
+    }
+}
@@ -0,0 +1,106 @@
+package com.linuxpkgmgr.contextmanagement;
+
+import com.linuxpkgmgr.tool.IntentRole;
+import com.linuxpkgmgr.tool.PkgTool;
+import com.linuxpkgmgr.tool.ToolBean;
+import com.linuxpkgmgr.tool.ToolIntentRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntentCompactorTest {
+
+    static class FakeTools implements ToolBean {
+        @PkgTool(name = "search_flathub", role = IntentRole.START)
+        String searchFlathub(String query) {
+            return "";
+        }
+
+        @PkgTool(name = "install_flatpak", role = IntentRole.END)
+        String installFlatpak(String appId) {
+            return "";
+        }
+    }
+
+    private final IntentBoundaryDetector detector =
+            new IntentBoundaryDetector(new ToolIntentRegistry(List.of(new FakeTools())));
+    private final IntentCompactor compactor = new IntentCompactor();
+    private final ToolCallJournal journal = new ToolCallJournal();
+
+    /** The payload as chat memory assembles it: system prompt, user/assistant text only, current turn. */
+    private List<Message> memoryPayload() {
+        journal.beginTurn("c1", "find a calculator on flathub");
+        journal.record("c1", "search_flathub", "\"org.kde.kcalc  KCalc  Scientific calculator\"");
+        journal.beginTurn("c1", "install kcalc");
+        journal.record("c1", "install_flatpak", "\"Installed org.kde.kcalc\"");
+        journal.beginTurn("c1", "what is using my disk space?");
+
+        List<Message> messages = new ArrayList<>();
+        messages.add(new SystemMessage("You are a Linux package manager assistant."));
+        messages.add(UserMessage.builder().text("find a calculator on flathub").build());
+        messages.add(AssistantMessage.builder().content("Found these calculators:\n" + "- org.kde.kcalc\n".repeat(200)).build());
+        messages.add(UserMessage.builder().text("install kcalc").build());
+        messages.add(AssistantMessage.builder().content("KCalc was installed.\n" + "Installing runtime...\n".repeat(200)).build());
+        messages.add(UserMessage.builder().text("what is using my disk space?").build());
+        return messages;
+    }
+
+    @Test
+    void journalClosesTheIntentAtTheEndTool() {
+        List<Intent> intents = detector.detect(memoryPayload(), journal.turns("c1"));
+
+        assertThat(intents).hasSize(2);
+        assertThat(intents.get(0).active()).isFalse();
+        assertThat(intents.get(0).toolCalls()).extracting(ToolCallJournal.ToolCall::name)
+                .containsExactly("search_flathub", "install_flatpak");
+        assertThat(intents.get(1).active()).isTrue();
+        assertThat(intents.get(1).messages()).hasSize(1);
+    }
+
+    @Test
+    void compactedPayloadShrinksAndKeepsTheActiveTurn() {
+        List<Message> messages = memoryPayload();
+        List<Message> compacted = compactor.compact(messages, detector.detect(messages, journal.turns("c1")));
+
+        assertThat(chars(compacted)).isLessThan(chars(messages) / 4);
+        assertThat(compacted.get(0)).isInstanceOf(SystemMessage.class);
+        assertThat(compacted.get(compacted.size() - 1).getText()).isEqualTo("what is using my disk space?");
+        assertThat(compacted.get(2).getText())
+                .contains("search_flathub → ok")
+                .contains("install_flatpak → ok");
+    }
+
+    @Test
+    void failedToolCallIsSummarisedWithItsReason() {
+        assertThat(ToolCallJournal.outcomeOf("\"Error: no remote named flathub\"")).isEqualTo("failed: Error: no remote named flathub");
+        assertThat(ToolCallJournal.outcomeOf("\"Installed org.kde.kcalc\"")).isEqualTo("ok");
+    }
+
+    @Test
+    void withoutJournalMemoryPayloadIsOneActiveIntent() {
+        List<Message> messages = memoryPayload();
+        List<Intent> intents = detector.detect(messages);
+
+        assertThat(intents).singleElement().extracting(Intent::active).isEqualTo(true);
+        assertThat(compactor.compact(messages, intents)).isSameAs(messages);
+    }
+
+    @Test
+    void journalOutOfStepWithMemoryIsIgnored() {
+        List<Message> messages = memoryPayload();
+        journal.beginTurn("c1", "a turn memory never saw");
+
+        assertThat(detector.detect(messages, journal.turns("c1"))).hasSize(1);
+    }
+
+    private static int chars(List<Message> messages) {
+        return messages.stream().mapToInt(m -> m.getText().length()).sum();
+    }
+}
@@ -0,0 +1,63 @@
+package com.linuxpkgmgr.model;
+
+import com.linuxpkgmgr.model.PackageInfo.Installed;
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InstalledPackagesTest {
+
+    private static PackageInfo pkg(String name, String id, Source source) {
+        return new PackageInfo(name, id, "1.0", "", source, Installed.YES);
+    }
+
+    private final InstalledPackages packages = InstalledPackages.of(List.of(
+            pkg("libvlc5", "libvlc5", Source.NATIVE),
+            pkg("vlc-plugin-base", "vlc-plugin-base", Source.NATIVE),
+            pkg("vlc", "vlc", Source.NATIVE),
+            pkg("VLC", "org.videolan.VLC", Source.FLATPAK),
+            pkg("KCalc", "org.kde.kcalc", Source.FLATPAK),
+            pkg("vim", "vim", Source.NATIVE)));
+
+    @Test
+    void ranksExactThenPrefixThenSubstringMatches() {
+        assertThat(packages.search("vlc", null, 10)).extracting(PackageInfo::id)
+                .containsExactly("vlc", "org.videolan.VLC", "vlc-plugin-base", "libvlc5");
+    }
+
+    @Test
+    void matchesNameOrIdCaseInsensitively() {
+        assertThat(packages.search("  KCALC ", null, 10)).extracting(PackageInfo::id).containsExactly("org.kde.kcalc");
+        assertThat(packages.search("Videolan", null, 10)).extracting(PackageInfo::id).containsExactly("org.videolan.VLC");
+    }
+
+    @Test
+    void restrictsToSourceAndLimit() {
+        assertThat(packages.search("vlc", Source.FLATPAK, 10)).extracting(PackageInfo::id)
+                .containsExactly("org.videolan.VLC");
+        assertThat(packages.search("vlc", null, 2)).extracting(PackageInfo::id)
+                .containsExactly("vlc", "org.videolan.VLC");
+    }
+
+    @Test
+    void shortFragmentsScanEveryPackage() {
+        assertThat(packages.search("vi", null, 10)).extracting(PackageInfo::id)
+                .containsExactly("vim", "org.videolan.VLC");
+    }
+
+    @Test
+    void fragmentWithUnknownTrigramMatchesNothing() {
+        assertThat(packages.search("xyz", null, 10)).isEmpty();
+        assertThat(packages.search(" ", null, 10)).isEmpty();
+    }
+
+    @Test
+    void byIdIsCaseInsensitive() {
+        assertThat(packages.byId("ORG.KDE.KCALC").name()).isEqualTo("KCalc");
+        assertThat(packages.byId("missing")).isNull();
+        assertThat(packages.bySource(Source.FLATPAK)).hasSize(2);
+    }
+}
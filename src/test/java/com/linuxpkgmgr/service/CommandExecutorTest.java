@@ -0,0 +1,109 @@
+package com.linuxpkgmgr.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommandExecutorTest {
+
+    private final List<String> shellLines = Collections.synchronizedList(new ArrayList<>());
+    private CommandExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        ShellOutputBus bus = new ShellOutputBus();
+        bus.addListener(shellLines::add);
+        executor = new CommandExecutor(bus);
+    }
+
+    @Test
+    void lineCapTruncatesOutput() throws Exception {
+        ReflectionTestUtils.setField(executor, "maxOutputLines", 3L);
+
+        String output = executor.execute(List.of("seq", "1", "100"));
+
+        assertThat(output).isEqualTo("1\n2\n3\n");
+        assertThat(shellLines).contains("… output truncated");
+    }
+
+    @Test
+    void byteCapCountsEncodedBytes() throws Exception {
+        // Each line is "ééé": 3 characters but 6 bytes, 7 of the 10 with its newline
+        ReflectionTestUtils.setField(executor, "maxOutputBytes", 10L);
+
+        String output = executor.execute(List.of("printf", "\\303\\251\\303\\251\\303\\251\\n".repeat(2)));
+
+        assertThat(output).isEqualTo("ééé\n");
+    }
+
+    @Test
+    void executeLinesStopsWhenTheParserIsDone() throws Exception {
+        String first = executor.executeLines(List.of("seq", "1", "1000000000"), lines -> lines.findFirst().orElse(null));
+
+        assertThat(first).isEqualTo("1");
+        assertThat(executor.isBusy()).isFalse();
+    }
+
+    @Test
+    void deadlineKillsTheProcessTree() {
+        long start = System.nanoTime();
+
+        assertThatThrownBy(() -> executor.execute(List.of("sh", "-c", "sleep 30; echo done"), Duration.ofMillis(300)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("timed out");
+        assertThat(Duration.ofNanos(System.nanoTime() - start).toSeconds()).isLessThan(10);
+        assertThat(executor.isBusy()).isFalse();
+    }
+
+    @Test
+    void cancelAllFailsRunningCommands() throws Exception {
+        CompletableFuture<String> sleeping = executor.executeAsync(List.of("sleep", "30"), Duration.ofMinutes(1));
+        while (!executor.isBusy()) Thread.sleep(5);
+
+        executor.cancelAll();
+
+        assertThatThrownBy(sleeping::get).hasRootCauseInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    void externalCommandIsCancelledAtItsDeadline() {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CommandExecutor.ExternalCommand hanging = new CommandExecutor.ExternalCommand() {
+            @Override
+            public int run(Consumer<String> sink) throws InterruptedException {
+                sink.accept("working");
+                cancelled.await();
+                return 143;
+            }
+
+            @Override
+            public void cancel() {
+                cancelled.countDown();
+            }
+        };
+
+        assertThatThrownBy(() -> executor.executeChecked(List.of("sudo", "dnf", "upgrade"), Duration.ofMillis(200), hanging))
+                .hasMessageContaining("timed out");
+        assertThat(cancelled.getCount()).isZero();
+    }
+
+    @Test
+    void utf8LengthMatchesTheEncoder() {
+        for (String s : List.of("", "htop", "Ångström", "日本語", "emoji 🙂 ok")) {
+            assertThat(CommandExecutor.utf8Length(s)).isEqualTo(s.getBytes(StandardCharsets.UTF_8).length);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.DesktopEntry;
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DesktopFileServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private Path flatpakDir;
+    private Path nativeDir;
+    private DesktopFileService desktop;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        flatpakDir = Files.createDirectories(tmp.resolve("flatpak/exports/share/applications"));
+        nativeDir = Files.createDirectories(tmp.resolve("usr/share/applications"));
+        Map<Path, Source> dirs = new LinkedHashMap<>();
+        dirs.put(flatpakDir, Source.FLATPAK);
+        dirs.put(nativeDir, Source.NATIVE);
+        desktop = new DesktopFileService(dirs);
+
+        write(flatpakDir, "org.videolan.VLC", "VLC media player", "AudioVideo;Player;");
+        write(nativeDir, "vlc", "VLC", "AudioVideo;");
+        write(nativeDir, "org.gimp.GIMP", "GIMP", "Graphics;");
+        Files.writeString(nativeDir.resolve("hidden.desktop"), """
+                [Desktop Entry]
+                Type=Application
+                Name=Hidden helper
+                NoDisplay=true
+                """);
+    }
+
+    @AfterEach
+    void tearDown() {
+        desktop.shutdown();
+    }
+
+    private static Path write(Path dir, String appId, String name, String categories) throws Exception {
+        return Files.writeString(dir.resolve(appId + ".desktop"), """
+                [Desktop Entry]
+                Type=Application
+                Name=%s
+                Categories=%s
+                """.formatted(name, categories));
+    }
+
+    /** Moves the mtime forward so the change is visible even within one filesystem tick. */
+    private static void bumpMtime(Path file) throws Exception {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+    }
+
+    @Test
+    void entriesAreListedFlatpakFirstAndHiddenOnesExcluded() {
+        assertThat(desktop.getDesktopEntries()).extracting(DesktopEntry::appId)
+                .containsExactly("org.videolan.VLC", "org.gimp.GIMP", "vlc");
+    }
+
+    @Test
+    void categoryAndAppIdLookupsIgnoreCase() {
+        assertThat(desktop.getEntriesInCategory("audiovideo")).extracting(DesktopEntry::appId)
+                .containsExactly("org.videolan.VLC", "vlc");
+        assertThat(desktop.getEntriesInCategory("Office")).isEmpty();
+        assertThat(desktop.findByAppId("ORG.GIMP.GIMP").name()).isEqualTo("GIMP");
+        assertThat(desktop.findByAppId("org.videolan.VLC").source()).isEqualTo(Source.FLATPAK);
+        assertThat(desktop.findByAppId("hidden")).isNull();
+    }
+
+    @Test
+    void withoutAWatcherEveryLookupPicksUpAddedChangedAndRemovedFiles() throws Exception {
+        desktop.getDesktopEntries();
+
+        bumpMtime(write(nativeDir, "org.gimp.GIMP", "GNU Image Manipulation Program", "Graphics;"));
+        Files.delete(nativeDir.resolve("vlc.desktop"));
+        write(nativeDir, "htop", "Htop", "System;Monitor;");
+
+        assertThat(desktop.findByAppId("org.gimp.GIMP").name()).isEqualTo("GNU Image Manipulation Program");
+        assertThat(desktop.findByAppId("vlc")).isNull();
+        assertThat(desktop.getEntriesInCategory("monitor")).extracting(DesktopEntry::appId).containsExactly("htop");
+    }
+
+    @Test
+    void fileWithUnchangedMtimeIsNotParsedAgain() throws Exception {
+        desktop.getDesktopEntries();
+        Path gimp = nativeDir.resolve("org.gimp.GIMP.desktop");
+        FileTime mtime = Files.getLastModifiedTime(gimp);
+
+        write(nativeDir, "org.gimp.GIMP", "Renamed", "Graphics;");
+        Files.setLastModifiedTime(gimp, mtime);
+
+        assertThat(desktop.findByAppId("org.gimp.GIMP").name()).isEqualTo("GIMP");
+    }
+
+    @Test
+    void watcherRepublishesAfterAChange() throws Exception {
+        desktop.init();
+        assertThat(desktop.findByAppId("htop")).isNull();
+
+        write(nativeDir, "htop", "Htop", "System;Monitor;");
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (desktop.findByAppId("htop") == null && System.nanoTime() < deadline) Thread.sleep(20);
+        assertThat(desktop.findByAppId("htop")).isNotNull();
+    }
+
+    @Test
+    void parserReadsOnlyTheDesktopEntryGroup() throws Exception {
+        Files.writeString(nativeDir.resolve("org.gnome.Editor.desktop"), """
+                # Leading comment
+                [Desktop Entry]
+                  Type = Application
+                Name[zz]=Foreign name
+                Name=Text Editor
+                Name=Ignored duplicate
+
+                Comment=Edit text files
+                Categories=Utility;TextEditor;
+
+                [Desktop Action new-window]
+                Name=New Window
+                Categories=Ignored;
+                """);
+
+        DesktopEntry editor = desktop.findByAppId("org.gnome.Editor");
+
+        assertThat(editor.name()).isEqualTo("Text Editor");
+        assertThat(editor.comment()).isEqualTo("Edit text files");
+        assertThat(editor.categories()).containsExactly("Utility", "TextEditor");
+        assertThat(editor.source()).isEqualTo(Source.NATIVE);
+    }
+
+    @Test
+    void nonApplicationsAndEntriesWithoutAGroupAreSkipped() throws Exception {
+        Files.writeString(nativeDir.resolve("link.desktop"), "[Desktop Entry]\nType=Link\nName=Docs\n");
+        Files.writeString(nativeDir.resolve("headless.desktop"), "Type=Application\nName=No group\n");
+        Files.writeString(nativeDir.resolve("unnamed.desktop"), "[Desktop Entry]\nType=Application\n");
+
+        assertThat(desktop.findByAppId("link")).isNull();
+        assertThat(desktop.findByAppId("headless")).isNull();
+        assertThat(desktop.findByAppId("unnamed").name()).isEqualTo("unnamed");
+    }
+
+    @Test
+    void largeDirectoriesAreIndexedCompletely() throws Exception {
+        for (int i = 0; i < 500; i++) write(nativeDir, "app" + i, "App " + i, "Generated;");
+
+        assertThat(desktop.getEntriesInCategory("generated")).hasSize(500);
+        assertThat(desktop.findByAppId("app499").name()).isEqualTo("App 499");
+    }
+}
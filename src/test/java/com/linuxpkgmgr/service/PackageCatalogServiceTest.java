@@ -0,0 +1,85 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.PackageInfo;
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import com.linuxpkgmgr.service.SystemPackageService.PackageManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackageCatalogServiceTest {
+
+    private static final byte[] ZSTD_MAGIC = {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0, 0, 0, 0};
+
+    @TempDir
+    Path tmp;
+
+    private PackageCatalogService catalog;
+    private Path thirdParty;
+    private Path fedora;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SystemPackageService dnfSystem = new SystemPackageService(null) {
+            @Override
+            public PackageManager getNativePackageManager() {
+                return PackageManager.DNF;
+            }
+        };
+        catalog = new PackageCatalogService(dnfSystem);
+        ReflectionTestUtils.setField(catalog, "cacheDir", tmp.resolve("cache"));
+
+        thirdParty = Files.createDirectories(tmp.resolve("thirdparty/repodata")).resolve("primary.xml");
+        Files.copy(Path.of(getClass().getResource("/fixtures/repo/primary.xml").toURI()), thirdParty);
+        fedora = Files.createDirectories(tmp.resolve("fedora/repodata")).resolve("abc-primary.xml.zst");
+        Files.write(fedora, ZSTD_MAGIC);
+    }
+
+    @Test
+    void sourceWithOnlyParseableMetadataIsCovered() {
+        catalog.refreshIfChanged(Map.of(thirdParty, Source.NATIVE));
+
+        assertThat(catalog.covers(Source.NATIVE)).isTrue();
+        assertThat(catalog.covers(Source.FLATPAK)).isFalse();
+        assertThat(catalog.search(Source.NATIVE, "htop", 10)).extracting(PackageInfo::id).containsExactly("htop");
+    }
+
+    @Test
+    void sourceWithAnUnparseableMetadataFileIsNotCovered() {
+        catalog.refreshIfChanged(Map.of(thirdParty, Source.NATIVE, fedora, Source.NATIVE));
+
+        // The third-party repo parsed, but searching it alone would miss everything in fedora
+        assertThat(catalog.search(Source.NATIVE, "htop", 10)).isNotEmpty();
+        assertThat(catalog.covers(Source.NATIVE)).isFalse();
+    }
+
+    @Test
+    void sourceIsCoveredAgainOnceTheBrokenFileParses() throws Exception {
+        Map<Path, Source> metadata = Map.of(thirdParty, Source.NATIVE, fedora, Source.NATIVE);
+        catalog.refreshIfChanged(metadata);
+        assertThat(catalog.covers(Source.NATIVE)).isFalse();
+
+        Files.copy(thirdParty, fedora, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(fedora, FileTime.fromMillis(Files.getLastModifiedTime(fedora).toMillis() + 1000));
+        catalog.refreshIfChanged(metadata);
+
+        assertThat(catalog.covers(Source.NATIVE)).isTrue();
+    }
+
+    @Test
+    void brokenFileThatDisappearsNoLongerBlocksTheSource() {
+        catalog.refreshIfChanged(Map.of(thirdParty, Source.NATIVE, fedora, Source.NATIVE));
+        catalog.refreshIfChanged(Map.of(thirdParty, Source.NATIVE));
+
+        assertThat(catalog.covers(Source.NATIVE)).isTrue();
+    }
+}
@@ -0,0 +1,51 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.PackageInfo;
+import com.linuxpkgmgr.model.PackageInfo.Installed;
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackageDatabaseReaderTest {
+
+    private Path fixture(String name) throws URISyntaxException {
+        return Path.of(getClass().getResource("/fixtures/" + name).toURI());
+    }
+
+    @Test
+    void dpkgManualExcludesAutoInstalledPackagesPerArchitecture() throws Exception {
+        List<PackageInfo> manual = PackageDatabaseReader.readDpkgManual(
+                fixture("dpkg/status"), fixture("dpkg/extended_states"));
+
+        // libc6 is auto on both arches; zlib1g only on i386; fonts-dejavu (Architecture: all)
+        // is recorded under amd64; oldpkg is removed with its configuration kept
+        assertThat(manual).extracting(PackageInfo::id).containsExactly("vim", "zlib1g", "café");
+        assertThat(manual.getFirst()).isEqualTo(new PackageInfo("vim", "vim", "2:9.0.1378-2",
+                "Vi IMproved - enhanced vi editor", Source.NATIVE, Installed.YES));
+        assertThat(manual.get(2).summary()).isEqualTo("naïve UTF-8 résumé");
+    }
+
+    @Test
+    void dpkgManualWithoutExtendedStatesTreatsEverythingAsManual(@TempDir Path tmp) throws Exception {
+        List<PackageInfo> manual = PackageDatabaseReader.readDpkgManual(
+                fixture("dpkg/status"), tmp.resolve("extended_states"));
+
+        assertThat(manual).extracting(PackageInfo::id)
+                .containsExactly("vim", "libc6", "zlib1g", "fonts-dejavu", "café");
+    }
+
+    @Test
+    void pacmanExplicitSkipsDependencyInstalls() throws Exception {
+        List<PackageInfo> explicit = PackageDatabaseReader.readPacmanExplicit(fixture("pacman-local"));
+
+        assertThat(explicit).containsExactly(new PackageInfo("vim", "vim", "9.1.0-1",
+                "Vi Improved, a highly configurable, improved version of the vi text editor",
+                Source.NATIVE, Installed.YES));
+    }
+}
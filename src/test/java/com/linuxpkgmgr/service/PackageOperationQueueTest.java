@@ -0,0 +1,173 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import com.linuxpkgmgr.service.PackageOperationQueue.Kind;
+import com.linuxpkgmgr.service.PackageOperationQueue.PackageTransaction;
+import com.linuxpkgmgr.service.SystemPackageService.PackageManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PackageOperationQueueTest {
+
+    private PackageOperationQueue queue;
+    private final List<String> shellLines = Collections.synchronizedList(new ArrayList<>());
+
+    /** Blocks the first run until released, so later operations pile up behind it. */
+    private final CountDownLatch firstRunStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstRun = new CountDownLatch(1);
+    private final List<List<String>> runs = Collections.synchronizedList(new ArrayList<>());
+    private final PackageTransaction install = packages -> {
+        runs.add(packages);
+        if (runs.size() == 1) {
+            firstRunStarted.countDown();
+            releaseFirstRun.await();
+        }
+        return "installed " + packages;
+    };
+
+    @BeforeEach
+    void setUp() {
+        SystemPackageService noNativePm = new SystemPackageService(null) {
+            @Override
+            public PackageManager getNativePackageManager() {
+                return PackageManager.UNKNOWN;
+            }
+        };
+        ShellOutputBus bus = new ShellOutputBus();
+        bus.addListener(shellLines::add);
+        queue = new PackageOperationQueue(noNativePm, new SudoService(null), bus);
+    }
+
+    private CompletableFuture<String> submit(Kind kind, List<String> packages, PackageTransaction transaction) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return queue.execute(Source.FLATPAK, kind, packages, transaction);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, r -> Thread.ofVirtual().start(r));
+    }
+
+    /** Waits until {@code count} operations sit in the queue behind the running one. */
+    private void awaitQueued(int count) throws InterruptedException {
+        while (shellLines.size() < count) Thread.sleep(5);
+    }
+
+    @Test
+    void queuedCompatibleOperationsRunAsOneTransaction() throws Exception {
+        CompletableFuture<String> first = submit(Kind.INSTALL, List.of("org.gimp.GIMP"), install);
+        firstRunStarted.await();
+        CompletableFuture<String> second = submit(Kind.INSTALL, List.of("org.videolan.VLC"), install);
+        awaitQueued(1);
+        CompletableFuture<String> third = submit(Kind.INSTALL, List.of("org.kde.krita", "org.videolan.VLC"), install);
+        awaitQueued(2);
+        releaseFirstRun.countDown();
+
+        assertThat(first.get()).isEqualTo("installed [org.gimp.GIMP]");
+        assertThat(second.get()).isEqualTo("installed [org.videolan.VLC, org.kde.krita]");
+        assertThat(third.get()).isSameAs(second.get());
+        assertThat(runs).containsExactly(List.of("org.gimp.GIMP"), List.of("org.videolan.VLC", "org.kde.krita"));
+    }
+
+    @Test
+    void operationsWithDifferentTransactionsAreNotMerged() throws Exception {
+        PackageTransaction other = packages -> {
+            runs.add(packages);
+            return "other " + packages;
+        };
+        CompletableFuture<String> first = submit(Kind.INSTALL, List.of("a"), install);
+        firstRunStarted.await();
+        CompletableFuture<String> second = submit(Kind.INSTALL, List.of("b"), install);
+        awaitQueued(1);
+        CompletableFuture<String> third = submit(Kind.INSTALL, List.of("c"), other);
+        awaitQueued(2);
+        releaseFirstRun.countDown();
+
+        first.get();
+        assertThat(second.get()).isEqualTo("installed [b]");
+        assertThat(third.get()).isEqualTo("other [c]");
+        assertThat(runs).containsExactly(List.of("a"), List.of("b"), List.of("c"));
+    }
+
+    @Test
+    void failedMergeIsRetriedPartByPart() throws Exception {
+        PackageTransaction rejectsBad = packages -> {
+            runs.add(packages);
+            if (runs.size() == 1) {
+                firstRunStarted.countDown();
+                releaseFirstRun.await();
+            }
+            if (packages.contains("bad")) throw new RuntimeException("No remote refs found for bad");
+            return "installed " + packages;
+        };
+        CompletableFuture<String> first = submit(Kind.INSTALL, List.of("a"), rejectsBad);
+        firstRunStarted.await();
+        CompletableFuture<String> good = submit(Kind.INSTALL, List.of("good"), rejectsBad);
+        awaitQueued(1);
+        CompletableFuture<String> bad = submit(Kind.INSTALL, List.of("bad"), rejectsBad);
+        awaitQueued(2);
+        releaseFirstRun.countDown();
+
+        first.get();
+        assertThat(good.get()).isEqualTo("installed [good]");
+        assertThatThrownBy(bad::get).hasMessageContaining("No remote refs found for bad");
+        assertThat(runs).containsExactly(List.of("a"), List.of("good", "bad"), List.of("good"), List.of("bad"));
+    }
+
+    @Test
+    void cancelAllFailsQueuedOperationsButLetsTheRunningOneFinish() throws Exception {
+        CompletableFuture<String> running = submit(Kind.INSTALL, List.of("a"), install);
+        firstRunStarted.await();
+        CompletableFuture<String> queued = submit(Kind.REMOVE, List.of("b"), install);
+        awaitQueued(1);
+
+        queue.cancelAll();
+
+        assertThatThrownBy(queued::get).isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(CancellationException.class);
+        releaseFirstRun.countDown();
+        assertThat(running.get()).isEqualTo("installed [a]");
+        assertThat(runs).containsExactly(List.of("a"));
+    }
+
+    @Test
+    void mountDeviceUsesTheLongestContainingMountPoint() {
+        List<String> mountinfo = List.of(
+                "23 1 0:31 /@ / rw,relatime shared:1 - btrfs /dev/vda3 rw,subvol=/@",
+                "45 23 0:31 /@var /var rw,relatime shared:2 - btrfs /dev/vda3 rw,subvol=/@var",
+                "46 23 259:2 / /boot rw,relatime shared:3 - ext4 /dev/nvme0n1p2 rw",
+                "47 23 0:40 / /var/lib\\040data rw,relatime shared:4 - tmpfs tmpfs rw");
+
+        assertThat(PackageOperationQueue.mountDevice(Path.of("/var/lib/dpkg/lock"), mountinfo)).isEqualTo("0:1f");
+        assertThat(PackageOperationQueue.mountDevice(Path.of("/boot/grub"), mountinfo)).isEqualTo("103:2");
+        assertThat(PackageOperationQueue.mountDevice(Path.of("/var/lib data/x"), mountinfo)).isEqualTo("0:28");
+        assertThat(PackageOperationQueue.mountDevice(Path.of("/var/lib/dpkg/lock"), List.of())).isNull();
+    }
+
+    @Test
+    void lockingPidMatchesDeviceAndInodeAndSkipsWaiters() {
+        List<String> procLocks = List.of(
+                "1: POSIX  ADVISORY  WRITE 812 00:1f:4711 0 EOF",
+                "1: -> POSIX  ADVISORY  WRITE 900 00:1f:1234 0 EOF",
+                "2: FLOCK  ADVISORY  WRITE 77 103:02:1234 0 EOF");
+
+        assertThat(PackageOperationQueue.lockingPid(procLocks, Set.of("0:1f:4711"), Set.of())).isEqualTo("812");
+        assertThat(PackageOperationQueue.lockingPid(procLocks, Set.of("0:20:4711"), Set.of())).isNull();
+        assertThat(PackageOperationQueue.lockingPid(procLocks, Set.of("0:1f:1234"), Set.of())).isNull();
+        // Anonymous device that mountinfo could not resolve: the inode alone identifies the file
+        assertThat(PackageOperationQueue.lockingPid(procLocks, Set.of(), Set.of(4711L))).isEqualTo("812");
+    }
+}
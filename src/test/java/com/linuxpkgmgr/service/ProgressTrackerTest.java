@@ -0,0 +1,143 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.ProgressEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProgressTrackerTest {
+
+    private final List<ProgressEvent> events = new ArrayList<>();
+
+    /** Feeds {@code lines} through a tracker for {@code command}; returns the lines it kept. */
+    private List<String> run(ProgressTracker tracker, String... lines) {
+        List<String> kept = new ArrayList<>();
+        for (String line : lines) {
+            if (tracker.keep(line)) kept.add(line);
+        }
+        return kept;
+    }
+
+    @Test
+    void dnfDownloadsAndTransactionStepsAreSummarised() {
+        ProgressTracker tracker = ProgressTracker.forCommand(List.of("sudo", "dnf", "install", "-y", "vlc"), events::add);
+
+        List<String> kept = run(tracker,
+                "Total download size: 12 M",
+                "(1/2): vlc-3.0.20-1.fc39.x86_64.rpm              1.2 MB/s | 2.0 MB     00:01",
+                "(2/2): vlc-libs-3.0.20-1.fc39.x86_64.rpm         3.0 MB/s | 3.0 MB     00:01",
+                "  Installing       : vlc-libs-3.0.20-1.fc39.x86_64       1/2",
+                "  Installing       : vlc-3.0.20-1.fc39.x86_64            2/2",
+                "Complete!");
+
+        assertThat(kept).containsExactly("Total download size: 12 M", "Complete!");
+        assertThat(tracker.summary()).isEqualTo(
+                "[dnf install: downloaded 2 package(s) (4.8 MiB), installed 2; 4 progress line(s) omitted]");
+        assertThat(events).extracting(ProgressEvent::phase)
+                .contains(ProgressEvent.Phase.DOWNLOADING, ProgressEvent.Phase.INSTALLING);
+    }
+
+    @Test
+    void aptFetchUnpackAndSetupLinesAreSummarised() {
+        ProgressTracker tracker = ProgressTracker.forCommand(List.of("apt-get", "install", "-y", "vlc"), events::add);
+
+        List<String> kept = run(tracker,
+                "Need to get 1,234 kB of archives.",
+                "0 upgraded, 2 newly installed, 0 to remove and 3 not upgraded.",
+                "Get:1 http://deb.debian.org/debian bookworm/main amd64 libvlc5 amd64 3.0.20-0+deb12u1 [1,000 kB]",
+                "Get:2 http://deb.debian.org/debian bookworm/main amd64 vlc amd64 3.0.20-0+deb12u1 [234 kB]",
+                "Selecting previously unselected package libvlc5:amd64.",
+                "(Reading database ... 45%",
+                "Preparing to unpack .../libvlc5_3.0.20-0+deb12u1_amd64.deb ...",
+                "Unpacking libvlc5:amd64 (3.0.20-0+deb12u1) ...",
+                "Unpacking vlc (3.0.20-0+deb12u1) ...",
+                "Setting up libvlc5:amd64 (3.0.20-0+deb12u1) ...",
+                "Setting up vlc (3.0.20-0+deb12u1) ...");
+
+        assertThat(kept).hasSize(2);
+        assertThat(tracker.summary()).isEqualTo("[apt-get install: downloaded 2 package(s) (1.2 MiB), "
+                + "installed 2, configured 2; 9 progress line(s) omitted]");
+    }
+
+    @Test
+    void pacmanStepsAreSummarised() {
+        ProgressTracker tracker = ProgressTracker.forCommand(
+                List.of("sudo", "pacman", "-S", "--noconfirm", "vlc"), events::add);
+
+        List<String> kept = run(tracker,
+                "(1/2) checking keys in keyring",
+                "( 1/2) installing libvlc",
+                "( 2/2) installing vlc",
+                "Optional dependencies for vlc");
+
+        assertThat(kept).containsExactly("Optional dependencies for vlc");
+        assertThat(tracker.summary()).contains("installed 2").contains("3 progress line(s) omitted");
+    }
+
+    @Test
+    void zypperRetrievalsAndStepsAreSummarised() {
+        ProgressTracker tracker = ProgressTracker.forCommand(
+                List.of("zypper", "--non-interactive", "install", "vlc"), events::add);
+
+        List<String> kept = run(tracker,
+                "Overall download size: 5.0 MiB. Already cached: 0 B. After the operation, additional 20.0 MiB will be used.",
+                "Retrieving package vlc-3.0.20-1.1.x86_64 (1/2), 1.5 MiB (6.0 MiB unpacked)",
+                "Retrieving: vlc-3.0.20-1.1.x86_64.rpm [done]",
+                "(1/2) Installing: vlc-3.0.20-1.1.x86_64 [done]");
+
+        assertThat(kept).hasSize(1);
+        assertThat(tracker.summary()).isEqualTo(
+                "[zypper install: downloaded 1 package(s) (1.5 MiB), installed 1; 3 progress line(s) omitted]");
+    }
+
+    @Test
+    void flatpakStepPercentagesBecomeOverallProgress() {
+        ProgressTracker tracker = ProgressTracker.forCommand(
+                List.of("flatpak", "install", "--user", "-y", "flathub", "org.kde.kcalc"), events::add);
+
+        run(tracker,
+                "Installing 1/2… ████████▌            45%",
+                "Installing 2/2… ████████████████████ 100%");
+        tracker.finish();
+
+        assertThat(events).extracting(ProgressEvent::percent).containsExactly(22, 100, 100);
+        assertThat(events.getLast().isDone()).isTrue();
+        assertThat(tracker.summary()).contains("installed 2");
+    }
+
+    @Test
+    void queriesAndUnknownCommandsAreNotTracked() {
+        assertThat(ProgressTracker.forCommand(List.of("dnf", "check-update"), events::add)).isNull();
+        assertThat(ProgressTracker.forCommand(List.of("pacman", "-Ss", "vlc"), events::add)).isNull();
+        assertThat(ProgressTracker.forCommand(List.of("ls"), events::add)).isNull();
+    }
+
+    @Test
+    void trackerWithoutProgressHasNoSummary() {
+        ProgressTracker tracker = ProgressTracker.forCommand(List.of("dnf", "install", "-y", "vlc"), events::add);
+
+        run(tracker, "Last metadata expiration check: 0:01:02 ago.", "Nothing to do.");
+
+        assertThat(tracker.summary()).isNull();
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void parseSizeHandlesDecimalBinaryAndBareUnits() {
+        assertThat(ProgressTracker.parseSize("234 kB")).isEqualTo(234_000);
+        assertThat(ProgressTracker.parseSize("1,234 kB")).isEqualTo(1_234_000);
+        assertThat(ProgressTracker.parseSize("1.2 MiB")).isEqualTo(1_258_291);
+        assertThat(ProgressTracker.parseSize("143 M")).isEqualTo(143L * 1024 * 1024);
+        assertThat(ProgressTracker.parseSize("garbage")).isZero();
+    }
+
+    @Test
+    void formatSizeUsesBinaryUnits() {
+        assertThat(ProgressTracker.formatSize(512)).isEqualTo("512 B");
+        assertThat(ProgressTracker.formatSize(1536)).isEqualTo("1.5 KiB");
+        assertThat(ProgressTracker.formatSize(5L * 1024 * 1024 * 1024)).isEqualTo("5.0 GiB");
+    }
+}
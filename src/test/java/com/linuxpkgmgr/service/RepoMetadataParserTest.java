@@ -0,0 +1,93 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.PackageInfo;
+import com.linuxpkgmgr.model.PackageInfo.Installed;
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RepoMetadataParserTest {
+
+    @TempDir
+    Path tmp;
+
+    private Path fixture(String name) throws URISyntaxException {
+        return Path.of(getClass().getResource("/fixtures/repo/" + name).toURI());
+    }
+
+    private Path gzipped(Path source) throws IOException {
+        Path target = tmp.resolve(source.getFileName() + ".gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(target))) {
+            Files.copy(source, out);
+        }
+        return target;
+    }
+
+    @Test
+    void primaryXmlSkipsSourceRpmsAndJoinsVersionAndRelease() throws Exception {
+        List<PackageInfo> packages = RepoMetadataParser.parsePrimaryXml(fixture("primary.xml"));
+
+        assertThat(packages).containsExactly(
+                new PackageInfo("vim-enhanced", "vim-enhanced", "9.1.031-1.fc40",
+                        "A version of the VIM editor which includes recent enhancements", Source.NATIVE, Installed.NO),
+                new PackageInfo("htop", "htop", "3.3.0", "Interactive process viewer", Source.NATIVE, Installed.NO));
+    }
+
+    @Test
+    void gzippedPrimaryXmlIsReadTransparently() throws Exception {
+        assertThat(RepoMetadataParser.parsePrimaryXml(gzipped(fixture("primary.xml"))))
+                .extracting(PackageInfo::id)
+                .containsExactly("vim-enhanced", "htop");
+    }
+
+    @Test
+    void aptPackagesKeepOnlyTheFirstDescriptionLine() throws Exception {
+        List<PackageInfo> packages = RepoMetadataParser.parseAptPackages(fixture("Packages"));
+
+        assertThat(packages).containsExactly(
+                new PackageInfo("htop", "htop", "3.2.2-2", "interactive processes viewer", Source.NATIVE, Installed.NO),
+                new PackageInfo("vlc", "vlc", "3.0.20-0+deb12u1", "multimedia player and streamer",
+                        Source.NATIVE, Installed.NO));
+    }
+
+    @Test
+    void pacmanSyncDbReadsEveryDescEntryOfTheArchive() throws Exception {
+        List<PackageInfo> packages = RepoMetadataParser.parsePacmanSyncDb(fixture("core.db"));
+
+        assertThat(packages).extracting(PackageInfo::id).containsExactly("vim", "htop");
+        assertThat(packages.getFirst().version()).isEqualTo("9.1.0-1");
+        assertThat(packages.get(1).summary()).isEqualTo("Interactive process viewer");
+    }
+
+    @Test
+    void appstreamKeepsApplicationsWithUntranslatedFields() throws Exception {
+        List<PackageInfo> packages = RepoMetadataParser.parseAppstream(gzipped(fixture("appstream.xml")));
+
+        assertThat(packages).containsExactly(
+                new PackageInfo("KCalc", "org.kde.kcalc", "24.02.1", "Scientific calculator",
+                        Source.FLATPAK, Installed.NO),
+                new PackageInfo("io.github.htop", "io.github.htop", "", "Interactive process viewer",
+                        Source.FLATPAK, Installed.NO));
+    }
+
+    @Test
+    void zstdCompressedMetadataIsRejected() throws Exception {
+        Path zst = tmp.resolve("primary.xml.zst");
+        Files.write(zst, new byte[]{0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0, 0, 0, 0});
+
+        assertThatThrownBy(() -> RepoMetadataParser.parsePrimaryXml(zst))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("zstd");
+    }
+}
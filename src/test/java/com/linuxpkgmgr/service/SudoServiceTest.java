@@ -0,0 +1,185 @@
+package com.linuxpkgmgr.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SudoServiceTest {
+
+    /** Stands in for the root helper: reads one framed command, answers with a line and exit 0. */
+    private static final String FAKE_HELPER = """
+            while read n; do
+              i=0; while [ "$i" -lt "$n" ]; do read arg; i=$((i + 1)); done
+              echo helped; echo "$1 0"
+            done
+            """;
+
+    /** Non-interactive sudo calls, joined with spaces. */
+    private final List<String> quietCalls = Collections.synchronizedList(new ArrayList<>());
+    /** One-shot sudo invocations, joined with spaces. */
+    private final List<String> sudoCalls = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> prompts = Collections.synchronizedList(new ArrayList<>());
+    private boolean cacheWarm = true;
+    private boolean timestampLapses = false;
+    private final List<String> shellLines = Collections.synchronizedList(new ArrayList<>());
+    private CommandExecutor executor;
+    private SudoService sudo;
+
+    @BeforeEach
+    void setUp() {
+        ShellOutputBus bus = new ShellOutputBus();
+        bus.addListener(shellLines::add);
+        executor = new CommandExecutor(bus);
+        sudo = new SudoService(executor) {
+            @Override
+            String runQuietly(List<String> command) {
+                quietCalls.add(String.join(" ", command));
+                if (command.contains("-l")) return "    timestamp_timeout=10\n";
+                if (command.contains("kill")) return run(command.subList(2, command.size()));
+                return cacheWarm ? "" : null;
+            }
+
+            /** Runs the command without sudo, or fails like {@code sudo -n} on a lapsed timestamp. */
+            @Override
+            Process startSudo(List<String> sudoCmd, String password) throws IOException {
+                sudoCalls.add(String.join(" ", sudoCmd));
+                if (timestampLapses && sudoCmd.contains("-n")) {
+                    return new ProcessBuilder("sh", "-c", "echo 'sudo: a password is required' >&2; exit 1")
+                            .redirectErrorStream(true).start();
+                }
+                List<String> command = sudoCmd.subList(sudoCmd.indexOf("--") + 1, sudoCmd.size());
+                return new ProcessBuilder(command).redirectErrorStream(true).start();
+            }
+
+            @Override
+            String promptPassword(String cmdName) {
+                prompts.add(cmdName);
+                return "secret";
+            }
+
+            @Override
+            PrivilegedHelper startHelper() throws IOException {
+                String nonce = UUID.randomUUID().toString();
+                return new PrivilegedHelper(new ProcessBuilder("sh", "-c", FAKE_HELPER, "fake-helper", nonce).start(), nonce);
+            }
+        };
+    }
+
+    private static String run(List<String> command) {
+        try {
+            return new ProcessBuilder(command).start().waitFor() == 0 ? "" : null;
+        } catch (IOException | InterruptedException e) {
+            return null;
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        sudo.shutdown();
+    }
+
+    @Test
+    void freshCredentialsAreNotProbedAgain() throws Exception {
+        assertThat(sudo.runWithSudo(List.of("dnf", "install", "-y", "htop"))).isEqualTo("helped\n");
+        assertThat(sudo.runWithSudo(List.of("dnf", "remove", "-y", "htop"))).isEqualTo("helped\n");
+
+        assertThat(quietCalls.stream().filter("sudo -n true"::equals).count()).isEqualTo(1);
+        assertThat(quietCalls.stream().filter("sudo -n -l"::equals).count()).isEqualTo(1);
+    }
+
+    @Test
+    void helperCommandsRenewTheSudoTimestamp() throws Exception {
+        sudo.runWithSudo(List.of("dnf", "install", "-y", "htop"));
+        sudo.runWithSudo(List.of("systemctl", "restart", "sshd"));
+
+        assertThat(quietCalls).containsExactly("sudo -n true", "sudo -n -l", "sudo -n -v", "sudo -n -v");
+    }
+
+    @Test
+    void lapsedTimestampAfterAHelperCommandIsForgotten() throws Exception {
+        sudo.runWithSudo(List.of("dnf", "install", "-y", "htop"));
+        cacheWarm = false;   // sudo -n -v fails: the timestamp was revoked meanwhile (sudo -k)
+
+        sudo.runWithSudo(List.of("dnf", "remove", "-y", "htop"));
+        cacheWarm = true;
+        sudo.runWithSudo(List.of("dnf", "remove", "-y", "htop"));
+
+        // Credentials were known stale, so the next command probed sudo again before using the helper
+        assertThat(quietCalls).containsExactly(
+                "sudo -n true", "sudo -n -l", "sudo -n -v", "sudo -n -v", "sudo -n true", "sudo -n -v");
+    }
+
+    @Test
+    void oneShotSudoNeverPromptsWhileTheCacheIsWarm() throws Exception {
+        assertThat(sudo.runWithSudo(List.of("echo", "hi"))).isEqualTo("hi\n");
+
+        assertThat(sudoCalls).containsExactly("sudo -n -- echo hi");
+        assertThat(prompts).isEmpty();
+    }
+
+    @Test
+    void lapsedTimestampPromptsAndRetriesOnce() throws Exception {
+        timestampLapses = true;   // the probe still succeeds, the timestamp expires right after
+
+        assertThat(sudo.runWithSudo(List.of("echo", "hi"))).isEqualTo("hi\n");
+
+        assertThat(sudoCalls).containsExactly("sudo -n -- echo hi", "sudo -S -- echo hi");
+        assertThat(prompts).containsExactly("echo");
+    }
+
+    @Test
+    void retriedCommandFailsWithItsOwnOutput() {
+        timestampLapses = true;
+
+        assertThatThrownBy(() -> sudo.runWithSudo(List.of("sh", "-c", "echo broken; exit 3")))
+                .hasMessageContaining("exit 3")
+                .hasMessageContaining("broken")
+                .hasMessageNotContaining("password is required");
+        assertThat(prompts).hasSize(1);
+    }
+
+    @Test
+    void outputStreamsToTheShellPaneWhileTheCommandRuns() throws Exception {
+        CompletableFuture<String> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return sudo.runWithSudo(List.of("sh", "-c", "echo step-1; read wait; echo step-2"));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (!shellLines.contains("step-1")) Thread.sleep(5);
+
+        assertThat(result.isDone()).isFalse();
+        assertThat(shellLines).containsExactly("$ sudo sh -c echo step-1; read wait; echo step-2", "step-1");
+        executor.cancelAll();
+        assertThatThrownBy(result::get).hasRootCauseInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    void cancellingAOneShotCommandSignalsItsChildrenThroughSudo() throws Exception {
+        CompletableFuture<String> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return sudo.runWithSudo(List.of("sh", "-c", "echo started; sleep 30"));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (!shellLines.contains("started")) Thread.sleep(5);
+
+        executor.cancelAll();
+
+        assertThatThrownBy(result::get).hasRootCauseInstanceOf(CancellationException.class);
+        assertThat(quietCalls.stream().anyMatch(c -> c.startsWith("sudo -n kill -TERM "))).isTrue();
+    }
+}
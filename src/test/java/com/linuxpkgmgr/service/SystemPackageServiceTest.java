@@ -0,0 +1,155 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.InstalledPackages;
+import com.linuxpkgmgr.model.PackageInfo;
+import com.linuxpkgmgr.service.SystemPackageService.PackageManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SystemPackageServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private final AtomicInteger dnfRuns = new AtomicInteger();
+    private final AtomicInteger flatpakRuns = new AtomicInteger();
+    private volatile String dnfOutput = "htop\t3.3.0-1.fc40\tInteractive process viewer\n";
+    private volatile CountDownLatch dnfGate = new CountDownLatch(0);
+    private Path rpmDb;
+    private SystemPackageService packages;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        CommandExecutor executor = new CommandExecutor(new ShellOutputBus()) {
+            @Override
+            public String execute(List<String> command) {
+                if (command.getFirst().equals("dnf")) {
+                    dnfRuns.incrementAndGet();
+                    String output = dnfOutput;
+                    awaitGate();
+                    return output;
+                }
+                flatpakRuns.incrementAndGet();
+                return "VLC\torg.videolan.VLC\t3.0.21\n";
+            }
+        };
+        packages = new SystemPackageService(executor);
+        rpmDb = Files.writeString(tmp.resolve("rpmdb.sqlite"), "v1");
+        Path flatpakChanged = Files.writeString(tmp.resolve(".changed"), "");
+        ReflectionTestUtils.setField(packages, "nativePackageManager", PackageManager.DNF);
+        ReflectionTestUtils.setField(packages, "flatpakAvailable", true);
+        ReflectionTestUtils.setField(packages, "nativeDbPaths", List.of(rpmDb));
+        ReflectionTestUtils.setField(packages, "flatpakDbPaths", List.of(flatpakChanged));
+    }
+
+    private void awaitGate() {
+        try {
+            dnfGate.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Simulates a transaction committed by another process. */
+    private void touchRpmDb(String content) throws Exception {
+        Files.writeString(rpmDb, content);
+        Files.setLastModifiedTime(rpmDb, FileTime.fromMillis(Files.getLastModifiedTime(rpmDb).toMillis() + 1000));
+    }
+
+    /** Calls {@link SystemPackageService#installed()} until {@code id} shows up. */
+    private void awaitInstalled(String id) throws InterruptedException {
+        while (packages.installed().byId(id) == null) Thread.sleep(5);
+    }
+
+    @Test
+    void unchangedDatabasesAreNotQueriedAgain() {
+        assertThat(packages.listInstalled()).extracting(PackageInfo::id).containsExactly("htop", "org.videolan.VLC");
+        packages.listInstalled();
+        packages.listInstalled();
+
+        assertThat(dnfRuns.get()).isEqualTo(1);
+        assertThat(flatpakRuns.get()).isEqualTo(1);
+    }
+
+    @Test
+    void externalChangeRefetchesOnlyTheChangedHalf() throws Exception {
+        packages.listInstalled();
+        dnfOutput += "gimp\t2.10.38-1.fc40\tGNU Image Manipulation Program\n";
+        touchRpmDb("v2");
+
+        awaitInstalled("gimp");
+
+        assertThat(dnfRuns.get()).isEqualTo(2);
+        assertThat(flatpakRuns.get()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidatedHalfIsFetchedBeforeTheNextLookupReturns() {
+        packages.listInstalled();
+        dnfOutput = "";
+
+        packages.invalidateNative();
+
+        assertThat(packages.listInstalled()).extracting(PackageInfo::id).containsExactly("org.videolan.VLC");
+        assertThat(flatpakRuns.get()).isEqualTo(1);
+    }
+
+    @Test
+    void fingerprintFollowsMtimeAndSizeOfEveryPath() throws Exception {
+        List<Path> paths = List.of(rpmDb, tmp.resolve("missing"));
+        long before = SystemPackageService.fingerprint(paths);
+
+        assertThat(SystemPackageService.fingerprint(paths)).isEqualTo(before);
+        touchRpmDb("v2 with more rows");
+        assertThat(SystemPackageService.fingerprint(paths)).isNotEqualTo(before);
+    }
+
+    @Test
+    void staleSnapshotIsServedWhileOneBackgroundRefreshRuns() throws Exception {
+        packages.listInstalled();
+        dnfOutput += "gimp\t2.10.38-1.fc40\tGNU Image Manipulation Program\n";
+        dnfGate = new CountDownLatch(1);
+        touchRpmDb("v2");
+
+        // Every reader gets the old snapshot at once; they all share the single refresh
+        List<CompletableFuture<InstalledPackages>> readers = IntStream.range(0, 8)
+                .mapToObj(i -> CompletableFuture.supplyAsync(packages::installed))
+                .toList();
+        for (CompletableFuture<InstalledPackages> reader : readers) {
+            assertThat(reader.get(5, TimeUnit.SECONDS).byId("gimp")).isNull();
+        }
+        dnfGate.countDown();
+        awaitInstalled("gimp");
+
+        assertThat(dnfRuns.get()).isEqualTo(2);
+    }
+
+    @Test
+    void fetchInvalidatedWhileRunningIsDiscarded() throws Exception {
+        dnfGate = new CountDownLatch(1);
+        CompletableFuture<List<PackageInfo>> first = CompletableFuture.supplyAsync(packages::listInstalled);
+        while (dnfRuns.get() == 0) Thread.sleep(5);
+
+        // An install finishes while the first fetch still holds the old list
+        dnfOutput += "gimp\t2.10.38-1.fc40\tGNU Image Manipulation Program\n";
+        packages.invalidateNative();
+        dnfGate.countDown();
+
+        assertThat(first.get()).extracting(PackageInfo::id).contains("gimp");
+        assertThat(dnfRuns.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,90 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import com.linuxpkgmgr.service.UpdateService.UpdateCheck;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpdatePrefetchServiceTest {
+
+    /** Sources refreshed, with the max age asked for. */
+    private final List<String> refreshes = new ArrayList<>();
+    private boolean busy;
+    private boolean offline;
+    private UpdatePrefetchService prefetch;
+
+    @BeforeEach
+    void setUp() {
+        SystemPackageService packages = new SystemPackageService(null) {
+            @Override
+            public boolean isFlatpakAvailable() {
+                return true;
+            }
+        };
+        UpdateService updates = new UpdateService(packages, null, null, null) {
+            @Override
+            public CompletableFuture<UpdateCheck> refreshIfOlderThan(Source source, Duration maxAge) {
+                refreshes.add(source + " " + maxAge.toMinutes());
+                return offline
+                        ? CompletableFuture.failedFuture(new RuntimeException("Cannot download repomd.xml"))
+                        : CompletableFuture.completedFuture(new UpdateCheck(source, List.of(), Instant.now()));
+            }
+        };
+        CommandExecutor executor = new CommandExecutor(new ShellOutputBus()) {
+            @Override
+            public boolean isBusy() {
+                return busy;
+            }
+        };
+        prefetch = new UpdatePrefetchService(updates, packages, executor);
+        // Whatever else runs on this machine, the load check must not decide the outcome
+        ReflectionTestUtils.setField(prefetch, "maxLoadPerCpu", Double.MAX_VALUE);
+    }
+
+    @Test
+    void idleTickRefreshesBothSourcesAtTheConfiguredInterval() {
+        prefetch.tick();
+
+        assertThat(refreshes).containsExactly("NATIVE 30", "FLATPAK 30");
+    }
+
+    @Test
+    void runningCommandPostponesThePrefetch() {
+        busy = true;
+        prefetch.tick();
+        assertThat(refreshes).isEmpty();
+
+        busy = false;
+        prefetch.tick();
+        assertThat(refreshes).hasSize(2);
+    }
+
+    @Test
+    void highLoadPostponesThePrefetch() {
+        ReflectionTestUtils.setField(prefetch, "maxLoadPerCpu", -1.0);
+
+        prefetch.tick();
+
+        assertThat(refreshes).isEmpty();
+    }
+
+    @Test
+    void failedPrefetchIsNotRetriedBeforeTheNextInterval() {
+        offline = true;
+        prefetch.tick();
+        offline = false;
+        prefetch.tick();
+        prefetch.tick();
+
+        assertThat(refreshes).containsExactly("NATIVE 30", "FLATPAK 30");
+    }
+}
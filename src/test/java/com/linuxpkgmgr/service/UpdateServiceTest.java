@@ -0,0 +1,175 @@
+package com.linuxpkgmgr.service;
+
+import com.linuxpkgmgr.model.InstalledPackages;
+import com.linuxpkgmgr.model.PackageInfo;
+import com.linuxpkgmgr.model.PackageInfo.Installed;
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import com.linuxpkgmgr.model.PackageUpdate;
+import com.linuxpkgmgr.service.PackageOperationQueue.Kind;
+import com.linuxpkgmgr.service.PackageOperationQueue.PackageTransaction;
+import com.linuxpkgmgr.service.SystemPackageService.PackageManager;
+import com.linuxpkgmgr.service.UpdateService.UpdateCheck;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpdateServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private final AtomicInteger dnfChecks = new AtomicInteger();
+    private final AtomicInteger flatpakChecks = new AtomicInteger();
+    private volatile CountDownLatch dnfGate = new CountDownLatch(0);
+    /** Commands run through sudo, joined with spaces. */
+    private final List<String> sudoCalls = Collections.synchronizedList(new ArrayList<>());
+    /** Operations handed to the queue, as {@code "KIND backend packages"}. */
+    private final List<String> queued = Collections.synchronizedList(new ArrayList<>());
+    private Path rpmDb;
+    private UpdateService updates;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SystemPackageService packages = new SystemPackageService(null) {
+            @Override
+            public PackageManager getNativePackageManager() {
+                return PackageManager.DNF;
+            }
+
+            @Override
+            public boolean isFlatpakAvailable() {
+                return true;
+            }
+
+            @Override
+            public InstalledPackages installed() {
+                return InstalledPackages.of(List.of(
+                        new PackageInfo("htop", "htop", "3.3.0-1.fc40", "", Source.NATIVE, Installed.YES)));
+            }
+        };
+        rpmDb = Files.writeString(tmp.resolve("rpmdb.sqlite"), "v1");
+        ReflectionTestUtils.setField(packages, "nativeDbPaths", List.of(rpmDb));
+
+        CommandExecutor executor = new CommandExecutor(new ShellOutputBus()) {
+            @Override
+            public String execute(List<String> command, Duration timeout) throws InterruptedException {
+                dnfChecks.incrementAndGet();
+                dnfGate.await();
+                return "htop.x86_64   3.3.1-1.fc40   updates\n";
+            }
+
+            @Override
+            public String executeChecked(List<String> command, Duration timeout) {
+                if (command.get(1).equals("update")) return "flatpak: " + String.join(" ", command);
+                flatpakChecks.incrementAndGet();
+                return "VLC\torg.videolan.VLC\t3.0.21\n";
+            }
+        };
+        SudoService sudo = new SudoService(executor) {
+            @Override
+            public String runWithSudo(List<String> command, Duration timeout) {
+                sudoCalls.add(String.join(" ", command));
+                return "upgraded";
+            }
+        };
+        PackageOperationQueue queue = new PackageOperationQueue(packages, sudo, new ShellOutputBus()) {
+            @Override
+            public String execute(Source backend, Kind kind, List<String> pkgs, PackageTransaction transaction)
+                    throws IOException, InterruptedException {
+                queued.add(kind + " " + backend + " " + pkgs);
+                return transaction.run(pkgs);
+            }
+        };
+        updates = new UpdateService(packages, executor, sudo, queue);
+    }
+
+    /** Simulates a transaction committed by another process. */
+    private void touchRpmDb() throws Exception {
+        Files.writeString(rpmDb, "v2");
+        Files.setLastModifiedTime(rpmDb, FileTime.fromMillis(Files.getLastModifiedTime(rpmDb).toMillis() + 1000));
+    }
+
+    @Test
+    void checksAreParsedWithInstalledVersions() {
+        UpdateCheck check = updates.check(Source.NATIVE).join();
+
+        assertThat(check.updates()).containsExactly(
+                new PackageUpdate("htop", "htop", "3.3.0-1.fc40", "3.3.1-1.fc40", Source.NATIVE));
+        assertThat(updates.check(Source.FLATPAK).join().updates()).extracting(PackageUpdate::id)
+                .containsExactly("org.videolan.VLC");
+    }
+
+    @Test
+    void concurrentCallersShareOneCheckWhileTheOtherSourceRunsAlongside() throws Exception {
+        dnfGate = new CountDownLatch(1);
+
+        Map<Source, CompletableFuture<UpdateCheck>> first = updates.checkAll();
+        CompletableFuture<UpdateCheck> second = updates.check(Source.NATIVE);
+
+        // Flatpak finishes while the native check is still blocked
+        assertThat(first.get(Source.FLATPAK).get(5, TimeUnit.SECONDS).updates()).hasSize(1);
+        assertThat(first.get(Source.NATIVE).isDone()).isFalse();
+        dnfGate.countDown();
+
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(first.get(Source.NATIVE).get());
+        assertThat(dnfChecks.get()).isEqualTo(1);
+    }
+
+    @Test
+    void cachedCheckIsServedUntilThePackageDatabaseChanges() throws Exception {
+        UpdateCheck first = updates.check(Source.NATIVE).join();
+        assertThat(updates.check(Source.NATIVE).join()).isSameAs(first);
+        assertThat(dnfChecks.get()).isEqualTo(1);
+
+        touchRpmDb();
+
+        assertThat(updates.check(Source.NATIVE).join()).isNotSameAs(first);
+        assertThat(dnfChecks.get()).isEqualTo(2);
+    }
+
+    @Test
+    void checkOlderThanMaxAgeIsRunAgain() {
+        ReflectionTestUtils.setField(updates, "maxAgeMinutes", 0L);
+        updates.check(Source.NATIVE).join();
+        updates.check(Source.NATIVE).join();
+
+        assertThat(dnfChecks.get()).isEqualTo(2);
+    }
+
+    @Test
+    void upgradeAllIsOneTransactionAndInvalidatesTheCheck() throws Exception {
+        updates.check(Source.NATIVE).join();
+
+        assertThat(updates.updateNative(List.of())).isEqualTo("upgraded");
+
+        assertThat(queued).containsExactly("UPDATE NATIVE []");
+        assertThat(sudoCalls).containsExactly("dnf upgrade -y");
+        updates.check(Source.NATIVE).join();
+        assertThat(dnfChecks.get()).isEqualTo(2);
+    }
+
+    @Test
+    void namedFlatpakUpdatesShareOneTransaction() throws Exception {
+        String output = updates.updateFlatpak(List.of("org.videolan.VLC", "org.gimp.GIMP"));
+
+        assertThat(output).isEqualTo("flatpak: flatpak update -y --noninteractive org.videolan.VLC org.gimp.GIMP");
+        assertThat(queued).containsExactly("UPDATE FLATPAK [org.videolan.VLC, org.gimp.GIMP]");
+    }
+}
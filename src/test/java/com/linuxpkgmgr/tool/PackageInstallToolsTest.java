@@ -0,0 +1,133 @@
+package com.linuxpkgmgr.tool;
+
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import com.linuxpkgmgr.service.CommandExecutor;
+import com.linuxpkgmgr.service.PackageOperationQueue;
+import com.linuxpkgmgr.service.PackageOperationQueue.Kind;
+import com.linuxpkgmgr.service.PackageOperationQueue.PackageTransaction;
+import com.linuxpkgmgr.service.ShellOutputBus;
+import com.linuxpkgmgr.service.SudoService;
+import com.linuxpkgmgr.service.SystemPackageService;
+import com.linuxpkgmgr.service.SystemPackageService.PackageManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackageInstallToolsTest {
+
+    /** Commands run as one transaction each, joined with spaces. */
+    private final List<String> transactions = new ArrayList<>();
+    /** What the next transactions answer: output, or an exception to throw. */
+    private final Deque<Object> answers = new ArrayDeque<>();
+    private final AtomicInteger nativeInvalidations = new AtomicInteger();
+    private PackageInstallTools tools;
+
+    @BeforeEach
+    void setUp() {
+        SystemPackageService packages = new SystemPackageService(null) {
+            @Override
+            public PackageManager getNativePackageManager() {
+                return PackageManager.DNF;
+            }
+
+            @Override
+            public boolean isFlatpakAvailable() {
+                return true;
+            }
+
+            @Override
+            public void invalidateNative() {
+                nativeInvalidations.incrementAndGet();
+            }
+        };
+        CommandExecutor executor = new CommandExecutor(new ShellOutputBus()) {
+            @Override
+            public String executeChecked(List<String> command, Duration timeout) throws IOException {
+                return answer(command);
+            }
+        };
+        SudoService sudo = new SudoService(executor) {
+            @Override
+            public String runWithSudo(List<String> command, Duration timeout) throws IOException {
+                return answer(command);
+            }
+        };
+        PackageOperationQueue queue = new PackageOperationQueue(packages, sudo, new ShellOutputBus()) {
+            @Override
+            public String execute(Source backend, Kind kind, List<String> pkgs, PackageTransaction transaction)
+                    throws IOException, InterruptedException {
+                return transaction.run(pkgs);
+            }
+        };
+        tools = new PackageInstallTools(packages, executor, sudo, queue);
+    }
+
+    private String answer(List<String> command) throws IOException {
+        transactions.add(String.join(" ", command));
+        Object next = answers.isEmpty() ? "Complete!" : answers.poll();
+        if (next instanceof IOException e) throw e;
+        return (String) next;
+    }
+
+    @Test
+    void listIsInstalledInOneTransactionWithAResultPerPackage() {
+        answers.add("Package git-2.44.0-1.fc40.x86_64 is already installed.\nComplete!");
+
+        String result = tools.installNativePackages(Arrays.asList("git", "gcc", " ", "git", "make"));
+
+        assertThat(transactions).containsExactly("dnf install -y git gcc make");
+        assertThat(result).startsWith("Installed 2 of 3 package(s) in one transaction:")
+                .containsPattern("git\\s+already installed")
+                .containsPattern("gcc\\s+installed")
+                .containsPattern("make\\s+installed");
+        assertThat(nativeInvalidations.get()).isEqualTo(1);
+    }
+
+    @Test
+    void unknownNamesAreDroppedAndTheRestRetriedOnce() {
+        answers.add(new IOException("Error: Unable to find a match: gcc-typo"));
+
+        String result = tools.installNativePackages(List.of("git", "gcc-typo", "make"));
+
+        assertThat(transactions).containsExactly("dnf install -y git gcc-typo make", "dnf install -y git make");
+        assertThat(result).startsWith("Installed 2 of 3")
+                .containsPattern("gcc-typo\\s+not found")
+                .doesNotContain("Transaction failed");
+    }
+
+    @Test
+    void otherFailuresAreNotRetried() {
+        answers.add(new IOException("Error: Cannot download repomd.xml"));
+
+        String result = tools.removeNativePackages(List.of("git", "make"));
+
+        assertThat(transactions).containsExactly("dnf remove -y git make");
+        assertThat(result).startsWith("Removed 0 of 2")
+                .containsPattern("git\\s+failed")
+                .endsWith("Transaction failed: Error: Cannot download repomd.xml");
+    }
+
+    @Test
+    void flatpakAppsShareOneTransaction() {
+        String result = tools.installFlatpaks(List.of("org.videolan.VLC", "org.gimp.GIMP"));
+
+        assertThat(transactions).containsExactly("flatpak install --user -y flathub org.videolan.VLC org.gimp.GIMP");
+        assertThat(result).startsWith("Installed 2 of 2");
+    }
+
+    @Test
+    void emptyListRunsNothing() {
+        assertThat(tools.installNativePackages(List.of())).isEqualTo("Please pass at least one package name.");
+        assertThat(transactions).isEmpty();
+    }
+}
@@ -0,0 +1,92 @@
+package com.linuxpkgmgr.tool;
+
+import com.linuxpkgmgr.service.CommandExecutor;
+import com.linuxpkgmgr.service.PackageCatalogService;
+import com.linuxpkgmgr.service.ShellOutputBus;
+import com.linuxpkgmgr.service.SystemPackageService;
+import com.linuxpkgmgr.service.SystemPackageService.PackageManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackageSearchToolsTest {
+
+    /** Pending search per command name; tests complete them to play the backends. */
+    private final Map<String, CompletableFuture<String>> searches = new HashMap<>();
+    private PackageSearchTools tools;
+
+    @BeforeEach
+    void setUp() {
+        SystemPackageService dnfSystem = new SystemPackageService(null) {
+            @Override
+            public PackageManager getNativePackageManager() {
+                return PackageManager.DNF;
+            }
+
+            @Override
+            public boolean isFlatpakAvailable() {
+                return true;
+            }
+        };
+        CommandExecutor executor = new CommandExecutor(new ShellOutputBus()) {
+            @Override
+            public CompletableFuture<String> executeAsync(List<String> command, Duration timeout) {
+                return searches.computeIfAbsent(command.getFirst(), c -> new CompletableFuture<>());
+            }
+        };
+        tools = new PackageSearchTools(dnfSystem, executor, new PackageCatalogService(dnfSystem));
+    }
+
+    private CompletableFuture<String> backend(String command) {
+        return searches.computeIfAbsent(command, c -> new CompletableFuture<>());
+    }
+
+    @Test
+    void resultsFromBothBackendsAreMergedAndAppsInBothAreListedOnce() {
+        backend("flatpak").complete("VLC\torg.videolan.VLC\tMedia player\t3.0.21\n");
+        backend("dnf").complete("""
+                ======== Name Matched: vlc ========
+                vlc.x86_64 : VLC media player
+                vlc-devel.x86_64 : Development files for VLC
+                """);
+
+        String result = tools.searchPackages("vlc");
+
+        assertThat(result).contains("(also in native repo as vlc)")
+                .contains("[native]   vlc-devel.x86_64 : Development files for VLC")
+                .doesNotContain("[native]   vlc.x86_64");
+        assertThat(result.indexOf("[flatpak]")).isLessThan(result.indexOf("[native]"));
+    }
+
+    @Test
+    void slowBackendIsOmittedAtTheBudgetAndItsSearchCancelled() {
+        ReflectionTestUtils.setField(tools, "latencyBudgetMs", 50L);
+        backend("flatpak").complete("VLC\torg.videolan.VLC\tMedia player\t3.0.21\n");
+
+        String result = tools.searchPackages("vlc");
+
+        assertThat(result).contains("org.videolan.VLC")
+                .contains("(native repo search did not finish within 50 ms — results omitted; "
+                        + "search_native_repo waits for it)");
+        assertThat(backend("dnf").isCancelled()).isTrue();
+    }
+
+    @Test
+    void failingBackendIsReportedWithoutHidingTheOther() {
+        backend("flatpak").completeExceptionally(new RuntimeException("Unable to connect to flathub"));
+        backend("dnf").complete("htop.x86_64 : Interactive process viewer\n");
+
+        String result = tools.searchPackages("htop");
+
+        assertThat(result).contains("[native]   htop.x86_64 : Interactive process viewer")
+                .contains("(Error searching Flathub: Unable to connect to flathub)");
+    }
+}
@@ -0,0 +1,88 @@
+package com.linuxpkgmgr.tool;
+
+import com.linuxpkgmgr.model.PackageInfo.Source;
+import com.linuxpkgmgr.model.PackageUpdate;
+import com.linuxpkgmgr.service.SystemPackageService;
+import com.linuxpkgmgr.service.UpdateService;
+import com.linuxpkgmgr.service.UpdateService.UpdateCheck;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackageUpdateToolsTest {
+
+    private final Map<Source, CompletableFuture<UpdateCheck>> checks = new EnumMap<>(Source.class);
+    private final List<List<String>> nativeUpdates = new ArrayList<>();
+    private PackageUpdateTools tools;
+
+    @BeforeEach
+    void setUp() {
+        SystemPackageService packages = new SystemPackageService(null) {
+            @Override
+            public boolean isFlatpakAvailable() {
+                return true;
+            }
+        };
+        UpdateService updates = new UpdateService(packages, null, null, null) {
+            @Override
+            public CompletableFuture<UpdateCheck> check(Source source) {
+                return checks.get(source);
+            }
+
+            @Override
+            public Map<Source, CompletableFuture<UpdateCheck>> checkAll() {
+                return checks;
+            }
+
+            @Override
+            public String updateNative(List<String> targets) {
+                nativeUpdates.add(targets);
+                return "Complete!\n";
+            }
+        };
+        tools = new PackageUpdateTools(packages, updates);
+    }
+
+    private static CompletableFuture<UpdateCheck> checked(Source source, Duration ago, PackageUpdate... updates) {
+        return CompletableFuture.completedFuture(new UpdateCheck(source, List.of(updates), Instant.now().minus(ago)));
+    }
+
+    @Test
+    void combinedCheckReportsBothSourcesWithTheirAge() {
+        checks.put(Source.NATIVE, checked(Source.NATIVE, Duration.ofMinutes(12),
+                new PackageUpdate("htop", "htop", "3.3.0", "3.3.1", Source.NATIVE)));
+        checks.put(Source.FLATPAK, checked(Source.FLATPAK, Duration.ZERO));
+
+        String report = tools.checkUpdates();
+
+        assertThat(report).contains("Native updates available — 1 (checked 12 min ago)")
+                .contains("3.3.0 → 3.3.1")
+                .contains("All Flatpak apps are up to date (checked just now).");
+    }
+
+    @Test
+    void failedCheckIsReportedWithItsCause() {
+        checks.put(Source.NATIVE, CompletableFuture.failedFuture(new RuntimeException("Update check failed: Error: no network")));
+
+        assertThat(tools.checkNativeUpdates())
+                .isEqualTo("Error checking native updates: Update check failed: Error: no network");
+    }
+
+    @Test
+    void allAndListedNamesAreEachOneUpdateCall() {
+        tools.updateNativePackage("all");
+        tools.updateNativePackage("git, vim  git");
+
+        assertThat(nativeUpdates).containsExactly(List.of(), List.of("git", "vim"));
+        assertThat(tools.updateNativePackage(" ")).startsWith("Please pass a package name");
+    }
+}
@@ -0,0 +1,59 @@
+package com.linuxpkgmgr.tool;
+
+import com.linuxpkgmgr.metrics.CacheMetricsService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryCacheTest {
+
+    private final CacheMetricsService metrics = new CacheMetricsService();
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryBeyondMaxSize() {
+        QueryCache<String> cache = new QueryCache<>("test", 2, Duration.ofMinutes(5), metrics);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");           // "b" is now the eldest
+        cache.put("c", "C");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("a")).isEqualTo("A");
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isEqualTo("C");
+    }
+
+    @Test
+    void expiredEntriesMissAndAreDropped() throws InterruptedException {
+        QueryCache<String> cache = new QueryCache<>("test", 10, Duration.ofMillis(1), metrics);
+        cache.put("a", "A");
+        Thread.sleep(5);
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void reportsHitsMissesAndSizeUnderItsName() {
+        QueryCache<Integer> cache = new QueryCache<>("selections", 10, Duration.ofMinutes(5), metrics);
+        cache.get("x");
+        cache.put("x", 1);
+        cache.get("x");
+        cache.get("x");
+
+        CacheMetricsService.CacheCounter stats = metrics.getCacheStats("selections");
+        assertThat(stats.getHits()).isEqualTo(2);
+        assertThat(stats.getMisses()).isEqualTo(1);
+        assertThat(stats.getSize()).isEqualTo(1);
+        assertThat(stats.getHitRate()).isEqualTo(2.0 / 3);
+    }
+
+    @Test
+    void normalizeIgnoresCaseTrailingPunctuationAndSpacing() {
+        assertThat(QueryCache.normalize("  Check for   updates?! "))
+                .isEqualTo(QueryCache.normalize("check for updates"))
+                .isEqualTo("check for updates");
+    }
+}
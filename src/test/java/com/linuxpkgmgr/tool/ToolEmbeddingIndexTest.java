@@ -0,0 +1,138 @@
+package com.linuxpkgmgr.tool;
+
+import com.linuxpkgmgr.metrics.CacheMetricsService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ToolEmbeddingIndexTest {
+
+    static class SearchTools implements ToolBean {
+        @PkgTool(name = "search_packages", description = "Searches Flathub and the native repositories.")
+        public String search(String query) { return ""; }
+
+        @PkgTool(name = "install_flatpak", description = "Installs a Flatpak application.")
+        public String install(String appId) { return ""; }
+    }
+
+    /** Same tools as {@link SearchTools}, one description reworded, one tool added. */
+    static class RevisedSearchTools implements ToolBean {
+        @PkgTool(name = "search_packages", description = "Searches Flathub and the native repositories.")
+        public String search(String query) { return ""; }
+
+        @PkgTool(name = "install_flatpak", description = "Installs a Flatpak application from Flathub.")
+        public String install(String appId) { return ""; }
+
+        @PkgTool(name = "remove_flatpak", description = "Removes a Flatpak application.")
+        public String remove(String appId) { return ""; }
+    }
+
+    @TempDir
+    Path cacheDir;
+
+    /** Texts of every embedding call, one list per call. */
+    private final List<List<String>> calls = new ArrayList<>();
+    private boolean embedderDown;
+
+    private final EmbeddingModel model = new EmbeddingModel() {
+        @Override
+        public List<float[]> embed(List<String> texts) {
+            calls.add(List.copyOf(texts));
+            if (embedderDown) throw new RuntimeException("Connection refused");
+            return texts.stream().map(t -> new float[]{t.length(), 1}).toList();
+        }
+
+        @Override
+        public float[] embed(String text) {
+            return embed(List.of(text)).getFirst();
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private ToolEmbeddingIndex index(String modelName, ToolBean tools) {
+        return new ToolEmbeddingIndex(model, List.of(tools), modelName, cacheDir, 16, 60, 30, new CacheMetricsService());
+    }
+
+    @Test
+    void coldStartEmbedsEveryDescriptionInOneCall() {
+        index("nomic-embed-text", new SearchTools());
+
+        assertThat(calls).hasSize(1);
+        assertThat(calls.getFirst()).hasSize(2);
+        assertThat(Files.exists(cacheDir.resolve("tool-embeddings.bin"))).isTrue();
+    }
+
+    @Test
+    void unchangedDescriptionsAreLoadedFromDiskWithoutTheModel() {
+        index("nomic-embed-text", new SearchTools());
+        calls.clear();
+
+        index("nomic-embed-text", new SearchTools());
+
+        assertThat(calls).isEmpty();
+    }
+
+    @Test
+    void changedAndNewDescriptionsAreEmbeddedTogether() {
+        index("nomic-embed-text", new SearchTools());
+        calls.clear();
+
+        index("nomic-embed-text", new RevisedSearchTools());
+
+        assertThat(calls).hasSize(1);
+        assertThat(calls.getFirst()).containsExactlyInAnyOrder(
+                "Installs a Flatpak application from Flathub.", "Removes a Flatpak application.");
+    }
+
+    @Test
+    void anotherEmbeddingModelInvalidatesTheCache() {
+        index("nomic-embed-text", new SearchTools());
+        calls.clear();
+
+        index("mxbai-embed-large", new SearchTools());
+
+        assertThat(calls).hasSize(1);
+        assertThat(calls.getFirst()).hasSize(2);
+    }
+
+    @Test
+    void unreadableCacheIsIgnored() throws Exception {
+        Files.write(cacheDir.resolve("tool-embeddings.bin"), new byte[]{0, 0, 0, 1, 0, 0, 0, 9, 1});
+
+        index("nomic-embed-text", new SearchTools());
+
+        assertThat(calls).hasSize(1);
+        calls.clear();
+        index("nomic-embed-text", new SearchTools());
+        assertThat(calls).isEmpty();
+    }
+
+    @Test
+    void unreachableEmbedderLeavesSelectionToTheLexicalIndex() {
+        embedderDown = true;
+
+        ToolEmbeddingIndex index = index("nomic-embed-text", new SearchTools());
+
+        assertThat(Files.exists(cacheDir.resolve("tool-embeddings.bin"))).isFalse();
+        assertThat(index.findRelevant("search flathub")).hasSize(1);
+    }
+}
@@ -0,0 +1,43 @@
+package com.linuxpkgmgr.tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ToolLexicalIndexTest {
+
+    private final ToolLexicalIndex index = new ToolLexicalIndex(
+            List.of("install_flatpak", "search_native_packages", "list_installed_packages", "show_disk_usage"),
+            List.of("Installs an application from Flathub.",
+                    "Searches the native repositories; can also find flatpak apps by name.",
+                    "Lists every installed package.",
+                    "Shows how much disk space packages use."));
+
+    @Test
+    void nameTermsOutweighPassingMentions() {
+        assertThat(index.search("flatpak", 10)).containsExactly(0, 1);
+    }
+
+    @Test
+    void onlyRowsSharingATermAreReturnedUpToK() {
+        assertThat(index.search("disk space", 10)).containsExactly(3);
+        assertThat(index.search("package", 10)).hasSize(3);
+        assertThat(index.search("package", 1)).hasSize(1);
+        assertThat(index.search("kernel", 10)).isEmpty();
+    }
+
+    @Test
+    void stopWordsAloneMatchNothing() {
+        assertThat(index.search("what can you do for me?", 10)).isEmpty();
+    }
+
+    @Test
+    void tokenizeLowercasesDropsStopWordsAndStripsPlurals() {
+        assertThat(ToolLexicalIndex.tokenize("Show the installed Packages, please"))
+                .containsExactly("show", "installed", "package");
+        assertThat(ToolLexicalIndex.tokenize("gcc-c++ is less")).containsExactly("gcc", "c++", "less");
+        assertThat(ToolLexicalIndex.tokenize("list_installed_packages")).containsExactly("list", "installed", "package");
+    }
+}
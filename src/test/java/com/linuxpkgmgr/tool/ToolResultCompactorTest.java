@@ -0,0 +1,85 @@
+package com.linuxpkgmgr.tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ToolResultCompactorTest {
+
+    private static String numberedLines(String prefix, int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(i -> prefix + i).collect(Collectors.joining("\n"));
+    }
+
+    @Test
+    void truncateKeepsHeadAndTailWithinBudget() {
+        String text = numberedLines("package-", 100);
+
+        String truncated = ToolResultCompactor.truncate(text, 50);
+
+        assertThat(truncated).startsWith("package-1\n").endsWith("\npackage-100");
+        assertThat(truncated).containsPattern("… \\d+ line\\(s\\), ~\\d+ tokens omitted …");
+        assertThat(truncated.length()).isLessThan(50 * 4 + 50);
+    }
+
+    @Test
+    void truncateLeavesTextWithinBudgetAlone() {
+        String text = numberedLines("package-", 5);
+
+        assertThat(ToolResultCompactor.truncate(text, 50)).isSameAs(text);
+    }
+
+    @Test
+    void truncateCutsASingleHugeLineByCharacters() {
+        String truncated = ToolResultCompactor.truncate("x".repeat(1000), 10);
+
+        assertThat(truncated).isEqualTo("x".repeat(26) + " … (974 characters omitted)");
+    }
+
+    @Test
+    void pruneRepeatedSubtreesKeepsOnlyTheFirstExpansionOfANode() {
+        String tree = """
+                vlc
+                ├─ libvlc5
+                │  ├─ libc6
+                │  └─ zlib1g
+                └─ vlc-plugin-base
+                   └─ libvlc5
+                      ├─ libc6
+                      └─ zlib1g
+                """;
+
+        assertThat(ToolResultCompactor.pruneRepeatedSubtrees(tree)).isEqualTo("""
+                vlc
+                ├─ libvlc5
+                │  ├─ libc6
+                │  └─ zlib1g
+                └─ vlc-plugin-base
+                   └─ libvlc5 (see above)
+                (2 line(s) of repeated subtrees pruned)""");
+    }
+
+    @Test
+    void compactedResultsArePagedOnlyByTheirConversation() {
+        ToolResultCompactor compactor = new ToolResultCompactor(32);
+        String result = numberedLines("package-", 2000);
+
+        String compacted = compactor.compact("c1", "list_installed_packages", result);
+
+        assertThat(compacted).endsWith("Full output: get_full_result(handle=\"r1\")]");
+        assertThat(compactor.hasStoredResults("c1")).isTrue();
+        assertThat(compactor.hasStoredResults("c2")).isFalse();
+        assertThat(compactor.page("c2", "r1", 1)).isNull();
+        assertThat(compactor.page("c1", "r1", 1999)).isEqualTo("package-1999\npackage-2000\n[r1 — lines 1999–2000 of 2000]");
+    }
+
+    @Test
+    void smallResultsOnlyLoseWhitespace() {
+        ToolResultCompactor compactor = new ToolResultCompactor(32);
+
+        assertThat(compactor.compact("c1", "list_installed_packages", "vim  \n\n\n\nhtop\n")).isEqualTo("vim\n\nhtop");
+        assertThat(compactor.hasStoredResults("c1")).isFalse();
+    }
+}
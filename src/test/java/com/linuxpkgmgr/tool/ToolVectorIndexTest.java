@@ -0,0 +1,58 @@
+package com.linuxpkgmgr.tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class ToolVectorIndexTest {
+
+    // Rows are normalized on the way in, so only the directions matter
+    private final ToolVectorIndex index = new ToolVectorIndex(List.of(
+            new float[]{1, 0, 0, 0, 0},
+            new float[]{3, 3, 0, 0, 0},
+            new float[]{0, 0, 2, 0, 0},
+            new float[]{1, 1, 1, 0, 0},
+            new float[]{0, 0, 0, 0, 0}));
+
+    @Test
+    void returnsTopKBestFirst() {
+        ToolVectorIndex.Hits hits = index.search(new float[]{2, 0, 0, 0, 0}, 2, 0.0);
+
+        assertThat(hits.rows()).containsExactly(0, 1);
+        assertThat(hits.scores()[0]).isCloseTo(1.0f, within(1e-6f));
+        assertThat(hits.scores()[1]).isCloseTo((float) Math.sqrt(0.5), within(1e-6f));
+    }
+
+    @Test
+    void dropsRowsBelowTheThreshold() {
+        ToolVectorIndex.Hits hits = index.search(new float[]{1, 0, 0, 0, 0}, 10, 0.6);
+
+        assertThat(hits.rows()).containsExactly(0, 1);
+        assertThat(index.search(new float[]{0, 0, 0, 1, 0}, 10, 0.1).size()).isZero();
+    }
+
+    @Test
+    void keepsTheBestRowsWhenMoreThanKQualify() {
+        ToolVectorIndex.Hits hits = index.search(new float[]{0, 0, 1, 0, 0}, 1, 0.0);
+
+        assertThat(hits.rows()).containsExactly(2);
+    }
+
+    @Test
+    void queriesOfTheWrongShapeMatchNothing() {
+        assertThat(index.search(new float[]{1, 0, 0}, 3, 0.0).size()).isZero();
+        assertThat(index.search(new float[5], 3, 0.0).size()).isZero();
+        assertThat(index.search(new float[]{1, 0, 0, 0, 0}, 0, 0.0).size()).isZero();
+    }
+
+    @Test
+    void rejectsVectorsOfMixedDimensions() {
+        assertThatThrownBy(() -> new ToolVectorIndex(List.of(new float[3], new float[4])))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("expected 3");
+    }
+}